@@ -0,0 +1,226 @@
+package doclet.docx;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.xmlbeans.XmlOptions;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
+
+/**
+ * 出力済のコメントを再利用するためのキャッシュです。
+ * <p>
+ * オーバーロードやアクセサ, 同じ説明のパラメタや例外など、同一のコメントは文書中で何度も出力されます。
+ * コメント文字列と書式の組み合わせごとに出力結果の XML を記憶し、2 回目以降は字句解析や書式設定を行わずに複製します。
+ * <p>
+ * 書式にはインラインタグ用のフォントを含むため、フォントの異なる複数の文書でキャッシュを共有できます。
+ * 記憶する XML は文書とは別の同期ドメインに複製するため、複数のスレッドで生成する文書の間でも共有できます。
+ */
+public class CommentCache {
+
+	/**
+	 * キャッシュするコメントの最大数
+	 */
+	private static final int CACHE_SIZE = 2048;
+
+	/**
+	 * 記憶する XML の複製の設定 (文書の同期ドメインから切り離す)
+	 */
+	private static final XmlOptions COPY_OPTIONS = new XmlOptions().setCopyUseNewSynchronizationDomain(true);
+
+	/**
+	 * 出力結果のキャッシュ (アクセス順で古いものから破棄)
+	 */
+	private final Map<String, RenderedComment> cache = new LinkedHashMap<String, RenderedComment>(256, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, RenderedComment> eldest) {
+			return CACHE_SIZE < size();
+		}
+	};
+
+	/**
+	 * キャッシュから出力できた回数
+	 */
+	private long hits;
+
+	/**
+	 * キャッシュに存在しなかった回数
+	 */
+	private long misses;
+
+	/**
+	 * 出力済のコメントの XML を保持するクラスです。
+	 */
+	private static class RenderedComment {
+
+		/**
+		 * 最初の段落に出力した文字 (先頭は出力開始時の文字出力ハンドル)
+		 */
+		private final CTR[] runs;
+
+		/**
+		 * 2 番目以降の段落
+		 */
+		private final CTP[] paragraphs;
+
+		/**
+		 * インスタンスを作成します。
+		 *
+		 * @param runs
+		 *            最初の段落に出力した文字
+		 * @param paragraphs
+		 *            2 番目以降の段落
+		 */
+		private RenderedComment(CTR[] runs, CTP[] paragraphs) {
+			this.runs = runs;
+			this.paragraphs = paragraphs;
+		}
+	}
+
+	/**
+	 * キャッシュのキーを作成します。
+	 * <p>
+	 * 出力開始時の文字出力ハンドルが最後の段落の未使用の末尾の文字でない場合は複製できないため null を返却します。
+	 *
+	 * @param word
+	 *            Word 文書
+	 * @param run
+	 *            文字出力用のハンドル
+	 * @param str
+	 *            出力する Javadoc 文字情報
+	 * @param taggedFormat
+	 *            インラインタグとコード例の書式 (フォントと出力プロファイル)
+	 * @return キャッシュのキー
+	 */
+	public String getKey(XWPFDocument word, XWPFRun run, String str, String taggedFormat) {
+
+		// 最後の段落の末尾でない場合は対象外
+		XWPFParagraph paragraph = word.getLastParagraph();
+		CTP ctp = paragraph.getCTP();
+		CTR ctr = run.getCTR();
+		if (run.getParent() != paragraph || ctp.getRArray(ctp.sizeOfRArray() - 1) != ctr) {
+			return null;
+		}
+
+		// 出力済の文字がある場合は対象外
+		if (0 < ctr.sizeOfTArray() || 0 < ctr.sizeOfBrArray() || 0 < ctr.sizeOfCrArray()) {
+			return null;
+		}
+
+		// 書式と文字列を結合
+		StringBuilder sb = new StringBuilder(str.length() + 48);
+		sb.append(run.getFontFamily()).append(',');
+		sb.append(run.getFontSize()).append(',');
+		sb.append(run.isBold()).append(',');
+		sb.append(run.isItalic()).append(',');
+		sb.append(paragraph.getIndentFromLeft()).append(',');
+		sb.append(taggedFormat).append('\n');
+		sb.append(str);
+		return sb.toString();
+	}
+
+	/**
+	 * キャッシュした出力結果を複製して出力します。
+	 * <p>
+	 * 複製した文字と段落は、文書の段落と文字のリストにも追加します。
+	 *
+	 * @param key
+	 *            キャッシュのキー
+	 * @param word
+	 *            Word 文書
+	 * @param run
+	 *            文字出力用のハンドル
+	 * @return キャッシュに存在して出力した場合は true を返却します。
+	 */
+	public boolean replay(String key, WordDocument word, XWPFRun run) {
+
+		// キャッシュを検索
+		RenderedComment rendered;
+		synchronized (this) {
+			rendered = cache.get(key);
+			if (rendered == null) {
+				misses++;
+				return false;
+			}
+			hits++;
+		}
+
+		// 最初の段落の文字を複製
+		XWPFParagraph paragraph = (XWPFParagraph) run.getParent();
+		run.getCTR().set(rendered.runs[0]);
+		for (int i = 1; i < rendered.runs.length; i++) {
+			paragraph.createRun().getCTR().set(rendered.runs[i]);
+		}
+
+		// 後続の段落を複製
+		for (CTP ctp : rendered.paragraphs) {
+			word.appendParagraph(ctp);
+		}
+		return true;
+	}
+
+	/**
+	 * 出力結果を記憶します。
+	 *
+	 * @param key
+	 *            キャッシュのキー
+	 * @param word
+	 *            Word 文書
+	 * @param paragraphIndex
+	 *            出力開始時の段落の位置
+	 * @param runIndex
+	 *            出力開始時の文字出力ハンドルの段落内の位置
+	 */
+	public void store(String key, XWPFDocument word, int paragraphIndex, int runIndex) {
+
+		// 最初の段落の文字を記憶
+		List<XWPFParagraph> list = word.getParagraphs();
+		CTP first = list.get(paragraphIndex).getCTP();
+		CTR[] runs = new CTR[first.sizeOfRArray() - runIndex];
+		for (int i = 0; i < runs.length; i++) {
+			runs[i] = (CTR) first.getRArray(runIndex + i).copy(COPY_OPTIONS);
+		}
+
+		// 後続の段落を記憶
+		CTP[] paragraphs = new CTP[list.size() - paragraphIndex - 1];
+		for (int i = 0; i < paragraphs.length; i++) {
+			paragraphs[i] = (CTP) list.get(paragraphIndex + 1 + i).getCTP().copy(COPY_OPTIONS);
+		}
+
+		// キャッシュに登録
+		synchronized (this) {
+			cache.put(key, new RenderedComment(runs, paragraphs));
+		}
+	}
+
+	/**
+	 * キャッシュした出力結果を全て破棄します。
+	 */
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * キャッシュから出力できた回数を取得します。
+	 *
+	 * @return キャッシュから出力できた回数
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * キャッシュに存在しなかった回数を取得します。
+	 *
+	 * @return キャッシュに存在しなかった回数
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+}
\ No newline at end of file
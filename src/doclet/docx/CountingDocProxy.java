@@ -0,0 +1,172 @@
+package doclet.docx;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Javadoc 情報の呼び出し回数と所要時間を計測するプロキシです。
+ * <p>
+ * ルートドキュメントと、そこから取得した全ての Javadoc 情報のメソッド呼び出しをインタフェースのメソッドごとに集計します。
+ * 所要時間は Javadoc ツールの処理のみを計測し、プロキシで包む処理は含みません。
+ * <p>
+ * 複数の文書を並行して生成する場合は、このプロキシで包んだ後に {@link SynchronizedDocProxy} で包むことで、排他制御の待ち時間を含まずに計測できます。
+ */
+public class CountingDocProxy extends DocProxy {
+
+	/**
+	 * メソッドごとの集計結果
+	 */
+	private final Map<Method, Counter> counters = new HashMap<Method, Counter>();
+
+	/**
+	 * 1 つのメソッドの集計結果です。
+	 */
+	private static class Counter {
+
+		/**
+		 * メソッドの名前 (インタフェース名.メソッド名(引数の型))
+		 */
+		private final String name;
+
+		/**
+		 * 呼び出し回数
+		 */
+		private long calls;
+
+		/**
+		 * 所要時間の合計 (ナノ秒)
+		 */
+		private long nanos;
+
+		/**
+		 * インスタンスを作成します。
+		 *
+		 * @param name
+		 *            メソッドの名前
+		 */
+		private Counter(String name) {
+			this.name = name;
+		}
+	}
+
+	@Override
+	protected Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		long start = System.nanoTime();
+		try {
+			return call(target, method, args);
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			synchronized (counters) {
+				Counter counter = counters.get(method);
+				if (counter == null) {
+					counter = new Counter(getName(method));
+					counters.put(method, counter);
+				}
+				counter.calls++;
+				counter.nanos += elapsed;
+			}
+		}
+	}
+
+	/**
+	 * 集計に使用するメソッドの名前を作成します。
+	 *
+	 * @param method
+	 *            メソッド
+	 * @return インタフェース名.メソッド名(引数の型)
+	 */
+	private static String getName(Method method) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(method.getDeclaringClass().getSimpleName()).append('.').append(method.getName()).append('(');
+		Class<?>[] types = method.getParameterTypes();
+		for (int i = 0; i < types.length; i++) {
+			if (0 < i) {
+				sb.append(", ");
+			}
+			sb.append(types[i].getSimpleName());
+		}
+		return sb.append(')').toString();
+	}
+
+	/**
+	 * 所要時間の合計が大きい順に集計結果を取得します。
+	 *
+	 * @return 集計結果のリスト
+	 */
+	private List<Counter> getCounters() {
+		List<Counter> list;
+		synchronized (counters) {
+			list = new ArrayList<Counter>(counters.values());
+		}
+		Collections.sort(list, new Comparator<Counter>() {
+			@Override
+			public int compare(Counter o1, Counter o2) {
+				int result = Long.compare(o2.nanos, o1.nanos);
+				return result != 0 ? result : o1.name.compareTo(o2.name);
+			}
+		});
+		return list;
+	}
+
+	/**
+	 * 全てのメソッドの呼び出し回数の合計を取得します。
+	 *
+	 * @return 呼び出し回数
+	 */
+	public long getCalls() {
+		long calls = 0;
+		for (Counter counter : getCounters()) {
+			calls += counter.calls;
+		}
+		return calls;
+	}
+
+	/**
+	 * 全てのメソッドの所要時間の合計を取得します。
+	 *
+	 * @return 所要時間 (ミリ秒)
+	 */
+	public long getMillis() {
+		long nanos = 0;
+		for (Counter counter : getCounters()) {
+			nanos += counter.nanos;
+		}
+		return nanos / 1000000L;
+	}
+
+	/**
+	 * 集計結果をタブ区切りのテキストファイルに出力します。
+	 * <p>
+	 * メソッド, 呼び出し回数, 所要時間の合計 (ミリ秒), 1 回あたりの所要時間 (マイクロ秒) を所要時間の合計が大きい順に出力します。
+	 *
+	 * @param file
+	 *            出力ファイル
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			out.println("method\tcalls\ttotal_ms\tavg_us");
+			for (Counter counter : getCounters()) {
+				out.printf(Locale.ROOT, "%s\t%d\t%.3f\t%.3f%n", counter.name, counter.calls, counter.nanos / 1000000.0,
+						counter.nanos / 1000.0 / counter.calls);
+			}
+		} finally {
+			out.close();
+		}
+		if (out.checkError()) {
+			throw new IOException("集計結果を出力できません: " + file);
+		}
+	}
+}
\ No newline at end of file
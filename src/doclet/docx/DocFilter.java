@@ -0,0 +1,273 @@
+package doclet.docx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.sun.javadoc.AnnotationDesc;
+import com.sun.javadoc.AnnotationTypeDoc;
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.ProgramElementDoc;
+
+/**
+ * 出力対象のクラスとメンバを選別するフィルタです。
+ * <p>
+ * 以下のオプションで指定された条件に該当するクラスとメンバは、文書の生成前に除外します。
+ * <ul>
+ * <li>-visibility 出力する最小の可視性 (public, protected, package, private)</li>
+ * <li>-include 出力するパッケージのパターン (カンマ区切り, * と ? を使用可能)</li>
+ * <li>-exclude 除外するパッケージのパターン (カンマ区切り, * と ? を使用可能)</li>
+ * <li>-skipannotation 除外するアノテーションの名前 (カンマ区切り, 単純名または完全修飾名)</li>
+ * <li>-skiptag 除外するタグの名前 (カンマ区切り, 例えば hidden, deprecated)</li>
+ * </ul>
+ */
+public class DocFilter {
+
+	/**
+	 * 出力する最小の可視性 (0:public, 1:protected, 2:package, 3:private)
+	 */
+	private final int visibility;
+
+	/**
+	 * 出力するパッケージのパターン (全てのパッケージを出力する場合は空)
+	 */
+	private final List<Pattern> includes;
+
+	/**
+	 * 除外するパッケージのパターン
+	 */
+	private final List<Pattern> excludes;
+
+	/**
+	 * 除外するアノテーションの名前
+	 */
+	private final List<String> annotations;
+
+	/**
+	 * 除外するタグの名前
+	 */
+	private final List<String> tags;
+
+	/**
+	 * 除外したクラスの数
+	 */
+	private int skippedClasses;
+
+	/**
+	 * 除外したメンバの数
+	 */
+	private int skippedMembers;
+
+	/**
+	 * 実行時オプションからフィルタを作成します。
+	 *
+	 * @param options
+	 *            実行時オプション
+	 */
+	public DocFilter(Options options) {
+		visibility = parseVisibility(options.getOption("visibility", "private"));
+		includes = parsePatterns(options.getOption("include"));
+		excludes = parsePatterns(options.getOption("exclude"));
+		annotations = split(options.getOption("skipannotation"));
+		tags = split(options.getOption("skiptag"));
+	}
+
+	/**
+	 * 可視性の名前を解析します。
+	 *
+	 * @param name
+	 *            可視性の名前
+	 * @return 可視性
+	 */
+	private static int parseVisibility(String name) {
+		switch (name) {
+		case "public":
+			return 0;
+		case "protected":
+			return 1;
+		case "package":
+			return 2;
+		case "private":
+			return 3;
+		}
+		throw new IllegalArgumentException("不正な可視性です: " + name);
+	}
+
+	/**
+	 * カンマ区切りの文字列を分割します。
+	 *
+	 * @param str
+	 *            カンマ区切りの文字列
+	 * @return 空白を除去した要素のリスト
+	 */
+	private static List<String> split(String str) {
+		List<String> list = new ArrayList<String>();
+		for (String s : str.split(",")) {
+			s = s.trim();
+			if (!s.isEmpty()) {
+				list.add(s);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * カンマ区切りのパッケージのパターンを正規表現に変換します。
+	 *
+	 * @param str
+	 *            カンマ区切りのパターン
+	 * @return 正規表現のリスト
+	 */
+	private static List<Pattern> parsePatterns(String str) {
+		List<Pattern> list = new ArrayList<Pattern>();
+		for (String glob : split(str)) {
+			StringBuilder sb = new StringBuilder();
+			for (char c : glob.toCharArray()) {
+				if (c == '*') {
+					sb.append(".*");
+				} else if (c == '?') {
+					sb.append('.');
+				} else {
+					sb.append(Pattern.quote(String.valueOf(c)));
+				}
+			}
+			list.add(Pattern.compile(sb.toString()));
+		}
+		return list;
+	}
+
+	/**
+	 * クラスを出力するか判定します。
+	 * <p>
+	 * 出力しない場合は除外したクラスの数を加算します。
+	 *
+	 * @param doc
+	 *            クラス情報
+	 * @return 出力する場合は true を返却します。
+	 */
+	public boolean accept(ClassDoc doc) {
+		String name = doc.containingPackage().name();
+		boolean result = isVisible(doc) && !isSkipped(doc);
+		if (result && !includes.isEmpty()) {
+			result = matches(includes, name);
+		}
+		if (result) {
+			result = !matches(excludes, name);
+		}
+		if (!result) {
+			skippedClasses++;
+		}
+		return result;
+	}
+
+	/**
+	 * 出力するメンバのみを選別します。
+	 * <p>
+	 * 全てのメンバを出力する場合は引数の配列をそのまま返却します。
+	 *
+	 * @param docs
+	 *            メンバ情報の配列
+	 * @return 出力するメンバ情報の配列
+	 */
+	public <T extends ProgramElementDoc> T[] accept(T[] docs) {
+		int count = 0;
+		T[] result = docs;
+		for (int i = 0; i < docs.length; i++) {
+			if (isVisible(docs[i]) && !isSkipped(docs[i])) {
+				if (result != docs) {
+					result[count] = docs[i];
+				}
+				count++;
+			} else if (result == docs) {
+				result = Arrays.copyOf(docs, docs.length);
+			}
+		}
+		if (result == docs) {
+			return docs;
+		}
+		skippedMembers += docs.length - count;
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * 可視性の条件を満たすか判定します。
+	 *
+	 * @param doc
+	 *            プログラム要素の情報
+	 * @return 条件を満たす場合は true を返却します。
+	 */
+	private boolean isVisible(ProgramElementDoc doc) {
+		int level;
+		if (doc.isPublic()) {
+			level = 0;
+		} else if (doc.isProtected()) {
+			level = 1;
+		} else if (doc.isPackagePrivate()) {
+			level = 2;
+		} else {
+			level = 3;
+		}
+		return level <= visibility;
+	}
+
+	/**
+	 * 除外するアノテーションまたはタグを持つか判定します。
+	 *
+	 * @param doc
+	 *            プログラム要素の情報
+	 * @return 除外する場合は true を返却します。
+	 */
+	private boolean isSkipped(ProgramElementDoc doc) {
+		for (String tag : tags) {
+			if (0 < doc.tags(tag).length) {
+				return true;
+			}
+		}
+		if (!annotations.isEmpty()) {
+			for (AnnotationDesc desc : doc.annotations()) {
+				AnnotationTypeDoc type = desc.annotationType();
+				if (annotations.contains(type.name()) || annotations.contains(type.qualifiedName())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * パッケージ名がいずれかのパターンに一致するか判定します。
+	 *
+	 * @param patterns
+	 *            パターンのリスト
+	 * @param name
+	 *            パッケージ名
+	 * @return 一致する場合は true を返却します。
+	 */
+	private static boolean matches(List<Pattern> patterns, String name) {
+		for (Pattern pattern : patterns) {
+			if (pattern.matcher(name).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 除外したクラスの数を取得します。
+	 *
+	 * @return 除外したクラスの数
+	 */
+	public int getSkippedClasses() {
+		return skippedClasses;
+	}
+
+	/**
+	 * 除外したメンバの数を取得します。
+	 *
+	 * @return 除外したメンバの数
+	 */
+	public int getSkippedMembers() {
+		return skippedMembers;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,227 @@
+package doclet.docx;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.javadoc.RootDoc;
+
+/**
+ * Javadoc 情報 (com.sun.javadoc パッケージのインタフェース) を動的プロキシで包むための基底クラスです。
+ * <p>
+ * プロキシのメソッドが返却する Javadoc 情報と配列の要素は再帰的にプロキシで包み、引数のプロキシは元の Javadoc 情報に戻して呼び出します。
+ * 同じ Javadoc 情報には常に同じプロキシを返却するため、プロキシ同士の比較や {@link List#contains(Object)} は元の Javadoc 情報と同様に動作します。
+ * <p>
+ * サブクラスは {@link #invoke(Object, Method, Object[])} を実装して、呼び出しに処理を追加します。
+ */
+public abstract class DocProxy {
+
+	/**
+	 * Javadoc のインタフェースを格納するパッケージ名
+	 */
+	private static final String JAVADOC_PACKAGE = "com.sun.javadoc.";
+
+	/**
+	 * Javadoc 情報とプロキシの対応
+	 */
+	private final Map<Object, Object> proxies = new IdentityHashMap<Object, Object>();
+
+	/**
+	 * プロキシと Javadoc 情報の対応
+	 */
+	private final Map<Object, Object> targets = new IdentityHashMap<Object, Object>();
+
+	/**
+	 * 実装クラスごとのプロキシが実装するインタフェース
+	 */
+	private final Map<Class<?>, Class<?>[]> interfaces = new HashMap<Class<?>, Class<?>[]>();
+
+	/**
+	 * プロキシの呼び出しを処理するクラスです。
+	 */
+	private class Handler implements InvocationHandler {
+
+		/**
+		 * 元の Javadoc 情報
+		 */
+		private final Object target;
+
+		/**
+		 * インスタンスを作成します。
+		 *
+		 * @param target
+		 *            元の Javadoc 情報
+		 */
+		private Handler(Object target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (args != null) {
+				for (int i = 0; i < args.length; i++) {
+					args[i] = unwrap(args[i]);
+				}
+			}
+			return wrap(DocProxy.this.invoke(target, method, args), method.getReturnType());
+		}
+	}
+
+	/**
+	 * ルートドキュメントをプロキシで包みます。
+	 *
+	 * @param root
+	 *            Javadoc のルートドキュメント
+	 * @return プロキシ
+	 */
+	public RootDoc wrap(RootDoc root) {
+		return (RootDoc) wrap((Object) root);
+	}
+
+	/**
+	 * Javadoc 情報のメソッドを呼び出します。
+	 * <p>
+	 * 引数は元の Javadoc 情報に戻した状態で渡され、返却値はプロキシで包まれます。
+	 *
+	 * @param target
+	 *            元の Javadoc 情報
+	 * @param method
+	 *            呼び出されたメソッド
+	 * @param args
+	 *            引数 (引数がない場合は null)
+	 * @return 返却値
+	 * @throws Throwable
+	 */
+	protected abstract Object invoke(Object target, Method method, Object[] args) throws Throwable;
+
+	/**
+	 * Javadoc 情報のメソッドをリフレクションで呼び出します。
+	 * <p>
+	 * メソッドが送出した例外はそのまま送出します。
+	 *
+	 * @param target
+	 *            元の Javadoc 情報
+	 * @param method
+	 *            呼び出すメソッド
+	 * @param args
+	 *            引数 (引数がない場合は null)
+	 * @return 返却値
+	 * @throws Throwable
+	 */
+	protected static Object call(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * 返却値をプロキシで包みます。
+	 *
+	 * @param value
+	 *            返却値
+	 * @return Javadoc 情報の場合はプロキシ, Javadoc 情報の配列の場合はプロキシの配列, それ以外の場合は返却値
+	 */
+	protected Object wrap(Object value) {
+		return wrap(value, Object.class);
+	}
+
+	/**
+	 * 返却値を宣言された型に従ってプロキシで包みます。
+	 * <p>
+	 * Javadoc ツールは実装クラスの配列を返却するため、配列の要素の型は宣言された返却値の型から決定します。
+	 *
+	 * @param value
+	 *            返却値
+	 * @param declared
+	 *            宣言された返却値の型
+	 * @return Javadoc 情報の場合はプロキシ, Javadoc 情報の配列の場合はプロキシの配列, それ以外の場合は返却値
+	 */
+	private Object wrap(Object value, Class<?> declared) {
+		if (value == null) {
+			return null;
+		}
+
+		// 配列の場合は要素を包む
+		Class<?> type = value.getClass();
+		if (type.isArray()) {
+			Class<?> component = declared.isArray() ? declared.getComponentType() : type.getComponentType();
+			if (!component.getName().startsWith(JAVADOC_PACKAGE)) {
+				return value;
+			}
+			int length = Array.getLength(value);
+			Object array = Array.newInstance(component, length);
+			for (int i = 0; i < length; i++) {
+				Array.set(array, i, wrap(Array.get(value, i)));
+			}
+			return array;
+		}
+
+		// Javadoc 情報の場合はプロキシを作成
+		synchronized (proxies) {
+			if (targets.containsKey(value)) {
+				return value;
+			}
+			Object proxy = proxies.get(value);
+			if (proxy == null) {
+				Class<?>[] types = getInterfaces(type);
+				if (types.length == 0) {
+					return value;
+				}
+				proxy = Proxy.newProxyInstance(types[0].getClassLoader(), types, new Handler(value));
+				proxies.put(value, proxy);
+				targets.put(proxy, value);
+			}
+			return proxy;
+		}
+	}
+
+	/**
+	 * プロキシを元の Javadoc 情報に戻します。
+	 *
+	 * @param value
+	 *            引数
+	 * @return プロキシの場合は元の Javadoc 情報, それ以外の場合は引数
+	 */
+	protected Object unwrap(Object value) {
+		if (value == null || !Proxy.isProxyClass(value.getClass())) {
+			return value;
+		}
+		synchronized (proxies) {
+			Object target = targets.get(value);
+			return target == null ? value : target;
+		}
+	}
+
+	/**
+	 * 実装クラスのプロキシが実装する Javadoc のインタフェースを取得します。
+	 *
+	 * @param type
+	 *            実装クラス
+	 * @return Javadoc のインタフェースの配列
+	 */
+	private Class<?>[] getInterfaces(Class<?> type) {
+		Class<?>[] result = interfaces.get(type);
+		if (result == null) {
+			List<Class<?>> list = new ArrayList<Class<?>>();
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				for (Class<?> i : c.getInterfaces()) {
+					if (i.getName().startsWith(JAVADOC_PACKAGE) && !list.contains(i)) {
+						list.add(i);
+					}
+				}
+			}
+			result = list.toArray(new Class<?>[list.size()]);
+			interfaces.put(type, result);
+		}
+		return result;
+	}
+}
\ No newline at end of file
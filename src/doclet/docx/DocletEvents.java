@@ -0,0 +1,215 @@
+package doclet.docx;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder のイベントを記録する処理を提供します。
+ * <p>
+ * 生成処理の段階ごと, クラスの出力ごと, コメントの出力ごとにイベントを記録します。記録は JFR で記録中の場合のみ行われるため、
+ * 通常の実行への影響はわずかです。jdk.jfr パッケージのない実行環境では何も記録しません。
+ * <p>
+ * 記録したイベントは JDK Mission Control または jfr print --categories "Docx Doclet" で参照できます。
+ */
+public class DocletEvents {
+
+	/**
+	 * JFR を使用できる場合は true
+	 */
+	private static final boolean AVAILABLE = isAvailable();
+
+	/**
+	 * 生成処理の段階のイベントです。
+	 */
+	@Name("doclet.docx.Phase")
+	@Label("Phase")
+	@Category("Docx Doclet")
+	@Description("文書の生成処理の段階")
+	static class PhaseEvent extends Event {
+
+		/**
+		 * 段階の名前
+		 */
+		@Label("Phase")
+		String phase;
+	}
+
+	/**
+	 * クラスの出力のイベントです。
+	 */
+	@Name("doclet.docx.ClassRender")
+	@Label("Class Render")
+	@Category("Docx Doclet")
+	@Description("1 つのクラスの出力")
+	static class ClassRenderEvent extends Event {
+
+		/**
+		 * クラスの完全修飾名
+		 */
+		@Label("Class")
+		String className;
+
+		/**
+		 * 出力したフィールド (列挙型定数を含む) の数
+		 */
+		@Label("Fields")
+		int fields;
+
+		/**
+		 * 出力したコンストラクタの数
+		 */
+		@Label("Constructors")
+		int constructors;
+
+		/**
+		 * 出力したメソッドの数
+		 */
+		@Label("Methods")
+		int methods;
+	}
+
+	/**
+	 * コメントの出力のイベントです。
+	 */
+	@Name("doclet.docx.CommentRender")
+	@Label("Comment Render")
+	@Category("Docx Doclet")
+	@Description("1 つのコメントの出力")
+	static class CommentRenderEvent extends Event {
+
+		/**
+		 * コメントの文字数
+		 */
+		@Label("Length")
+		int length;
+
+		/**
+		 * キャッシュした出力結果を複製した場合は true
+		 */
+		@Label("Cached")
+		boolean cached;
+	}
+
+	/**
+	 * JFR を使用できるか判定します。
+	 *
+	 * @return 使用できる場合は true を返却します。
+	 */
+	private static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 生成処理の段階の開始を記録します。
+	 *
+	 * @param phase
+	 *            段階の名前
+	 * @return イベント (記録しない場合は null)
+	 */
+	public static Object beginPhase(String phase) {
+		if (!AVAILABLE) {
+			return null;
+		}
+		PhaseEvent event = new PhaseEvent();
+		event.phase = phase;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * 生成処理の段階の終了を記録します。
+	 *
+	 * @param event
+	 *            {@link #beginPhase(String)} が返却したイベント
+	 */
+	public static void endPhase(Object event) {
+		if (event != null) {
+			((PhaseEvent) event).commit();
+		}
+	}
+
+	/**
+	 * クラスの出力の開始を記録します。
+	 *
+	 * @param className
+	 *            クラスの完全修飾名
+	 * @return イベント (記録しない場合は null)
+	 */
+	public static Object beginClass(String className) {
+		if (!AVAILABLE) {
+			return null;
+		}
+		ClassRenderEvent event = new ClassRenderEvent();
+		event.className = className;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * クラスの出力の終了を記録します。
+	 *
+	 * @param event
+	 *            {@link #beginClass(String)} が返却したイベント
+	 * @param fields
+	 *            出力したフィールド (列挙型定数を含む) の数
+	 * @param constructors
+	 *            出力したコンストラクタの数
+	 * @param methods
+	 *            出力したメソッドの数
+	 */
+	public static void endClass(Object event, int fields, int constructors, int methods) {
+		if (event != null) {
+			ClassRenderEvent e = (ClassRenderEvent) event;
+			e.fields = fields;
+			e.constructors = constructors;
+			e.methods = methods;
+			e.commit();
+		}
+	}
+
+	/**
+	 * コメントの出力の開始を記録します。
+	 *
+	 * @param length
+	 *            コメントの文字数
+	 * @return イベント (記録しない場合は null)
+	 */
+	public static Object beginComment(int length) {
+		if (!AVAILABLE) {
+			return null;
+		}
+		CommentRenderEvent event = new CommentRenderEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.length = length;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * コメントの出力の終了を記録します。
+	 *
+	 * @param event
+	 *            {@link #beginComment(int)} が返却したイベント
+	 * @param cached
+	 *            キャッシュした出力結果を複製した場合は true
+	 */
+	public static void endComment(Object event, boolean cached) {
+		if (event != null) {
+			CommentRenderEvent e = (CommentRenderEvent) event;
+			e.cached = cached;
+			e.commit();
+		}
+	}
+}
\ No newline at end of file
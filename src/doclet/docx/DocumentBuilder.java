@@ -1,28 +1,50 @@
 package doclet.docx;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.xml.namespace.QName;
+
+import org.apache.poi.POIXMLDocumentPart;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.util.Nullable;
 import org.apache.poi.xwpf.model.XWPFHeaderFooterPolicy;
-import org.apache.poi.xwpf.usermodel.BreakType;
 import org.apache.poi.xwpf.usermodel.ParagraphAlignment;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
 import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFSettings;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlOptions;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSectPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSettings;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.SettingsDocument;
 
 import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.ConstructorDoc;
 import com.sun.javadoc.ExecutableMemberDoc;
+import com.sun.javadoc.FieldDoc;
 import com.sun.javadoc.MemberDoc;
 import com.sun.javadoc.MethodDoc;
 import com.sun.javadoc.PackageDoc;
@@ -38,10 +60,25 @@ import com.sun.javadoc.Type;
  */
 public class DocumentBuilder {
 
+	/**
+	 * 実行時オプション
+	 */
+	private final Options options;
+
+	/**
+	 * 書式の設定
+	 */
+	private final DocumentStyle style;
+
+	/**
+	 * 開く処理を軽くする出力プロファイルの場合は true
+	 */
+	private final boolean fastOpen;
+
 	/**
 	 * Word 文書
 	 */
-	private XWPFDocument word;
+	private WordDocument word;
 
 	/**
 	 * Javadoc のルートドキュメント
@@ -54,7 +91,234 @@ public class DocumentBuilder {
 	private List<PackageDoc> packages;
 
 	/**
-	 * ドキュメントを生成します。
+	 * 出力対象のクラスとメンバを選別するフィルタ
+	 */
+	private DocFilter filter;
+
+	/**
+	 * 分割生成で担当するパッケージ名 (分割しない場合は null)
+	 */
+	private Set<String> shardPackages;
+
+	/**
+	 * 生成途中の本文のジャーナル (記録しない場合は null)
+	 */
+	private Journal journal;
+
+	/**
+	 * ジャーナルから再開する場合の出力済のクラス数 (最初から生成する場合は -1)
+	 */
+	private int resumeClasses;
+
+	/**
+	 * 見出しを出力済として扱うパッケージ名 (一部のクラスのみ生成する場合に使用, それ以外は null)
+	 */
+	private Set<String> startedPackages;
+
+	/**
+	 * 出力中のクラスの区間の内容から値を計算するダイジェスト (区間の外側では null)
+	 */
+	private MessageDigest sectionDigest;
+
+	/**
+	 * ヒープの使用量の監視 (監視しない場合は null)
+	 */
+	private HeapMonitor heapMonitor;
+
+	/**
+	 * 目次 (出力しない場合は null)
+	 */
+	private TableOfContents toc;
+
+	/**
+	 * 索引 (出力しない場合は null)
+	 */
+	private SymbolIndex symbolIndex;
+
+	/**
+	 * クラスとインタフェースの継承関係のグラフ
+	 */
+	private TypeGraph typeGraph;
+
+	/**
+	 * クラス階層とインタフェース階層の章を出力する場合は true
+	 */
+	private boolean hierarchy;
+
+	/**
+	 * クラスの使用箇所 (出力しない場合は null)
+	 */
+	private UsageIndex usageIndex;
+
+	/**
+	 * コード例の字句解析器
+	 */
+	private final JavaLexer lexer;
+
+	/**
+	 * 出力済コメントのキャッシュ
+	 */
+	private final CommentCache commentCache;
+
+	/**
+	 * メンバの見出し用段落のひな形
+	 */
+	private ParagraphTemplate subTitleTemplate;
+
+	/**
+	 * メンバの宣言用段落のひな形
+	 */
+	private ParagraphTemplate signatureTemplate;
+
+	/**
+	 * メンバの説明用段落のひな形
+	 */
+	private ParagraphTemplate commentTemplate;
+
+	/**
+	 * パラメータ見出し用段落のひな形
+	 */
+	private ParagraphTemplate paramHeaderTemplate;
+
+	/**
+	 * 戻り値見出し用段落のひな形
+	 */
+	private ParagraphTemplate returnHeaderTemplate;
+
+	/**
+	 * 例外見出し用段落のひな形
+	 */
+	private ParagraphTemplate throwsHeaderTemplate;
+
+	/**
+	 * 区切り線用段落のひな形
+	 */
+	private ParagraphTemplate separatorTemplate;
+
+	/**
+	 * 索引の項目の段落のひな形
+	 */
+	private ParagraphTemplate indexTemplate;
+
+	/**
+	 * 本文の出力処理
+	 */
+	private DocumentWriter writer;
+
+	/**
+	 * WordprocessingML の名前空間
+	 */
+	private static final String W_NAMESPACE = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+	/**
+	 * リレーションシップの名前空間
+	 */
+	private static final String R_NAMESPACE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+	/**
+	 * 名前空間と接頭辞の対応
+	 */
+	private static final Map<String, String> SUGGESTED_PREFIXES = new HashMap<String, String>();
+
+	/**
+	 * 段落を XML に変換する際のオプション (名前空間は本文の開始部分で宣言済)
+	 */
+	private static final XmlOptions FRAGMENT_OPTIONS = new XmlOptions();
+
+	static {
+		SUGGESTED_PREFIXES.put(W_NAMESPACE, "w");
+		SUGGESTED_PREFIXES.put(R_NAMESPACE, "r");
+		Map<String, String> implicit = new HashMap<String, String>();
+		implicit.put("w", W_NAMESPACE);
+		implicit.put("r", R_NAMESPACE);
+		FRAGMENT_OPTIONS.setSaveOuter();
+		FRAGMENT_OPTIONS.setSaveNoXmlDecl();
+		FRAGMENT_OPTIONS.setSaveSuggestedPrefixes(SUGGESTED_PREFIXES);
+		FRAGMENT_OPTIONS.setSaveImplicitNamespaces(implicit);
+	}
+
+	/**
+	 * クラスの途中で出力スレッドに渡す段落数
+	 */
+	private static final int FLUSH_THRESHOLD = 256;
+
+	/**
+	 * 出力スレッドに渡す断片の最大数
+	 */
+	private static final int QUEUE_CAPACITY = 16;
+
+	/**
+	 * コード例を示す pre 要素のパターン
+	 */
+	private static final Pattern PRE_PATTERN = Pattern.compile("\\s*<(?:pre|PRE)>(.*?)</(?:pre|PRE)>\\s*",
+			Pattern.DOTALL);
+
+	/**
+	 * コード例を囲むインラインタグのパターン
+	 */
+	private static final Pattern CODE_TAG_PATTERN = Pattern.compile("^\\s*\\{@(?:code|literal)\\s?(.*)\\}\\s*$",
+			Pattern.DOTALL);
+
+	/**
+	 * インスタンスを作成します。
+	 *
+	 * @param options
+	 *            実行時オプション
+	 */
+	public DocumentBuilder(Options options) {
+		this(options, new JavaLexer(), new CommentCache());
+	}
+
+	/**
+	 * 字句解析とコメントのキャッシュを共有するインスタンスを作成します。
+	 * <p>
+	 * 同じ Javadoc 情報から複数の文書を生成する場合に、文書間でキャッシュを再利用するために使用します。
+	 * キャッシュはスレッドセーフのため、並行して文書を生成するインスタンス間でも共有できます。
+	 *
+	 * @param options
+	 *            実行時オプション
+	 * @param lexer
+	 *            コード例の字句解析器
+	 * @param commentCache
+	 *            出力済コメントのキャッシュ
+	 */
+	public DocumentBuilder(Options options, JavaLexer lexer, CommentCache commentCache) {
+		this.options = options;
+		this.style = new DocumentStyle(options);
+		this.fastOpen = options.isFastOpen();
+		this.lexer = lexer;
+		this.commentCache = commentCache;
+	}
+
+	/**
+	 * 一部のクラスのみを生成するよう設定します。
+	 * <p>
+	 * 表紙を出力せず、指定されたパッケージの見出しを出力済として扱います。生成した文書は {@link DocxPatcher} で既存の文書に反映します。
+	 *
+	 * @param startedPackages
+	 *            見出しを出力済として扱うパッケージ名 (全てを生成する場合は null)
+	 */
+	public void setStartedPackages(Set<String> startedPackages) {
+		this.startedPackages = startedPackages;
+	}
+
+	/**
+	 * ヒープの使用量を監視するよう設定します。
+	 * <p>
+	 * 予算を超えた場合は段落を直ちに出力し、キャッシュを破棄します。複数の文書を並行して生成する場合は同じインスタンスを設定してください。
+	 *
+	 * @param heapMonitor
+	 *            ヒープの使用量の監視 (監視しない場合は null)
+	 */
+	public void setHeapMonitor(HeapMonitor heapMonitor) {
+		this.heapMonitor = heapMonitor;
+	}
+
+	/**
+	 * ドキュメントを生成して -file オプションで指定されたファイルに保存します。
+	 * <p>
+	 * 同じディレクトリの一時ファイルに出力し、生成が完了した場合のみ既存のファイルと置き換えます。
+	 * 生成に失敗した場合は既存のファイルをそのまま残します。
 	 *
 	 * @param rootDoc
 	 *            Javadoc のルートドキュメント
@@ -62,33 +326,236 @@ public class DocumentBuilder {
 	 */
 	public void create(RootDoc rootDoc) throws IOException {
 
+		// 既存の文書を更新する場合
+		String patch = options.getOption("patch");
+		if (!patch.isEmpty() && new File(patch).isFile()) {
+			patch(rootDoc, new File(patch));
+			return;
+		}
+
+		// 新たに生成
+		File file = new File(patch.isEmpty() ? options.getOption("file", "document.docx") : patch);
+		rootDoc.printNotice("出力ファイル: " + file);
+		File generated = File.createTempFile("docx", ".generated", file.getAbsoluteFile().getParentFile());
+		try {
+			OutputStream out = new FileOutputStream(generated);
+			try {
+				create(rootDoc, out);
+			} finally {
+				out.close();
+			}
+			Files.move(generated.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			generated.delete();
+		}
+	}
+
+	/**
+	 * ドキュメントを生成して、既存の文書のうち内容が変更されたクラスの区間のみを置き換えます。
+	 * <p>
+	 * 生成した文書と更新後の文書は既存の文書と同じディレクトリの一時ファイルに出力し、完了後に既存の文書と置き換えます。
+	 *
+	 * @param rootDoc
+	 *            Javadoc のルートドキュメント
+	 * @param original
+	 *            既存の文書
+	 * @throws IOException
+	 */
+	private void patch(RootDoc rootDoc, File original) throws IOException {
+		rootDoc.printNotice("更新するファイル: " + original);
+		File dir = original.getAbsoluteFile().getParentFile();
+		File generated = File.createTempFile("docx", ".generated", dir);
+		File patched = File.createTempFile("docx", ".patched", dir);
+		try {
+
+			// 新たな文書を生成
+			OutputStream out = new FileOutputStream(generated);
+			try {
+				create(rootDoc, out);
+			} finally {
+				out.close();
+			}
+
+			// 変更された区間を反映
+			DocxPatcher patcher = new DocxPatcher();
+			out = new FileOutputStream(patched);
+			try {
+				patcher.patch(original, generated, out);
+			} finally {
+				out.close();
+			}
+			Files.move(patched.toPath(), original.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			rootDoc.printNotice(String.format("更新: 維持 %d 件, 置換 %d 件, 追加 %d 件, 削除 %d 件", patcher.getKept(),
+					patcher.getReplaced(), patcher.getAdded(), patcher.getRemoved()));
+
+		} finally {
+			generated.delete();
+			patched.delete();
+		}
+	}
+
+	/**
+	 * ドキュメントを生成して出力ストリームに書き込みます。
+	 * <p>
+	 * 出力ストリームは閉じません。1 つのインスタンスで同時に複数の文書は生成できないため、並行して生成する場合は文書ごとにインスタンスを作成してください。
+	 *
+	 * @param rootDoc
+	 *            Javadoc のルートドキュメント
+	 * @param out
+	 *            出力ストリーム
+	 * @throws IOException
+	 */
+	public synchronized void create(RootDoc rootDoc, OutputStream out) throws IOException {
+
 		// 例外捕獲
 		try {
 
 			// Javadoc のルートドキュメントを取得
 			root = rootDoc;
 
+			// 目次を出力する場合はページ番号の見積もりを開始
+			toc = TableOfContents.create(options, style);
+
+			// 索引を出力する場合は項目の記録を開始
+			symbolIndex = SymbolIndex.create(options);
+
+			// 継承関係のグラフを初期化
+			typeGraph = new TypeGraph();
+			hierarchy = isHierarchyRequested();
+
 			// Word 文書を生成
-			word = new XWPFDocument();
+			word = new WordDocument();
+
+			// 作成日時を固定
+			Date timestamp = options.getTimestamp();
+			if (timestamp != null) {
+				word.getProperties().getCoreProperties().setCreated(new Nullable<Date>(timestamp));
+			}
 
 			// ヘッダとフッタを作成
-			makeHeaderFooter(Options.getOption("title") + " " + Options.getOption("subtitle"), true);
-			makeHeaderFooter(Options.getOption("copyright"), false);
+			Object phase = beginPhase("headerfooter");
+			makeHeaderFooter(options.getOption("title") + " " + options.getOption("subtitle"), true);
+			makeHeaderFooter(options.getOption("copyright"), false);
+			DocletEvents.endPhase(phase);
+
+			// 本文の出力を開始
+			writer = startWriter(out);
+
+			// 分割生成の担当範囲を決定
+			Shard shard = Shard.parse(options.getOption("shard"));
+			shardPackages = shard == null ? null : shard.getPackages(root.classes());
+
+			// ジャーナルを開く
+			String journalDir = options.getOption("journal");
+			resumeClasses = -1;
+			if (!journalDir.isEmpty()) {
+				String name = new File(options.getOption("file", "document.docx")).getName();
+				journal = new Journal(new File(journalDir), name, options, root.classes());
+				resumeClasses = journal.open();
+			}
+
+			// 表紙を作成 (分割生成の場合は最初の担当範囲のみ, 再開する場合は記録済の断片を出力)
+			if (0 <= resumeClasses) {
+				root.printNotice(String.format("ジャーナルから再開: 出力済のクラス %d 件", resumeClasses));
+				journal.replay(writer);
+			} else {
+				if ((shard == null || shard.isFirst()) && startedPackages == null) {
+					phase = beginPhase("cover");
+					makeCoverPage();
+					flush();
+					DocletEvents.endPhase(phase);
+				}
+				if (journal != null) {
+					journal.checkpoint(0, true);
+				}
+			}
+
+			// 目次の位置を予約
+			if (toc != null) {
+				writer.reserve();
+			}
 
-			// 表紙を作成
-			makeCoverPage();
+			// メンバ出力用のひな形を作成
+			makeTemplates();
 
 			// 出力済パッケージリストを初期化
 			packages = new ArrayList<PackageDoc>();
 
+			// フィルタを作成
+			filter = new DocFilter(options);
+
+			// 使用箇所を出力する場合は全てのメンバを調べて記録
+			if (Boolean.parseBoolean(options.getOption("usedby"))) {
+				phase = beginPhase("usedby");
+				usageIndex = UsageIndex.create(options, root.classes());
+				DocletEvents.endPhase(phase);
+			}
+
 			// 全てのクラスを出力
+			phase = beginPhase("classes");
 			makeClassPages();
+			DocletEvents.endPhase(phase);
+
+			// クラス階層とインタフェース階層を出力
+			if (hierarchy) {
+				phase = beginPhase("hierarchy");
+				makeHierarchyPages();
+				DocletEvents.endPhase(phase);
+			}
+
+			// 索引を出力
+			if (symbolIndex != null) {
+				phase = beginPhase("index");
+				makeIndexPage();
+				DocletEvents.endPhase(phase);
+			}
+
+			// 本文以外の構成要素を出力
+			phase = beginPhase("write");
+			if (toc != null) {
+				toc.write(word);
+				writer.fill(takeParagraphs());
+			}
+			ByteArrayOutputStream skeleton = new ByteArrayOutputStream();
+			word.write(skeleton);
+			if (fastOpen) {
+				putFastOpenSettings();
+			}
+			writer.finish(skeleton.toByteArray());
+			writer = null;
+			DocletEvents.endPhase(phase);
+
+			// ジャーナルを削除
+			if (journal != null) {
+				journal.close(true);
+				journal = null;
+			}
 
-			// Word ファイル保存
-			word.write(new FileOutputStream(Options.getOption("file", "document.docx")));
+			// キャッシュの効果を通知
+			root.printNotice(String.format("コメントキャッシュ: ヒット %d 件, ミス %d 件", commentCache.getHits(),
+					commentCache.getMisses()));
+			root.printNotice(String.format("フィルタ: 除外したクラス %d 件, 除外したメンバ %d 件", filter.getSkippedClasses(),
+					filter.getSkippedMembers()));
 
 		} finally {
 
+			// 待機している他の文書に生成を譲る
+			if (heapMonitor != null) {
+				heapMonitor.release();
+			}
+
+			// 出力を中断
+			if (writer != null) {
+				writer.abort();
+				writer = null;
+			}
+
+			// ジャーナルを閉じる (再開できるように残す)
+			if (journal != null) {
+				journal.close(false);
+				journal = null;
+			}
+
 			// Word 文書を閉じる
 			if (word != null) {
 				try {
@@ -111,33 +578,288 @@ public class DocumentBuilder {
 		Locale locale = new Locale("ja", "JP", "JP");
 		Calendar cal = Calendar.getInstance(locale);
 		DateFormat jformat = new SimpleDateFormat("GGGGy年M月d日", locale);
+		Date timestamp = options.getTimestamp();
+		if (timestamp != null) {
+			cal.setTime(timestamp);
+			jformat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		}
 		String stamp = jformat.format(cal.getTime());
 
 		// 表紙の情報を出力
-		run = DocumentStyle.setCoverParagraph(word.createParagraph(), 800);
+		run = style.setCoverParagraph(word.createParagraph(), 800);
 		run.setFontSize(28);
 		run.setBold(true);
-		run.setText(Options.getOption("title"));
-		run = DocumentStyle.setCoverParagraph(word.createParagraph(), 200);
+		run.setText(options.getOption("title"));
+		run = style.setCoverParagraph(word.createParagraph(), 200);
 		run.setFontSize(20);
 		run.setBold(true);
-		run.setText(Options.getOption("subtitle"));
-		run = DocumentStyle.setCoverParagraph(word.createParagraph(), 300);
+		run.setText(options.getOption("subtitle"));
+		run = style.setCoverParagraph(word.createParagraph(), 300);
 		run.setFontSize(18);
-		run.setText(Options.getOption("version"));
-		run = DocumentStyle.setCoverParagraph(word.createParagraph(), 800);
+		run.setText(options.getOption("version"));
+		run = style.setCoverParagraph(word.createParagraph(), 800);
 		run.setFontSize(16);
 		run.setText(stamp);
-		run = DocumentStyle.setCoverParagraph(word.createParagraph(), 300);
+		run = style.setCoverParagraph(word.createParagraph(), 300);
 		run.setFontSize(20);
-		run.setText(Options.getOption("company"));
+		run.setText(options.getOption("company"));
+	}
+
+	/**
+	 * メンバ出力用の段落のひな形を作成します。
+	 */
+	private void makeTemplates() {
+
+		// POI 操作
+		XWPFParagraph paragraph;
+		XWPFRun run;
+
+		// 見出し, 宣言, 説明
+		paragraph = ParagraphTemplate.newParagraph(word);
+		run = style.setSubTitleParagraph(paragraph, 100);
+		subTitleTemplate = new ParagraphTemplate(paragraph, run, null);
+		paragraph = ParagraphTemplate.newParagraph(word);
+		run = style.getDefaultRun(paragraph, 0);
+		signatureTemplate = new ParagraphTemplate(paragraph, run, null);
+		paragraph = ParagraphTemplate.newParagraph(word);
+		run = style.getDefaultRun(paragraph, 200);
+		commentTemplate = new ParagraphTemplate(paragraph, run, null);
+
+		// セクション見出し
+		paragraph = ParagraphTemplate.newParagraph(word);
+		run = style.setSectionParagraph(paragraph, 100);
+		paramHeaderTemplate = new ParagraphTemplate(paragraph, run, "パラメータ:");
+		returnHeaderTemplate = new ParagraphTemplate(paragraph, run, "戻り値:");
+		throwsHeaderTemplate = new ParagraphTemplate(paragraph, run, "例外:");
+
+		// 索引の項目
+		paragraph = ParagraphTemplate.newParagraph(word);
+		run = style.getDefaultRun(paragraph, 0);
+		indexTemplate = new ParagraphTemplate(paragraph, run, null);
+
+		// 区切り線
+		paragraph = ParagraphTemplate.newParagraph(word);
+		style.setSeparatorParagraph(paragraph);
+		separatorTemplate = new ParagraphTemplate(paragraph, null, null);
 	}
 
 	/**
-	 * 改ページを挿入します。
+	 * 改ページした段落を作成します。
+	 * <p>
+	 * 出力済の段落は文書から取り除かれるため、直前の段落の末尾ではなく新たな段落の前で改ページします。
+	 *
+	 * @return 段落
 	 */
-	private void newPage() {
-		word.getLastParagraph().createRun().addBreak(BreakType.PAGE);
+	private XWPFParagraph newPage() {
+		XWPFParagraph paragraph = word.createParagraph();
+		paragraph.setPageBreak(true);
+		return paragraph;
+	}
+
+	/**
+	 * 本文の出力スレッドを開始します。
+	 * <p>
+	 * 本文の開始部分と終了部分は、段落を作成する前の Word 文書の本文 (セクションの設定のみ) から作成します。
+	 *
+	 * @param out
+	 *            出力ストリーム
+	 * @return 本文の出力処理
+	 * @throws IOException
+	 */
+	private DocumentWriter startWriter(OutputStream out) throws IOException {
+
+		// 段落を含まない本文を XML に変換
+		XmlOptions xmlOptions = new XmlOptions();
+		xmlOptions.setSaveSyntheticDocumentElement(new QName(W_NAMESPACE, "document"));
+		xmlOptions.setSaveSuggestedPrefixes(SUGGESTED_PREFIXES);
+		xmlOptions.setSaveAggressiveNamespaces();
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		word.getDocument().save(buf, xmlOptions);
+		String xml = buf.toString("UTF-8");
+
+		// body 要素の開始タグの前後で分割
+		String tag = "<w:body>";
+		int pos = xml.indexOf(tag) + tag.length();
+		if (pos < tag.length()) {
+			throw new IOException("本文の構造が不正です。");
+		}
+		byte[] prefix = xml.substring(0, pos).getBytes("UTF-8");
+		byte[] suffix = xml.substring(pos).getBytes("UTF-8");
+
+		// 出力スレッドを開始
+		DocumentWriter documentWriter = new DocumentWriter(out, prefix, suffix, QUEUE_CAPACITY,
+				options.getZipThreads());
+		Date timestamp = options.getTimestamp();
+		if (timestamp != null) {
+			documentWriter.setTime(timestamp.getTime());
+		}
+		documentWriter.start();
+		return documentWriter;
+	}
+
+	/**
+	 * 開く処理を軽くする文書の設定を出力スレッドに渡します。
+	 * <p>
+	 * POI が出力した文書の設定に、スペルチェックと文章校正の結果を表示しない設定を追加します。
+	 * Word は表示しない校正を文書を開いた時点で実行しないため、大きな文書を開く時間が短くなります。
+	 *
+	 * @throws IOException
+	 */
+	private void putFastOpenSettings() throws IOException {
+		for (POIXMLDocumentPart part : word.getRelations()) {
+			if (part instanceof XWPFSettings) {
+
+				// 出力済の設定を読み込み
+				PackagePart packagePart = part.getPackagePart();
+				SettingsDocument settingsDocument;
+				InputStream in = packagePart.getInputStream();
+				try {
+					settingsDocument = SettingsDocument.Factory.parse(in);
+				} catch (XmlException e) {
+					throw new IOException("文書の設定を読み込めません。", e);
+				} finally {
+					in.close();
+				}
+
+				// 校正の結果を表示しない設定を追加
+				CTSettings settings = settingsDocument.getSettings();
+				if (!settings.isSetHideSpellingErrors()) {
+					settings.addNewHideSpellingErrors();
+				}
+				if (!settings.isSetHideGrammaticalErrors()) {
+					settings.addNewHideGrammaticalErrors();
+				}
+
+				// 出力スレッドに渡す
+				XmlOptions xmlOptions = new XmlOptions();
+				xmlOptions.setSaveSuggestedPrefixes(SUGGESTED_PREFIXES);
+				ByteArrayOutputStream buf = new ByteArrayOutputStream();
+				settingsDocument.save(buf, xmlOptions);
+				writer.putPart(packagePart.getPartName().getName().substring(1), buf.toByteArray());
+				return;
+			}
+		}
+		throw new IOException("文書の設定がありません。");
+	}
+
+	/**
+	 * 生成処理の段階の開始を記録します。
+	 *
+	 * @param name
+	 *            段階の名前
+	 * @return イベント (記録しない場合は null)
+	 */
+	private Object beginPhase(String name) {
+		if (heapMonitor != null) {
+			heapMonitor.setPhase(name);
+		}
+		return DocletEvents.beginPhase(name);
+	}
+
+	/**
+	 * 作成済の段落が一定数を超えた場合は出力スレッドに渡します。
+	 * <p>
+	 * Word 文書から段落を取り除く処理は段落数に比例した時間がかかるため、メンバの多いクラスではクラスの途中でも段落を渡します。
+	 * ヒープの使用量が予算を超えている場合は段落数によらず渡します。
+	 *
+	 * @throws IOException
+	 */
+	private void flushIfFull() throws IOException {
+		if (FLUSH_THRESHOLD <= word.getParagraphs().size() || (heapMonitor != null && heapMonitor.isOverBudget())) {
+			flush();
+		}
+	}
+
+	/**
+	 * ヒープの使用量が予算を超えている場合はメモリを解放します。
+	 * <p>
+	 * 作成済の段落を出力スレッドに渡して書き込みを待ち、キャッシュを破棄します。並行して生成している他の文書は予算内に戻るまで待機します。
+	 *
+	 * @param classDoc
+	 *            出力するクラス
+	 * @throws IOException
+	 */
+	private void relieveHeap(ClassDoc classDoc) throws IOException {
+		if (heapMonitor == null) {
+			return;
+		}
+		String location = new File(options.getOption("file", "document.docx")).getName() + " "
+				+ classDoc.qualifiedName();
+		try {
+			if (heapMonitor.checkpoint(location)) {
+				flush();
+				writer.drain();
+				commentCache.clear();
+				lexer.clear();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	/**
+	 * 作成済の段落を XML に変換して出力スレッドに渡し、Word 文書から取り除きます。
+	 *
+	 * @throws IOException
+	 */
+	private void flush() throws IOException {
+
+		// 段落がない場合は終了
+		List<XWPFParagraph> paragraphs = word.getParagraphs();
+		if (paragraphs.isEmpty()) {
+			return;
+		}
+
+		// 目次のページ番号を見積もり
+		if (toc != null) {
+			for (XWPFParagraph paragraph : paragraphs) {
+				toc.measure(paragraph);
+			}
+		}
+
+		// 出力スレッドに渡す
+		emit(takeParagraphs());
+	}
+
+	/**
+	 * 作成済の段落を XML に変換して Word 文書から取り除きます。
+	 *
+	 * @return XML に変換した本文の断片
+	 * @throws IOException
+	 */
+	private byte[] takeParagraphs() throws IOException {
+
+		// 段落を XML に変換
+		ByteArrayOutputStream buf = new ByteArrayOutputStream(8192);
+		for (XWPFParagraph paragraph : word.getParagraphs()) {
+			paragraph.getCTP().save(buf, FRAGMENT_OPTIONS);
+		}
+
+		// Word 文書から取り除く
+		for (int i = word.getBodyElements().size() - 1; 0 <= i; i--) {
+			word.removeBodyElement(i);
+		}
+		return buf.toByteArray();
+	}
+
+	/**
+	 * 本文の断片を出力スレッドに渡してジャーナルに記録します。
+	 * <p>
+	 * クラスの区間の内部では、区間の内容の値の計算にも使用します。
+	 *
+	 * @param fragment
+	 *            XML に変換した本文の断片
+	 * @throws IOException
+	 */
+	private void emit(byte[] fragment) throws IOException {
+		writer.write(fragment);
+		if (journal != null) {
+			journal.append(fragment);
+		}
+		if (sectionDigest != null) {
+			sectionDigest.update(fragment);
+		}
 	}
 
 	/**
@@ -233,14 +955,41 @@ public class DocumentBuilder {
 
 	/**
 	 * 全てのクラスの情報を出力します。
+	 * <p>
+	 * クラスごとに作成した段落を出力スレッドに渡します。
+	 *
+	 * @throws IOException
 	 */
-	private void makeClassPages() {
+	private void makeClassPages() throws IOException {
 
 		// 出力文字
 		String str;
 
 		// 全てのクラス
-		for (ClassDoc classDoc : root.classes()) {
+		ClassDoc[] classes = root.classes();
+		for (int index = 0; index < classes.length; index++) {
+			ClassDoc classDoc = classes[index];
+
+			// 担当範囲外のクラスは除外
+			if (shardPackages != null && !shardPackages.contains(classDoc.containingPackage().name())) {
+				continue;
+			}
+
+			// 出力対象外のクラスは除外
+			if (!filter.accept(classDoc)) {
+				continue;
+			}
+
+			// 継承関係のグラフに追加
+			typeGraph.add(classDoc);
+
+			// ジャーナルに記録済のクラスは出力済パッケージのみ更新
+			if (index < resumeClasses) {
+				if (!packages.contains(classDoc.containingPackage())) {
+					packages.add(classDoc.containingPackage());
+				}
+				continue;
+			}
 
 			// POI 操作
 			XWPFRun run;
@@ -248,21 +997,29 @@ public class DocumentBuilder {
 			// パッケージ
 			PackageDoc packageDoc = classDoc.containingPackage();
 
-			// 新たなパッケージの場合
-			if (!packages.contains(packageDoc)) {
+			// ヒープの使用量が予算を超えている場合はメモリを解放
+			relieveHeap(classDoc);
+
+			// クラスの区間を開始
+			Object event = DocletEvents.beginClass(classDoc.qualifiedName());
+			emit(DocxPatcher.getStartMarker(classDoc.qualifiedName(), index));
+			sectionDigest = DocxPatcher.newDigest();
 
-				// 改ページ
-				newPage();
+			// 新たなパッケージの場合
+			if (!packages.contains(packageDoc)
+					&& (startedPackages == null || !startedPackages.contains(packageDoc.name()))) {
 
-				// パッケージ名
-				run = DocumentStyle.setChapterTitleParagraph(word.createParagraph(), 0);
+				// 改ページしてパッケージ名
+				run = style.setChapterTitleParagraph(newPage(), 0, 0);
 				print(run, packageDoc.name() + " パッケージ");
 
 				// パッケージ説明
 				str = packageDoc.commentText();
 				if (!str.isEmpty()) {
-					DocumentStyle.setSeparatorParagraph(word.createParagraph());
-					run = DocumentStyle.getDefaultRun(word.createParagraph(), 0);
+					if (!fastOpen) {
+						style.setSeparatorParagraph(word.createParagraph());
+					}
+					run = style.getDefaultRun(word.createParagraph(), 0);
 					print(run, str);
 				}
 
@@ -270,45 +1027,30 @@ public class DocumentBuilder {
 				packages.add(packageDoc);
 			}
 
-			// 改ページ
-			newPage();
-
-			// パッケージ名
-			run = DocumentStyle.getDefaultRun(word.createParagraph(), 0);
+			// 改ページしてパッケージ名
+			run = style.getDefaultRun(newPage(), 0);
 			print(run, classDoc.containingPackage().name() + " パッケージ");
 
 			// クラス
-			run = DocumentStyle.setChapterTitleParagraph(word.createParagraph(), 100);
+			run = style.setChapterTitleParagraph(word.createParagraph(), 100, 1);
 			print(run, classDoc.name() + " クラス");
+			if (symbolIndex != null) {
+				symbolIndex.addClass(classDoc);
+			}
 
 			// 継承階層
-			List<ClassDoc> classDocs = new ArrayList<ClassDoc>();
-			classDocs.add(classDoc);
-			ClassDoc d = classDoc.superclass();
-			while (d != null) {
-				classDocs.add(d);
-				d = d.superclass();
-			}
-			run = DocumentStyle.getDefaultRun(word.createParagraph(), 0);
-			Collections.reverse(classDocs);
+			List<ClassDoc> classDocs = typeGraph.getSuperclassChain(classDoc);
+			run = style.getDefaultRun(word.createParagraph(), 0);
 			for (int i = 0; i < classDocs.size(); i++) {
 				if (0 < i) {
 					run.addBreak();
 				}
-				str = "";
-				for (int j = 1; j < i; j++) {
-					str += "　　 ";
-				}
-				if (0 < i) {
-					str += "　└ ";
-				}
-				str += classDocs.get(i).qualifiedName();
-				print(run, str);
+				print(run, typeGraph.getTreePrefix(i) + classDocs.get(i).qualifiedName());
 			}
 
 			// インターフェイス
 			if (0 < classDoc.interfaces().length) {
-				run = DocumentStyle.setSectionParagraph(word.createParagraph(), 100);
+				run = style.setSectionParagraph(word.createParagraph(), 100);
 				print(run, "すべての実装されたインタフェース:");
 				str = "";
 				for (int i = 0; i < classDoc.interfaces().length; i++) {
@@ -317,22 +1059,22 @@ public class DocumentBuilder {
 					}
 					str += classDoc.interfaces()[i].qualifiedName();
 				}
-				run = DocumentStyle.getDefaultRun(word.createParagraph(), 200);
+				run = style.getDefaultRun(word.createParagraph(), 200);
 				print(run, str);
 			}
 
 			// クラス説明
-			run = DocumentStyle.setSubTitleParagraph(word.createParagraph(), 200);
+			run = style.setSubTitleParagraph(word.createParagraph(), 200);
 			print(run, classDoc.modifiers() + " " + classDoc.name());
-			run = DocumentStyle.getDefaultRun(word.createParagraph(), 0);
+			run = style.getDefaultRun(word.createParagraph(), 0);
 			print(run, classDoc.commentText());
 
 			// バージョン
 			Tag[] versionTags = classDoc.tags("version");
 			if (0 < versionTags.length) {
-				run = DocumentStyle.setSectionParagraph(word.createParagraph(), 100);
+				run = style.setSectionParagraph(word.createParagraph(), 100);
 				print(run, "バージョン:");
-				run = DocumentStyle.getDefaultRun(word.createParagraph(), 200);
+				run = style.getDefaultRun(word.createParagraph(), 200);
 				for (int i = 0; i < versionTags.length; i++) {
 					if (0 < i) {
 						run.addBreak();
@@ -344,9 +1086,9 @@ public class DocumentBuilder {
 			// 作成者
 			Tag[] authorTags = classDoc.tags("author");
 			if (0 < authorTags.length) {
-				run = DocumentStyle.setSectionParagraph(word.createParagraph(), 100);
+				run = style.setSectionParagraph(word.createParagraph(), 100);
 				print(run, "作成者:");
-				run = DocumentStyle.getDefaultRun(word.createParagraph(), 200);
+				run = style.getDefaultRun(word.createParagraph(), 200);
 				for (int i = 0; i < authorTags.length; i++) {
 					if (0 < i) {
 						run.addBreak();
@@ -356,53 +1098,183 @@ public class DocumentBuilder {
 			}
 
 			// 全ての定数
-			if (0 < classDoc.enumConstants().length) {
-				run = DocumentStyle.setTitleParagraph(word.createParagraph(), 100);
+			FieldDoc[] enumConstants = filter.accept(classDoc.enumConstants());
+			if (0 < enumConstants.length) {
+				run = style.setTitleParagraph(word.createParagraph(), 100);
 				print(run, "定数の詳細");
-				for (int i = 0; i < classDoc.enumConstants().length; i++) {
-					if (0 < i) {
-						DocumentStyle.setSeparatorParagraph(word.createParagraph());
+				for (int i = 0; i < enumConstants.length; i++) {
+					if (0 < i && !fastOpen) {
+						separatorTemplate.create(word);
 					}
-					writeFieldDoc(classDoc.enumConstants()[i]);
+					writeFieldDoc(enumConstants[i]);
+					flushIfFull();
 				}
 			}
 
 			// 全てのフィールド
-			if (0 < classDoc.fields().length) {
-				run = DocumentStyle.setTitleParagraph(word.createParagraph(), 100);
+			FieldDoc[] fields = filter.accept(classDoc.fields());
+			if (0 < fields.length) {
+				run = style.setTitleParagraph(word.createParagraph(), 100);
 				print(run, "フィールドの詳細");
-				for (int i = 0; i < classDoc.fields().length; i++) {
-					if (0 < i) {
-						DocumentStyle.setSeparatorParagraph(word.createParagraph());
+				for (int i = 0; i < fields.length; i++) {
+					if (0 < i && !fastOpen) {
+						separatorTemplate.create(word);
 					}
-					writeFieldDoc(classDoc.fields()[i]);
+					writeFieldDoc(fields[i]);
+					flushIfFull();
 				}
 			}
 
 			// 全てのコンストラクタ
-			if (0 < classDoc.constructors().length) {
-				run = DocumentStyle.setTitleParagraph(word.createParagraph(), 100);
+			ConstructorDoc[] constructors = filter.accept(classDoc.constructors());
+			if (0 < constructors.length) {
+				run = style.setTitleParagraph(word.createParagraph(), 100);
 				print(run, "コンストラクタの詳細");
-				for (int i = 0; i < classDoc.constructors().length; i++) {
-					if (0 < i) {
-						DocumentStyle.setSeparatorParagraph(word.createParagraph());
+				for (int i = 0; i < constructors.length; i++) {
+					if (0 < i && !fastOpen) {
+						separatorTemplate.create(word);
 					}
-					writeMemberDoc(classDoc.constructors()[i]);
+					writeMemberDoc(constructors[i]);
+					flushIfFull();
 				}
 			}
 
 			// 全てのメソッド
-			if (0 < classDoc.methods().length) {
-				run = DocumentStyle.setTitleParagraph(word.createParagraph(), 100);
+			MethodDoc[] methods = filter.accept(classDoc.methods());
+			if (0 < methods.length) {
+				run = style.setTitleParagraph(word.createParagraph(), 100);
 				print(run, "メソッドの詳細");
-				for (int i = 0; i < classDoc.methods().length; i++) {
-					if (0 < i) {
-						DocumentStyle.setSeparatorParagraph(word.createParagraph());
+				for (int i = 0; i < methods.length; i++) {
+					if (0 < i && !fastOpen) {
+						separatorTemplate.create(word);
+					}
+					writeMemberDoc(methods[i]);
+					flushIfFull();
+				}
+			}
+
+			// 使用箇所
+			if (usageIndex != null) {
+				List<String> usages = usageIndex.getUsages(classDoc);
+				if (!usages.isEmpty()) {
+					run = style.setTitleParagraph(word.createParagraph(), 100);
+					print(run, "使用箇所");
+					for (String usage : usages) {
+						run = style.getDefaultRun(word.createParagraph(), 200);
+						print(run, usage);
+						flushIfFull();
 					}
-					writeMemberDoc(classDoc.methods()[i]);
 				}
 			}
+
+			// 出力スレッドに渡す
+			flush();
+
+			// クラスの区間を終了
+			byte[] digest = sectionDigest.digest();
+			sectionDigest = null;
+			emit(DocxPatcher.getEndMarker(index, digest));
+			DocletEvents.endClass(event, enumConstants.length + fields.length, constructors.length, methods.length);
+
+			// チェックポイントを記録
+			if (journal != null) {
+				journal.checkpoint(index + 1, false);
+			}
+		}
+	}
+
+	/**
+	 * クラス階層とインタフェース階層を出力するか判定します。
+	 * <p>
+	 * 階層は全てのクラスを出力した後にまとめて出力するため、分割生成と既存の文書の更新とは同時に指定できません。
+	 *
+	 * @return 出力する場合は true を返却します。
+	 */
+	private boolean isHierarchyRequested() {
+		if (!Boolean.parseBoolean(options.getOption("hierarchy"))) {
+			return false;
+		}
+		if (!options.getOption("shard").isEmpty() || !options.getOption("patch").isEmpty()
+				|| !options.getOption("watch").isEmpty()) {
+			throw new IllegalArgumentException("-hierarchy オプションは -shard, -patch, -watch オプションと同時に指定できません。");
+		}
+		return true;
+	}
+
+	/**
+	 * クラス階層とインタフェース階層を出力します。
+	 * <p>
+	 * クラスの出力中に作成した継承関係のグラフを、最上位から字下げした木の形で出力します。
+	 * 出力対象のクラスと、それらをつなぐ出力対象外のスーパークラスとスーパーインタフェースを含みます。
+	 *
+	 * @throws IOException
+	 */
+	private void makeHierarchyPages() throws IOException {
+
+		// 改ページしてクラス階層
+		XWPFRun run = style.setChapterTitleParagraph(newPage(), 0, 0);
+		print(run, "クラス階層");
+		for (ClassDoc classDoc : typeGraph.getClassRoots()) {
+			writeHierarchy(classDoc, 0, false);
+		}
+
+		// 改ページしてインタフェース階層
+		run = style.setChapterTitleParagraph(newPage(), 0, 0);
+		print(run, "インタフェース階層");
+		for (ClassDoc classDoc : typeGraph.getInterfaceRoots()) {
+			writeHierarchy(classDoc, 0, true);
+		}
+
+		// 出力スレッドに渡す
+		flush();
+	}
+
+	/**
+	 * 階層の 1 つのクラスとその子孫を出力します。
+	 *
+	 * @param classDoc
+	 *            クラスまたはインタフェース
+	 * @param depth
+	 *            階層の深さ (最上位は 0)
+	 * @param isInterface
+	 *            インタフェース階層の場合は true
+	 * @throws IOException
+	 */
+	private void writeHierarchy(ClassDoc classDoc, int depth, boolean isInterface) throws IOException {
+		XWPFRun run = style.getDefaultRun(word.createParagraph(), 0);
+		print(run, typeGraph.getTreePrefix(depth) + classDoc.qualifiedName());
+		flushIfFull();
+		List<ClassDoc> children = isInterface ? typeGraph.getSubinterfaces(classDoc)
+				: typeGraph.getSubclasses(classDoc);
+		for (ClassDoc child : children) {
+			writeHierarchy(child, depth + 1, isInterface);
+		}
+	}
+
+	/**
+	 * 索引を出力します。
+	 * <p>
+	 * クラスの出力中に記録した全てのクラスとメンバを名前順に並べ替えて、それぞれの見出しへのリンクを出力します。
+	 *
+	 * @throws IOException
+	 */
+	private void makeIndexPage() throws IOException {
+
+		// 名前順に並べ替え
+		symbolIndex.sort();
+
+		// 改ページして索引の見出し
+		XWPFRun run = style.setChapterTitleParagraph(newPage(), 0, 0);
+		print(run, "索引");
+
+		// 全ての項目
+		for (int i = 0; i < symbolIndex.size(); i++) {
+			indexTemplate.createLink(word, symbolIndex.getAnchor(i), symbolIndex.getText(i));
+			flushIfFull();
 		}
+
+		// 出力スレッドに渡す
+		flush();
 	}
 
 	/**
@@ -425,11 +1297,14 @@ public class DocumentBuilder {
 
 		// フィールド情報
 		XWPFRun run;
-		run = DocumentStyle.setSubTitleParagraph(word.createParagraph(), 100);
+		run = subTitleTemplate.create(word);
+		if (symbolIndex != null) {
+			symbolIndex.addMember(doc, fieldType, (XWPFParagraph) run.getParent());
+		}
 		print(run, doc.name() + " " + fieldType);
-		run = DocumentStyle.getDefaultRun(word.createParagraph(), 0);
+		run = fastOpen ? signatureTemplate.append(run) : signatureTemplate.create(word);
 		print(run, doc.modifiers() + " " + doc.name());
-		run = DocumentStyle.getDefaultRun(word.createParagraph(), 200);
+		run = commentTemplate.create(word);
 		print(run, doc.commentText());
 	}
 
@@ -456,9 +1331,12 @@ public class DocumentBuilder {
 
 		// メソッド情報
 		XWPFRun run;
-		run = DocumentStyle.setSubTitleParagraph(word.createParagraph(), 100);
+		run = subTitleTemplate.create(word);
+		if (symbolIndex != null) {
+			symbolIndex.addMember(doc, memberType, (XWPFParagraph) run.getParent());
+		}
 		print(run, doc.name() + " " + memberType);
-		run = DocumentStyle.getDefaultRun(word.createParagraph(), 0);
+		run = fastOpen ? signatureTemplate.append(run) : signatureTemplate.create(word);
 		str = doc.modifiers();
 		if (doc instanceof MethodDoc) {
 			MethodDoc method = (MethodDoc) doc;
@@ -468,22 +1346,21 @@ public class DocumentBuilder {
 		str += " (" + getParamSignature(doc.parameters()) + ")";
 		print(run, str);
 		if (!doc.commentText().isEmpty()) {
-			run = DocumentStyle.getDefaultRun(word.createParagraph(), 200);
+			run = commentTemplate.create(word);
 			print(run, doc.commentText());
 		}
 
 		// パラメータ
 		Parameter[] parameters = doc.parameters();
 		if (0 < parameters.length) {
-			run = DocumentStyle.setSectionParagraph(word.createParagraph(), 100);
-			print(run, "パラメータ:");
+			paramHeaderTemplate.create(word);
 			for (int i = 0; i < parameters.length; i++) {
 				str = String.format("%d) ", i + 1) + parameters[i].name();
 				String comment = getParamComment(doc.paramTags(), parameters[i].name());
 				if (!comment.isEmpty()) {
 					str += " - " + comment;
 				}
-				run = DocumentStyle.getDefaultRun(word.createParagraph(), 200);
+				run = commentTemplate.create(word);
 				print(run, str);
 			}
 		}
@@ -492,8 +1369,7 @@ public class DocumentBuilder {
 		if (doc instanceof MethodDoc) {
 			MethodDoc method = (MethodDoc) doc;
 			if (!method.returnType().simpleTypeName().equals("void")) {
-				run = DocumentStyle.setSectionParagraph(word.createParagraph(), 100);
-				print(run, "戻り値:");
+				returnHeaderTemplate.create(word);
 				str = method.returnType().simpleTypeName();
 				Tag[] tags = method.tags("return");
 				if (0 < tags.length) {
@@ -502,7 +1378,7 @@ public class DocumentBuilder {
 						str += " - " + comment;
 					}
 				}
-				run = DocumentStyle.getDefaultRun(word.createParagraph(), 200);
+				run = commentTemplate.create(word);
 				print(run, str);
 			}
 		}
@@ -510,15 +1386,14 @@ public class DocumentBuilder {
 		// 例外
 		Type[] exceptions = doc.thrownExceptionTypes();
 		if (0 < exceptions.length) {
-			run = DocumentStyle.setSectionParagraph(word.createParagraph(), 100);
-			print(run, "例外:");
+			throwsHeaderTemplate.create(word);
 			for (int i = 0; i < exceptions.length; i++) {
 				str = exceptions[i].simpleTypeName();
 				String comment = getThrowsComment(doc.throwsTags(), exceptions[i].typeName());
 				if (!comment.isEmpty()) {
 					str += " - " + comment;
 				}
-				run = DocumentStyle.getDefaultRun(word.createParagraph(), 200);
+				run = commentTemplate.create(word);
 				print(run, str);
 			}
 		}
@@ -530,6 +1405,10 @@ public class DocumentBuilder {
 	 * HTMLタグは簡易的に解釈します。処理しないHTMLタグは削除して文字情報のみ出力します。
 	 * <p>
 	 * Javadocのインラインタグはフォントを切り替えて文字部分のみ出力します。
+	 * <p>
+	 * pre 要素で囲まれたコード例は構文強調した段落として出力します。
+	 * <p>
+	 * 同じ書式で出力済のコメントはキャッシュした出力結果を複製します。
 	 *
 	 * @param run
 	 *            文字出力用のハンドル
@@ -538,12 +1417,171 @@ public class DocumentBuilder {
 	 */
 	private void print(XWPFRun run, String str) {
 
+		// キャッシュした出力結果を複製
+		Object event = DocletEvents.beginComment(str == null ? 0 : str.length());
+		String key = commentCache.getKey(word, run, str,
+				options.getOption("font2", "Consolas") + "," + options.getOption("profile"));
+		if (key == null) {
+			render(run, str);
+			DocletEvents.endComment(event, false);
+			return;
+		}
+		if (commentCache.replay(key, word, run)) {
+			DocletEvents.endComment(event, true);
+			return;
+		}
+
+		// 出力して結果を記憶
+		int paragraphIndex = word.getParagraphs().size() - 1;
+		int runIndex = word.getLastParagraph().getCTP().sizeOfRArray() - 1;
+		render(run, str);
+		commentCache.store(key, word, paragraphIndex, runIndex);
+		DocletEvents.endComment(event, false);
+	}
+
+	/**
+	 * Javadoc の情報を解釈して出力します。
+	 *
+	 * @param run
+	 *            文字出力用のハンドル
+	 * @param str
+	 *            出力する Javadoc 文字情報
+	 */
+	private void render(XWPFRun run, String str) {
+
+		// コード例ごとに処理
+		Matcher m = PRE_PATTERN.matcher(str);
+		int pos = 0;
+		while (m.find()) {
+			printText(run, str.substring(pos, m.start()));
+			int indent = Math.max(word.getLastParagraph().getIndentFromLeft(), 0);
+			printCode(m.group(1), indent + 200);
+			pos = m.end();
+
+			// 後続の文字情報がある場合は元のインデントで段落を再開
+			if (pos < str.length()) {
+				run = style.getDefaultRun(word.createParagraph(), indent);
+			}
+		}
+		if (pos == 0 || pos < str.length()) {
+			printText(run, str.substring(pos));
+		}
+	}
+
+	/**
+	 * コード例を構文強調して出力します。
+	 *
+	 * @param str
+	 *            pre 要素の内容
+	 * @param indent
+	 *            インデント幅
+	 */
+	private void printCode(String str, int indent) {
+
+		// インラインタグの除去 (タグ内はエンティティ参照を復元しない)
+		Matcher m = CODE_TAG_PATTERN.matcher(str);
+		String code;
+		if (m.matches()) {
+			code = m.group(1);
+		} else {
+			code = str.replaceAll("</?([a-z]+|[A-Z]+)>", "");
+			code = code.replaceAll("&lt;", "<");
+			code = code.replaceAll("&gt;", ">");
+			code = code.replaceAll("&quot;", "\"");
+			code = code.replaceAll("&apos;", "'");
+			code = code.replaceAll("&nbsp;", " ");
+			code = code.replaceAll("&amp;", "&");
+		}
+		code = trimCode(code);
+		if (code.isEmpty()) {
+			return;
+		}
+
+		// 字句ごとに出力
+		XWPFParagraph paragraph = word.createParagraph();
+		style.setCodeParagraph(paragraph, indent);
+		int[] tokens = lexer.tokenize(code);
+		for (int i = 0; i < tokens.length; i += 3) {
+			XWPFRun run = style.getCodeRun(paragraph, tokens[i]);
+			int start = tokens[i + 1];
+			int end = tokens[i + 2];
+			int pos = start;
+			while (pos < end) {
+				int lf = code.indexOf('\n', pos);
+				if (lf < 0 || end <= lf) {
+					run.setText(code.substring(pos, end));
+					break;
+				}
+				if (pos < lf) {
+					run.setText(code.substring(pos, lf));
+				}
+				run.addBreak();
+				pos = lf + 1;
+			}
+		}
+	}
+
+	/**
+	 * コード例の前後の空行と共通の字下げを除去します。
+	 *
+	 * @param code
+	 *            コード文字列
+	 * @return 整形したコード文字列
+	 */
+	private String trimCode(String code) {
+
+		// 前後の空行を除去
+		String[] lines = code.replace("\r", "").replace("\t", "    ").split("\n");
+		int first = 0;
+		int last = lines.length - 1;
+		while (first <= last && lines[first].trim().isEmpty()) {
+			first++;
+		}
+		while (first <= last && lines[last].trim().isEmpty()) {
+			last--;
+		}
+
+		// 共通の字下げ幅を算出
+		int common = Integer.MAX_VALUE;
+		for (int i = first; i <= last; i++) {
+			String line = lines[i];
+			if (!line.trim().isEmpty()) {
+				int n = 0;
+				while (n < line.length() && line.charAt(n) == ' ') {
+					n++;
+				}
+				common = Math.min(common, n);
+			}
+		}
+
+		// 字下げを除去して結合
+		StringBuilder sb = new StringBuilder();
+		for (int i = first; i <= last; i++) {
+			if (first < i) {
+				sb.append('\n');
+			}
+			String line = lines[i];
+			sb.append(line.length() < common ? "" : line.substring(common));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Javadoc の文字情報を出力します。
+	 *
+	 * @param run
+	 *            文字出力用のハンドル
+	 * @param str
+	 *            出力する Javadoc 文字情報
+	 */
+	private void printText(XWPFRun run, String str) {
+
 		// 段落ごとに処理
 		String[] paragraphs = str.split("\\s*<(p|P)>\\s*");
 		for (int i = 0; i < paragraphs.length; i++) {
 			if (0 < i) {
 				int indent = word.getLastParagraph().getIndentFromLeft();
-				run = DocumentStyle.getDefaultRun(word.createParagraph(), indent);
+				run = style.getDefaultRun(word.createParagraph(), indent);
 			}
 
 			// 改行の結合
@@ -583,10 +1621,9 @@ public class DocumentBuilder {
 
 					// Javadocインラインタグ付き文字として出力
 					if (!value.isEmpty()) {
-						XWPFRun runTaggedString = DocumentStyle.getDefaultRun(word.getLastParagraph(), -1);
-						runTaggedString.setFontFamily(Options.getOption("font2", "Consolas"));
+						XWPFRun runTaggedString = style.getTaggedRun(word.getLastParagraph());
 						runTaggedString.setText(value);
-						run = DocumentStyle.getDefaultRun(word.getLastParagraph(), -1);
+						run = style.getDefaultRun(word.getLastParagraph(), -1);
 					}
 				}
 
@@ -7,6 +7,7 @@ import org.apache.poi.xwpf.usermodel.LineSpacingRule;
 import org.apache.poi.xwpf.usermodel.ParagraphAlignment;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
 import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTDecimalNumber;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPPr;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSpacing;
 
@@ -15,6 +16,21 @@ import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSpacing;
  */
 public class DocumentStyle {
 
+	/**
+	 * 実行時オプション
+	 */
+	private final Options options;
+
+	/**
+	 * インスタンスを作成します。
+	 *
+	 * @param options
+	 *            実行時オプション
+	 */
+	public DocumentStyle(Options options) {
+		this.options = options;
+	}
+
 	/**
 	 * 段落の行間を設定します。
 	 *
@@ -33,6 +49,25 @@ public class DocumentStyle {
 		spacing.setLine(BigInteger.valueOf(space));
 	}
 
+	/**
+	 * 段落の見出しレベルを設定します。
+	 * <p>
+	 * 見出しレベルはナビゲーションウィンドウと目次の階層になります。
+	 *
+	 * @param paragraph
+	 *            段落
+	 * @param level
+	 *            見出しレベル (0 から開始)
+	 */
+	private static void setOutlineLevel(XWPFParagraph paragraph, int level) {
+		CTPPr ppr = paragraph.getCTP().getPPr();
+		if (ppr == null) {
+			ppr = paragraph.getCTP().addNewPPr();
+		}
+		CTDecimalNumber outline = ppr.isSetOutlineLvl() ? ppr.getOutlineLvl() : ppr.addNewOutlineLvl();
+		outline.setVal(BigInteger.valueOf(level));
+	}
+
 	/**
 	 * 標準の段落を設定します。
 	 *
@@ -42,7 +77,7 @@ public class DocumentStyle {
 	 *            インデント幅 (インデント幅が 0 未満の場合はインデント幅を設定しません)
 	 * @return 文字出力ハンドル
 	 */
-	public static XWPFRun getDefaultRun(XWPFParagraph paragraph, int indent) {
+	public XWPFRun getDefaultRun(XWPFParagraph paragraph, int indent) {
 
 		// 段落を設定
 		paragraph.setAlignment(ParagraphAlignment.LEFT);
@@ -55,7 +90,7 @@ public class DocumentStyle {
 
 		// 文字を設定
 		XWPFRun run = paragraph.createRun();
-		run.setFontFamily(Options.getOption("font1", "Meiryo UI"));
+		run.setFontFamily(options.getOption("font1", "Meiryo UI"));
 		run.setFontSize(9);
 		run.setBold(false);
 		run.setItalic(false);
@@ -64,6 +99,22 @@ public class DocumentStyle {
 		return run;
 	}
 
+	/**
+	 * Javadoc インラインタグ付き文字の文字出力ハンドルを作成します。
+	 * <p>
+	 * 開く処理を軽くする出力プロファイルでは、コード例と同様に文字に校正の対象外 (noProof) を設定します。
+	 *
+	 * @param paragraph
+	 *            段落
+	 * @return 文字出力ハンドル
+	 */
+	public XWPFRun getTaggedRun(XWPFParagraph paragraph) {
+		XWPFRun run = getDefaultRun(paragraph, -1);
+		run.setFontFamily(options.getOption("font2", "Consolas"));
+		setNoProof(run);
+		return run;
+	}
+
 	/**
 	 * 表紙用段落を設定します。
 	 *
@@ -73,7 +124,7 @@ public class DocumentStyle {
 	 *            段落の前の空白行
 	 * @return 文字出力ハンドル
 	 */
-	public static XWPFRun setCoverParagraph(XWPFParagraph paragraph, int spaces) {
+	public XWPFRun setCoverParagraph(XWPFParagraph paragraph, int spaces) {
 
 		// デフォルト設定
 		XWPFRun run = getDefaultRun(paragraph, 0);
@@ -93,9 +144,11 @@ public class DocumentStyle {
 	 *            段落
 	 * @param spaces
 	 *            段落の前の空白行
+	 * @param level
+	 *            見出しレベル (0 から開始, 見出しとしない場合は -1)
 	 * @return 文字出力ハンドル
 	 */
-	public static XWPFRun setChapterTitleParagraph(XWPFParagraph paragraph, int spaces) {
+	public XWPFRun setChapterTitleParagraph(XWPFParagraph paragraph, int spaces, int level) {
 
 		// デフォルト設定
 		XWPFRun run = getDefaultRun(paragraph, 0);
@@ -107,6 +160,9 @@ public class DocumentStyle {
 		// 段落を設定
 		paragraph.setAlignment(ParagraphAlignment.LEFT);
 		paragraph.setSpacingBeforeLines(spaces);
+		if (0 <= level) {
+			setOutlineLevel(paragraph, level);
+		}
 
 		// 出力ハンドルを返却
 		return run;
@@ -114,6 +170,8 @@ public class DocumentStyle {
 
 	/**
 	 * タイトル用段落を設定します。
+	 * <p>
+	 * 開く処理を軽くする出力プロファイルでは、段落ごとの罫線の代わりに太字にします。
 	 *
 	 * @param paragraph
 	 *            段落
@@ -121,7 +179,7 @@ public class DocumentStyle {
 	 *            段落の前の空白行
 	 * @return 文字出力ハンドル
 	 */
-	public static XWPFRun setTitleParagraph(XWPFParagraph paragraph, int spaces) {
+	public XWPFRun setTitleParagraph(XWPFParagraph paragraph, int spaces) {
 
 		// デフォルト設定
 		XWPFRun run = getDefaultRun(paragraph, 0);
@@ -130,16 +188,22 @@ public class DocumentStyle {
 		paragraph.setAlignment(ParagraphAlignment.LEFT);
 		paragraph.setSpacingBeforeLines(spaces);
 		paragraph.setFirstLineIndent(100);
-		paragraph.setBorderTop(Borders.BASIC_BLACK_DASHES);
-		paragraph.setBorderBottom(Borders.BASIC_BLACK_DASHES);
-		paragraph.setBorderLeft(Borders.BASIC_BLACK_DASHES);
-		paragraph.setBorderRight(Borders.BASIC_BLACK_DASHES);
+		setOutlineLevel(paragraph, 2);
+		if (!options.isFastOpen()) {
+			paragraph.setBorderTop(Borders.BASIC_BLACK_DASHES);
+			paragraph.setBorderBottom(Borders.BASIC_BLACK_DASHES);
+			paragraph.setBorderLeft(Borders.BASIC_BLACK_DASHES);
+			paragraph.setBorderRight(Borders.BASIC_BLACK_DASHES);
+		}
 
 		// 行間を設定
 		setLineSpacing(paragraph, 240);
 
 		// 文字を設定
 		run.setFontSize(14);
+		if (options.isFastOpen()) {
+			run.setBold(true);
+		}
 
 		// 出力ハンドルを返却
 		return run;
@@ -154,7 +218,7 @@ public class DocumentStyle {
 	 *            段落の前の空白行
 	 * @return 文字出力ハンドル
 	 */
-	public static XWPFRun setSubTitleParagraph(XWPFParagraph paragraph, int spaces) {
+	public XWPFRun setSubTitleParagraph(XWPFParagraph paragraph, int spaces) {
 
 		// デフォルト設定
 		XWPFRun run = getDefaultRun(paragraph, 0);
@@ -179,7 +243,7 @@ public class DocumentStyle {
 	 *            段落の前の空白行
 	 * @return 文字出力ハンドル
 	 */
-	public static XWPFRun setSectionParagraph(XWPFParagraph paragraph, int spaces) {
+	public XWPFRun setSectionParagraph(XWPFParagraph paragraph, int spaces) {
 
 		// デフォルト設定
 		XWPFRun run = getDefaultRun(paragraph, 0);
@@ -195,13 +259,91 @@ public class DocumentStyle {
 		return run;
 	}
 
+	/**
+	 * コード例用段落を設定します。
+	 *
+	 * @param paragraph
+	 *            段落
+	 * @param indent
+	 *            インデント幅
+	 */
+	public void setCodeParagraph(XWPFParagraph paragraph, int indent) {
+
+		// 段落を設定
+		paragraph.setAlignment(ParagraphAlignment.LEFT);
+		paragraph.setIndentFromLeft(indent);
+		paragraph.setSpacingBeforeLines(50);
+		paragraph.setSpacingAfterLines(50);
+
+		// 行間を設定
+		setLineSpacing(paragraph, 240);
+	}
+
+	/**
+	 * コード例の字句に対応する文字出力ハンドルを作成します。
+	 * <p>
+	 * 開く処理を軽くする出力プロファイルでは、文字に校正の対象外 (noProof) を設定します。
+	 *
+	 * @param paragraph
+	 *            段落
+	 * @param kind
+	 *            字句の種類 ({@link JavaLexer} の定数)
+	 * @return 文字出力ハンドル
+	 */
+	public XWPFRun getCodeRun(XWPFParagraph paragraph, int kind) {
+
+		// 文字を設定
+		XWPFRun run = paragraph.createRun();
+		run.setFontFamily(options.getOption("font2", "Consolas"));
+		run.setFontSize(9);
+
+		// 字句の種類ごとの色を設定
+		switch (kind) {
+		case JavaLexer.KEYWORD:
+			run.setColor("0000C0");
+			run.setBold(true);
+			break;
+		case JavaLexer.STRING:
+			run.setColor("A31515");
+			break;
+		case JavaLexer.NUMBER:
+			run.setColor("098658");
+			break;
+		case JavaLexer.COMMENT:
+			run.setColor("3F7F5F");
+			run.setItalic(true);
+			break;
+		case JavaLexer.ANNOTATION:
+			run.setColor("646464");
+			break;
+		}
+
+		// 校正の対象外に設定
+		setNoProof(run);
+
+		// 出力ハンドルを返却
+		return run;
+	}
+
+	/**
+	 * 開く処理を軽くする出力プロファイルの場合は、文字に校正の対象外 (noProof) を設定します。
+	 *
+	 * @param run
+	 *            文字出力ハンドル
+	 */
+	private void setNoProof(XWPFRun run) {
+		if (options.isFastOpen()) {
+			run.getCTR().getRPr().addNewNoProof();
+		}
+	}
+
 	/**
 	 * 区切り線用段落を設定します。
 	 *
 	 * @param paragraph
 	 *            段落
 	 */
-	public static void setSeparatorParagraph(XWPFParagraph paragraph) {
+	public void setSeparatorParagraph(XWPFParagraph paragraph) {
 		paragraph.setBorderBottom(Borders.BASIC_BLACK_DASHES);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,409 @@
+package doclet.docx;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 生成済の本文の断片を別スレッドで圧縮して出力するクラスです。
+ * <p>
+ * 文書の生成スレッドはクラスごとに XML に変換した本文の断片を {@link #write(byte[])} で渡し、出力スレッドは断片を順に
+ * word/document.xml の ZIP エントリとして圧縮しながら出力ストリームに書き込みます。 断片の受け渡しは容量を制限したキューで行うため、出力が
+ * 追いつかない場合は生成スレッドが待機し、メモリ使用量は一定に保たれます。
+ * <p>
+ * 本文以外のパッケージの構成要素は、全ての断片を出力した後に {@link #finish(byte[])} で渡された Word 文書から名前順にコピーします。
+ * <p>
+ * 圧縮スレッド数に 2 以上を指定した場合、本文は {@link ParallelDeflater} で複数のスレッドを使用して圧縮します。
+ * <p>
+ * {@link #reserve()} で位置を予約した場合、以降の断片は一時ファイルに書き込み、全ての断片を受け取った後に
+ * {@link #fill(byte[])} で渡された断片、一時ファイルの内容の順に出力します。
+ */
+public class DocumentWriter implements Runnable {
+
+	/**
+	 * 本文のパッケージ内のパス
+	 */
+	public static final String DOCUMENT_PART = "word/document.xml";
+
+	/**
+	 * 断片の終了を示す値
+	 */
+	private static final byte[] END = new byte[0];
+
+	/**
+	 * 後から出力する断片の位置を示す値
+	 */
+	private static final byte[] RESERVED = new byte[0];
+
+	/**
+	 * 断片の受け渡し用のキュー
+	 */
+	private final BlockingQueue<byte[]> queue;
+
+	/**
+	 * 出力先の ZIP ファイル
+	 */
+	private final ZipWriter zip;
+
+	/**
+	 * 本文の圧縮スレッド数
+	 */
+	private final int zipThreads;
+
+	/**
+	 * 本文の開始部分 (XML 宣言から body 要素の開始タグまで)
+	 */
+	private final byte[] prefix;
+
+	/**
+	 * 本文の終了部分 (セクションの設定から document 要素の終了タグまで)
+	 */
+	private final byte[] suffix;
+
+	/**
+	 * 出力スレッド
+	 */
+	private final Thread thread;
+
+	/**
+	 * 本文以外の構成要素をコピーする Word 文書
+	 */
+	private volatile byte[] skeleton;
+
+	/**
+	 * 予約した位置に出力する断片
+	 */
+	private volatile byte[] reserved;
+
+	/**
+	 * 置き換える構成要素 (パッケージ内のパスと内容)
+	 */
+	private final Map<String, byte[]> replacedParts = new TreeMap<String, byte[]>();
+
+	/**
+	 * 出力スレッドで発生した例外
+	 */
+	private volatile Throwable error;
+
+	/**
+	 * キューに追加した値の数 (生成スレッドのみ更新)
+	 */
+	private long queued;
+
+	/**
+	 * 出力スレッドが書き込みを終えた値の数
+	 */
+	private final AtomicLong written = new AtomicLong();
+
+	/**
+	 * インスタンスを作成します。
+	 *
+	 * @param out
+	 *            出力ストリーム (閉じません)
+	 * @param prefix
+	 *            本文の開始部分
+	 * @param suffix
+	 *            本文の終了部分
+	 * @param capacity
+	 *            キューに保持する断片の最大数
+	 * @param zipThreads
+	 *            本文の圧縮スレッド数 (1 以下の場合は出力スレッドで圧縮)
+	 */
+	public DocumentWriter(OutputStream out, byte[] prefix, byte[] suffix, int capacity, int zipThreads) {
+		this.zip = new ZipWriter(out);
+		this.zipThreads = zipThreads;
+		this.prefix = prefix;
+		this.suffix = suffix;
+		this.queue = new ArrayBlockingQueue<byte[]>(capacity);
+		this.thread = new Thread(this, "DocumentWriter");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * ZIP エントリの更新日時を固定します。
+	 * <p>
+	 * 実行環境のタイムゾーンによらず同じ値を出力するため、日時は UTC で記録します。出力スレッドの開始前に呼び出してください。
+	 *
+	 * @param time
+	 *            更新日時 (エポックからのミリ秒)
+	 */
+	public void setTime(long time) {
+		zip.setTime(time, TimeZone.getTimeZone("UTC"));
+	}
+
+	/**
+	 * 出力スレッドを開始します。
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * 本文の断片を出力スレッドに渡します。
+	 * <p>
+	 * キューが一杯の場合は空きができるまで待機します。
+	 *
+	 * @param fragment
+	 *            XML に変換した本文の断片
+	 * @throws IOException
+	 */
+	public void write(byte[] fragment) throws IOException {
+		if (0 < fragment.length) {
+			put(fragment);
+		}
+	}
+
+	/**
+	 * 後から内容を渡す断片の位置を予約します。
+	 * <p>
+	 * 予約した位置より後の断片は、一時ファイルに書き込んで予約した断片の後に出力します。予約できる位置は 1 つです。
+	 *
+	 * @throws IOException
+	 */
+	public void reserve() throws IOException {
+		put(RESERVED);
+	}
+
+	/**
+	 * 予約した位置に出力する断片を渡します。
+	 * <p>
+	 * {@link #finish(byte[])} の前に呼び出してください。
+	 *
+	 * @param fragment
+	 *            XML に変換した本文の断片
+	 */
+	public void fill(byte[] fragment) {
+		this.reserved = fragment;
+	}
+
+	/**
+	 * 本文以外の構成要素を、Word 文書からコピーする代わりに指定した内容で出力します。
+	 * <p>
+	 * {@link #finish(byte[])} の前に呼び出してください。
+	 *
+	 * @param name
+	 *            パッケージ内のパス
+	 * @param data
+	 *            構成要素の内容
+	 */
+	public void putPart(String name, byte[] data) {
+		replacedParts.put(name, data);
+	}
+
+	/**
+	 * 全ての断片を渡し終えたことを通知して、出力スレッドの終了を待機します。
+	 *
+	 * @param skeleton
+	 *            本文以外の構成要素をコピーする Word 文書
+	 * @throws IOException
+	 */
+	public void finish(byte[] skeleton) throws IOException {
+		this.skeleton = skeleton;
+		put(END);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			thread.interrupt();
+			throw new InterruptedIOException();
+		}
+		checkError();
+	}
+
+	/**
+	 * 出力を中断して、出力スレッドの終了を待機します。
+	 * <p>
+	 * 呼び出し後は出力ストリームへの書き込みが行われないため、出力ストリームを閉じることができます。
+	 */
+	public void abort() {
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 出力スレッドに渡した断片が全て書き込まれるまで待機します。
+	 * <p>
+	 * キューが空になった後も、出力スレッドが取り出した断片の書き込みを終えるまで待機します。
+	 *
+	 * @throws IOException
+	 */
+	public void drain() throws IOException {
+		try {
+			while (written.get() < queued) {
+				checkError();
+				if (!thread.isAlive()) {
+					throw new IOException("出力スレッドが終了しています。");
+				}
+				Thread.sleep(10);
+			}
+		} catch (InterruptedException e) {
+			thread.interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	/**
+	 * キューに値を追加します。
+	 * <p>
+	 * 出力スレッドが異常終了した場合は待機せずに例外を送出します。
+	 *
+	 * @param value
+	 *            追加する値
+	 * @throws IOException
+	 */
+	private void put(byte[] value) throws IOException {
+		try {
+			while (!queue.offer(value, 100, TimeUnit.MILLISECONDS)) {
+				checkError();
+				if (!thread.isAlive()) {
+					throw new IOException("出力スレッドが終了しています。");
+				}
+			}
+			queued++;
+		} catch (InterruptedException e) {
+			thread.interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	/**
+	 * 出力スレッドで発生した例外を送出します。
+	 *
+	 * @throws IOException
+	 */
+	private void checkError() throws IOException {
+		if (error != null) {
+			throw new IOException("文書の出力に失敗しました。", error);
+		}
+	}
+
+	/**
+	 * 出力スレッドの処理を実行します。
+	 */
+	@Override
+	public void run() {
+		ExecutorService executor = null;
+		File spool = null;
+		OutputStream spoolOut = null;
+		try {
+
+			// 並行して圧縮する場合はスレッドプールを作成
+			if (1 < zipThreads) {
+				executor = Executors.newFixedThreadPool(zipThreads, new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "DocumentWriter-deflate");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+			}
+
+			// 本文を出力
+			OutputStream document = zip.openEntry(DOCUMENT_PART, executor, zipThreads);
+			document.write(prefix);
+			OutputStream target = document;
+			byte[] fragment;
+			while ((fragment = queue.take()) != END) {
+				if (fragment == RESERVED) {
+					spool = File.createTempFile("docx", ".body");
+					spoolOut = new BufferedOutputStream(new FileOutputStream(spool));
+					target = spoolOut;
+				} else {
+					target.write(fragment);
+				}
+				written.incrementAndGet();
+			}
+
+			// 予約した位置の断片と一時ファイルの内容を出力
+			if (spool != null) {
+				spoolOut.close();
+				spoolOut = null;
+				if (reserved != null) {
+					document.write(reserved);
+				}
+				InputStream spooled = new FileInputStream(spool);
+				try {
+					copy(spooled, document);
+				} finally {
+					spooled.close();
+				}
+			}
+			document.write(suffix);
+			document.close();
+
+			// 本文以外の構成要素を読み込み
+			Map<String, byte[]> parts = new TreeMap<String, byte[]>();
+			ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(skeleton));
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				if (!entry.getName().equals(DOCUMENT_PART)) {
+					ByteArrayOutputStream buf = new ByteArrayOutputStream();
+					copy(in, buf);
+					parts.put(entry.getName(), buf.toByteArray());
+				}
+			}
+			parts.putAll(replacedParts);
+
+			// 出力順を固定するため名前順に出力
+			for (Map.Entry<String, byte[]> part : parts.entrySet()) {
+				zip.putEntry(part.getKey(), part.getValue());
+			}
+			zip.finish();
+		} catch (Throwable e) {
+			error = e;
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			if (spoolOut != null) {
+				try {
+					spoolOut.close();
+				} catch (IOException e) {
+				}
+			}
+			if (spool != null) {
+				spool.delete();
+			}
+		}
+	}
+
+	/**
+	 * 入力ストリームの内容を出力ストリームにコピーします。
+	 *
+	 * @param in
+	 *            入力ストリーム
+	 * @param out
+	 *            出力ストリーム
+	 * @throws IOException
+	 */
+	private static void copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buf = new byte[8192];
+		int n;
+		while (0 < (n = in.read(buf))) {
+			out.write(buf, 0, n);
+		}
+	}
+}
\ No newline at end of file
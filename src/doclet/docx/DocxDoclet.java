@@ -1,5 +1,17 @@
 package doclet.docx;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import com.sun.javadoc.Doclet;
 import com.sun.javadoc.LanguageVersion;
 import com.sun.javadoc.RootDoc;
@@ -13,23 +25,216 @@ public class DocxDoclet extends Doclet {
 	 * Javadoc 生成処理を実行します。
 	 * <p>
 	 * 実行すると Javadoc 情報を Word 文書として生成します。 既に同名のファイルが存在する場合は上書きされます。
+	 * <p>
+	 * -variants オプションで定義ファイルが指定された場合は、1 回の Javadoc 実行で定義された種類ごとの文書を生成します。
+	 * -threads オプションで 2 以上が指定された場合は、種類ごとの文書を指定された数のスレッドで並行して生成します。
+	 * <p>
+	 * -watch オプションが指定された場合は、生成後にソースファイルの変更を監視して、変更されたクラスを再生成します。
+	 * <p>
+	 * -maxheapfraction オプションで割合が指定された場合は、ヒープの使用量を監視して、最大ヒープサイズに対する割合を超えた場合はメモリの解放と並行度の削減を行います。
+	 * -memoize オプションで true が指定された場合は、Javadoc 情報の参照結果を記憶して同じ参照を繰り返さないようにします。
+	 * -callstats オプションで出力ファイルが指定された場合は、Javadoc 情報のメソッドごとの呼び出し回数と所要時間を集計して出力します。
+	 * <p>
+	 * -export オプションで出力ファイルが指定された場合は、文書を生成せずに全てのクラスの情報をモデルファイルに出力します。
+	 * モジュールごとに出力したモデルファイルは {@link ModelFile} のコマンドで 1 つの文書に結合できます。
 	 *
 	 * @param rootDoc
 	 *            Javadoc のルートドキュメント
 	 * @return 実行結果を真偽値で返却します。
 	 */
 	public static boolean start(RootDoc rootDoc) {
-		DocumentBuilder creator = new DocumentBuilder();
+		ExecutorService executor = null;
+		HeapMonitor heapMonitor = null;
 		try {
-			Options.options = rootDoc.options();
-			creator.create(rootDoc);
+
+			// 文書の種類ごとのオプションを取得
+			Options options = new Options(rootDoc.options());
+
+			// モデルファイルのみ出力
+			if (!options.getOption("export").isEmpty()) {
+				export(rootDoc, new File(options.getOption("export")));
+				return true;
+			}
+			List<Options> variants = options.getVariants();
+
+			// 並行して生成する数 (正の整数)
+			String value = options.getOption("threads", "1");
+			int threads;
+			try {
+				threads = Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				threads = 0;
+			}
+			if (threads < 1) {
+				rootDoc.printError("-threads の値が不正です (正の整数を指定してください): " + value);
+				return false;
+			}
+			threads = Math.min(threads, variants.size());
+
+			// 本文を圧縮するスレッド数 (出力ファイルを開く前に全ての種類を確認)
+			for (Options variant : variants) {
+				try {
+					variant.getZipThreads();
+				} catch (IllegalArgumentException e) {
+					rootDoc.printError(e.getMessage());
+					return false;
+				}
+			}
+
+			// 字句解析とコメントのキャッシュを共有して全ての種類の文書を生成
+			final JavaLexer lexer = new JavaLexer();
+			final CommentCache commentCache = new CommentCache();
+
+			// ソースファイルの変更を監視する場合は、並行して生成するか判定する前にオプションを確認
+			Watcher watcher = null;
+			if (!options.getOption("watch").isEmpty()) {
+				try {
+					watcher = new Watcher(options, rootDoc, lexer, commentCache);
+				} catch (IllegalArgumentException e) {
+					rootDoc.printError(e.getMessage());
+					return false;
+				}
+			}
+
+			// ヒープの使用量を監視
+			final HeapMonitor heap = HeapMonitor.create(options);
+			heapMonitor = heap;
+
+			// Javadoc 情報の参照結果を記憶
+			RootDoc source = rootDoc;
+			MemoizingDocProxy memoizing = null;
+			if (Boolean.parseBoolean(options.getOption("memoize"))) {
+				memoizing = new MemoizingDocProxy();
+				source = memoizing.wrap(source);
+			}
+
+			// Javadoc 情報の呼び出しを計測
+			CountingDocProxy counting = null;
+			if (!options.getOption("callstats").isEmpty()) {
+				counting = new CountingDocProxy();
+				source = counting.wrap(source);
+			}
+			if (threads <= 1) {
+				for (Options variant : variants) {
+					DocumentBuilder builder = new DocumentBuilder(variant, lexer, commentCache);
+					builder.setHeapMonitor(heap);
+					builder.create(source);
+				}
+				printStatistics(rootDoc, options, memoizing, counting, heap);
+
+				// ソースファイルの変更を監視
+				if (watcher != null) {
+					watcher.run();
+				}
+				return true;
+			}
+
+			// 並行して生成 (Javadoc 情報の参照のみ直列化)
+			final RootDoc root = new SynchronizedDocProxy().wrap(source);
+			executor = Executors.newFixedThreadPool(threads);
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (final Options variant : variants) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						DocumentBuilder builder = new DocumentBuilder(variant, lexer, commentCache);
+						builder.setHeapMonitor(heap);
+						builder.create(root);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+			printStatistics(rootDoc, options, memoizing, counting, heap);
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			return false;
 		} catch (Exception e) {
 			e.printStackTrace();
 			return false;
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			if (heapMonitor != null) {
+				heapMonitor.close();
+			}
 		}
 		return true;
 	}
 
+	/**
+	 * 全てのクラスの情報をモデルファイルに出力します。
+	 *
+	 * @param rootDoc
+	 *            Javadoc のルートドキュメント
+	 * @param file
+	 *            モデルファイル
+	 * @throws IOException
+	 */
+	private static void export(RootDoc rootDoc, File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			ModelFile.write(rootDoc.classes(), out);
+		} finally {
+			out.close();
+		}
+		rootDoc.printNotice(String.format("モデルファイル: %s (クラス %d 件)", file, rootDoc.classes().length));
+	}
+
+	/**
+	 * Javadoc 情報の参照結果の記憶, 呼び出しの集計結果, ヒープの使用量を出力します。
+	 *
+	 * @param rootDoc
+	 *            Javadoc のルートドキュメント
+	 * @param options
+	 *            実行時オプション
+	 * @param memoizing
+	 *            参照結果を記憶したプロキシ (記憶しない場合は null)
+	 * @param counting
+	 *            呼び出しを計測したプロキシ (計測しない場合は null)
+	 * @param heapMonitor
+	 *            ヒープの使用量の監視 (監視しない場合は null)
+	 * @throws IOException
+	 */
+	private static void printStatistics(RootDoc rootDoc, Options options, MemoizingDocProxy memoizing,
+			CountingDocProxy counting, HeapMonitor heapMonitor) throws IOException {
+		if (heapMonitor != null) {
+			heapMonitor.report(rootDoc);
+		}
+		if (memoizing != null) {
+			rootDoc.printNotice(String.format("Javadoc 情報の記憶: ヒット %d 件, ミス %d 件", memoizing.getHits(),
+					memoizing.getMisses()));
+		}
+		if (counting == null) {
+			return;
+		}
+		File file = new File(options.getOption("callstats"));
+		counting.write(file);
+		rootDoc.printNotice(String.format("Javadoc 情報の呼び出し: %d 回, %d ミリ秒 (%s)", counting.getCalls(),
+				counting.getMillis(), file));
+	}
+
+	/**
+	 * Javadoc 情報から Word 文書を生成して出力ストリームに書き込みます。
+	 * <p>
+	 * 静的な状態を持たないため、同じ JVM 内で複数の文書を並行して生成できます。ただし、同じルートドキュメントを複数のスレッドから参照する場合は
+	 * {@link SynchronizedDocProxy} で包んでください。出力ストリームは閉じません。
+	 *
+	 * @param rootDoc
+	 *            Javadoc のルートドキュメント
+	 * @param options
+	 *            実行時オプション
+	 * @param out
+	 *            出力ストリーム
+	 * @throws IOException
+	 */
+	public static void create(RootDoc rootDoc, Options options, OutputStream out) throws IOException {
+		new DocumentBuilder(options).create(rootDoc, out);
+	}
+
 	/**
 	 * オプションの引数の個数を返却します。
 	 *
@@ -0,0 +1,349 @@
+package doclet.docx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * -shard オプションで分割して生成した文書を 1 つの文書に結合するコマンドです。
+ * <p>
+ * 各文書の本文 (body 要素の内容のうち最後の段落または表の後のセクションの設定より前) を順に連結し、本文以外の構成要素は最初の文書からコピーします。
+ * 本文はストリームのまま連結するため、文書全体をメモリに読み込みません。
+ * <p>
+ * 分割した文書は同じオプションで生成されるため、スタイル, ヘッダとフッタ, 関連付けの ID は全ての文書で一致します。
+ * 結合の前に本文の開始部分と本文以外の構成要素 (docProps を除く) が一致することを確認し、一致しない場合は結合しません。
+ *
+ * <pre>
+ * java -cp ... doclet.docx.DocxMerger 出力ファイル 分割文書1 分割文書2 ...
+ * </pre>
+ */
+public class DocxMerger {
+
+	/**
+	 * 文字コード
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * body 要素の開始タグ
+	 */
+	private static final byte[] BODY_START = "<w:body>".getBytes(UTF_8);
+
+	/**
+	 * 段落の終了タグ
+	 */
+	private static final byte[] PARAGRAPH_END = "</w:p>".getBytes(UTF_8);
+
+	/**
+	 * 表の終了タグ
+	 */
+	private static final byte[] TABLE_END = "</w:tbl>".getBytes(UTF_8);
+
+	/**
+	 * セクションの設定の開始タグ
+	 */
+	private static final byte[] SECTION_START = "<w:sectPr".getBytes(UTF_8);
+
+	/**
+	 * body 要素の終了タグ
+	 */
+	private static final byte[] BODY_END = "</w:body>".getBytes(UTF_8);
+
+	/**
+	 * 本文の末尾で出力を保留する大きさ (終了部分より大きい値)
+	 */
+	private static final int TAIL_SIZE = 64 * 1024;
+
+	/**
+	 * 文書ごとに異なってよい構成要素の接頭辞
+	 */
+	private static final String PROPERTIES_PREFIX = "docProps/";
+
+	/**
+	 * 分割して生成した文書を結合します。
+	 *
+	 * @param args
+	 *            出力ファイルと、分割した文書のファイル (番号順)
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("使用方法: DocxMerger 出力ファイル 分割文書...");
+			System.exit(2);
+		}
+		try {
+			List<File> shards = new ArrayList<File>();
+			for (int i = 1; i < args.length; i++) {
+				shards.add(new File(args[i]));
+			}
+			OutputStream out = new FileOutputStream(args[0]);
+			try {
+				merge(shards, out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * 分割して生成した文書を結合して出力ストリームに書き込みます。
+	 * <p>
+	 * 出力ストリームは閉じません。
+	 *
+	 * @param shards
+	 *            分割した文書のファイル (番号順)
+	 * @param out
+	 *            出力ストリーム
+	 * @throws IOException
+	 */
+	public static void merge(List<File> shards, OutputStream out) throws IOException {
+		List<ZipFile> files = new ArrayList<ZipFile>();
+		try {
+
+			// 本文以外の構成要素が一致することを確認
+			for (File shard : shards) {
+				files.add(new ZipFile(shard));
+			}
+			Map<String, byte[]> parts = readParts(files.get(0));
+			for (int i = 1; i < files.size(); i++) {
+				Map<String, byte[]> others = readParts(files.get(i));
+				if (!parts.keySet().equals(others.keySet())) {
+					throw new IOException("分割文書の構成が一致しません: " + shards.get(i));
+				}
+				for (Map.Entry<String, byte[]> part : parts.entrySet()) {
+					if (!part.getKey().startsWith(PROPERTIES_PREFIX)
+							&& !Arrays.equals(part.getValue(), others.get(part.getKey()))) {
+						throw new IOException("分割文書の構成が一致しません: " + shards.get(i) + " " + part.getKey());
+					}
+				}
+			}
+
+			// 最初の文書の更新日時を引き継ぐ
+			ZipFile first = files.get(0);
+			ZipWriter zip = new ZipWriter(out);
+			zip.setTime(getDocumentEntry(first).getTime());
+
+			// 本文を連結
+			OutputStream document = zip.openEntry(DocumentWriter.DOCUMENT_PART, null, 1);
+			byte[] prefix = null;
+			byte[] suffix = null;
+			for (int i = 0; i < files.size(); i++) {
+				ZipFile file = files.get(i);
+				InputStream in = file.getInputStream(getDocumentEntry(file));
+				try {
+					byte[][] bounds = copyBody(in, document, prefix == null);
+					if (prefix == null) {
+						prefix = bounds[0];
+						suffix = bounds[1];
+					} else if (!Arrays.equals(prefix, bounds[0])) {
+						throw new IOException("本文の開始部分が一致しません: " + shards.get(i));
+					}
+				} finally {
+					in.close();
+				}
+			}
+			document.write(suffix);
+			document.close();
+
+			// 本文以外の構成要素をコピー
+			for (Map.Entry<String, byte[]> part : parts.entrySet()) {
+				zip.putEntry(part.getKey(), part.getValue());
+			}
+			zip.finish();
+
+		} finally {
+			for (ZipFile file : files) {
+				file.close();
+			}
+		}
+	}
+
+	/**
+	 * 本文のエントリを取得します。
+	 *
+	 * @param file
+	 *            文書
+	 * @return 本文のエントリ
+	 * @throws IOException
+	 */
+	private static ZipEntry getDocumentEntry(ZipFile file) throws IOException {
+		ZipEntry entry = file.getEntry(DocumentWriter.DOCUMENT_PART);
+		if (entry == null) {
+			throw new IOException("本文がありません: " + file.getName());
+		}
+		return entry;
+	}
+
+	/**
+	 * 本文以外の構成要素を名前順に読み込みます。
+	 *
+	 * @param file
+	 *            文書
+	 * @return 構成要素の名前と内容
+	 * @throws IOException
+	 */
+	private static Map<String, byte[]> readParts(ZipFile file) throws IOException {
+		Map<String, byte[]> parts = new TreeMap<String, byte[]>();
+		Enumeration<? extends ZipEntry> entries = file.entries();
+		while (entries.hasMoreElements()) {
+			ZipEntry entry = entries.nextElement();
+			if (entry.getName().equals(DocumentWriter.DOCUMENT_PART)) {
+				continue;
+			}
+			ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			InputStream in = file.getInputStream(entry);
+			try {
+				byte[] b = new byte[8192];
+				int n;
+				while (0 < (n = in.read(b))) {
+					buf.write(b, 0, n);
+				}
+			} finally {
+				in.close();
+			}
+			parts.put(entry.getName(), buf.toByteArray());
+		}
+		return parts;
+	}
+
+	/**
+	 * 本文の内容をコピーします。
+	 * <p>
+	 * body 要素の開始タグまでを開始部分、最後の段落または表の後のセクションの設定以降を終了部分として返却し、最初の文書の場合のみ開始部分をコピーします。
+	 * 終了部分を判定するため、末尾の一定の大きさは読み終えるまで出力を保留します。
+	 *
+	 * @param in
+	 *            本文の入力ストリーム
+	 * @param out
+	 *            出力ストリーム
+	 * @param first
+	 *            最初の文書の場合は true
+	 * @return 開始部分と終了部分の配列
+	 * @throws IOException
+	 */
+	private static byte[][] copyBody(InputStream in, OutputStream out, boolean first) throws IOException {
+		byte[] buf = new byte[TAIL_SIZE * 2];
+		int length = 0;
+		byte[] prefix = null;
+		int n;
+		while (0 < (n = in.read(buf, length, buf.length - length))) {
+			length += n;
+
+			// 開始部分を切り出す
+			if (prefix == null) {
+				int pos = indexOf(buf, 0, length, BODY_START);
+				if (pos < 0) {
+					if (length == buf.length) {
+						buf = Arrays.copyOf(buf, buf.length * 2);
+					}
+					continue;
+				}
+				pos += BODY_START.length;
+				prefix = Arrays.copyOf(buf, pos);
+				if (first) {
+					out.write(prefix);
+				}
+				length -= pos;
+				System.arraycopy(buf, pos, buf, 0, length);
+			}
+
+			// 末尾を残して出力
+			if (TAIL_SIZE < length) {
+				out.write(buf, 0, length - TAIL_SIZE);
+				System.arraycopy(buf, length - TAIL_SIZE, buf, 0, TAIL_SIZE);
+				length = TAIL_SIZE;
+			}
+		}
+		if (prefix == null) {
+			throw new IOException("本文の構造が不正です。");
+		}
+
+		// 最後の段落または表の後のセクションの設定より前を出力
+		int last = Math.max(endOf(buf, length, PARAGRAPH_END), endOf(buf, length, TABLE_END));
+		int end = indexOf(buf, last, length, SECTION_START);
+		if (end < 0) {
+			end = indexOf(buf, last, length, BODY_END);
+			if (end < 0) {
+				throw new IOException("本文の構造が不正です。");
+			}
+		}
+		out.write(buf, 0, end);
+		return new byte[][] { prefix, Arrays.copyOfRange(buf, end, length) };
+	}
+
+	/**
+	 * バイト列を先頭から検索します。
+	 *
+	 * @param buf
+	 *            検索対象
+	 * @param from
+	 *            検索の開始位置
+	 * @param length
+	 *            検索対象の長さ
+	 * @param key
+	 *            検索するバイト列
+	 * @return 見つかった位置 (見つからない場合は -1)
+	 */
+	private static int indexOf(byte[] buf, int from, int length, byte[] key) {
+		for (int i = from; i <= length - key.length; i++) {
+			if (matches(buf, i, key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * バイト列を末尾から検索して、最後に出現した位置の直後を返却します。
+	 *
+	 * @param buf
+	 *            検索対象
+	 * @param length
+	 *            検索対象の長さ
+	 * @param key
+	 *            検索するバイト列
+	 * @return 最後に出現した位置の直後 (見つからない場合は 0)
+	 */
+	private static int endOf(byte[] buf, int length, byte[] key) {
+		for (int i = length - key.length; 0 <= i; i--) {
+			if (matches(buf, i, key)) {
+				return i + key.length;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * 指定位置にバイト列が存在するか判定します。
+	 *
+	 * @param buf
+	 *            検索対象
+	 * @param pos
+	 *            位置
+	 * @param key
+	 *            検索するバイト列
+	 * @return 存在する場合は true を返却します。
+	 */
+	private static boolean matches(byte[] buf, int pos, byte[] key) {
+		for (int j = 0; j < key.length; j++) {
+			if (buf[pos + j] != key[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
\ No newline at end of file
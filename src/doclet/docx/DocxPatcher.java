@@ -0,0 +1,633 @@
+package doclet.docx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 既存の文書のうち内容が変更されたクラスの区間のみを置き換える処理です。
+ * <p>
+ * 生成する文書では、クラスごとの区間をブックマーク (_dd とクラス名から計算した値) で囲み、区間の直後に区間の内容から計算した値を名前とする
+ * ブックマーク (_dh と計算した値) を出力します。ブックマークの ID はクラスの出力順の連番とし、区間はブックマーク名のみで識別します。既存の文書と新たに生成した文書で同じクラスの値が一致する区間は、既存の文書の内容をそのまま使用するため、
+ * 生成後に追記した内容は保持されます。値が異なる区間は新たに生成した内容に置き換え、追加されたクラスは生成順の位置に挿入し、削除されたクラスの区間は取り除きます。
+ * <p>
+ * 区間の外側 (表紙, 区間の間に追記した内容, セクションの設定) は既存の文書の内容をそのままコピーし、本文以外の構成要素は展開せずに圧縮されたデータのままコピーします。
+ * XML は解析し直さずにバイト列のまま処理するため、区間の区切りのブックマークを移動または削除した文書は処理できません。
+ * ブックマークの要素は属性の順序や追加の属性によらず認識し、区切りのブックマークの間に他の要素があっても構いません。
+ * 各ブックマークの開始と終了は、Word など OOXML に従う編集ソフトが保存したとおり ID で対応付けます。
+ * 出力する文書では、区切りのブックマークの ID を他のブックマークと重複しない値に振り直します。
+ * <p>
+ * 一部のクラスのみを生成した文書を反映する場合は {@link #setKeepMissing(boolean)} を指定して、生成した文書にない区間を既存の文書の順序のまま維持します。
+ */
+public class DocxPatcher {
+
+	/**
+	 * 本文を 1 バイト 1 文字の文字列として扱うための文字コード
+	 */
+	private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+	/**
+	 * 文字コード
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * ブックマークの開始または終了の要素 (属性は任意の順序)
+	 */
+	private static final Pattern BOOKMARK_PATTERN = Pattern
+			.compile("<w:bookmark(Start|End)\\b([^>]*?)(?:/>|>\\s*</w:bookmark\\1>)");
+
+	/**
+	 * 要素の属性
+	 */
+	private static final Pattern ATTRIBUTE_PATTERN = Pattern
+			.compile("([\\w:.-]+)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+
+	/**
+	 * 区間の開始を示すブックマーク名
+	 */
+	private static final Pattern START_NAME = Pattern.compile("_dd([0-9a-f]{16})");
+
+	/**
+	 * 区間の終了と内容の値を示すブックマーク名
+	 */
+	private static final Pattern HASH_NAME = Pattern.compile("_dh([0-9a-f]{16})");
+
+	/**
+	 * 生成した文書にない区間を維持する場合は true
+	 */
+	private boolean keepMissing;
+
+	/**
+	 * 内容をそのまま使用した区間の数
+	 */
+	private int kept;
+
+	/**
+	 * 置き換えた区間の数
+	 */
+	private int replaced;
+
+	/**
+	 * 追加した区間の数
+	 */
+	private int added;
+
+	/**
+	 * 次に割り当てる区切りのブックマークの ID
+	 */
+	private long nextId;
+
+	/**
+	 * 取り除いた区間の数
+	 */
+	private int removed;
+
+	/**
+	 * 本文中のブックマークの開始または終了の要素です。
+	 */
+	private static class Bookmark {
+
+		/**
+		 * 開始の場合は true, 終了の場合は false
+		 */
+		private boolean isStart;
+
+		/**
+		 * ID
+		 */
+		private String id;
+
+		/**
+		 * ブックマーク名 (終了の要素は null)
+		 */
+		private String name;
+
+		/**
+		 * 要素の開始位置
+		 */
+		private int start;
+
+		/**
+		 * 要素の終了位置
+		 */
+		private int end;
+
+		/**
+		 * ID の値の開始位置
+		 */
+		private int idStart;
+
+		/**
+		 * ID の値の終了位置
+		 */
+		private int idEnd;
+	}
+
+	/**
+	 * 本文中のクラスの区間です。
+	 */
+	private static class Section {
+
+		/**
+		 * クラス名から計算した値
+		 */
+		private String id;
+
+		/**
+		 * 区間の内容から計算した値
+		 */
+		private String hash;
+
+		/**
+		 * 区間の開始位置
+		 */
+		private int start;
+
+		/**
+		 * 区間の終了位置 (終了を示すブックマークの直後)
+		 */
+		private int end;
+
+		/**
+		 * 区間の後に続く内容の終了位置 (次の区間の開始位置または本文の終了部分の開始位置)
+		 */
+		private int gapEnd;
+
+		/**
+		 * 区切りのブックマークの要素 (区間の開始と終了, 内容の値の開始と終了)
+		 */
+		private final Bookmark[] markers = new Bookmark[4];
+	}
+
+	/**
+	 * 生成した文書にない区間を維持するか設定します。
+	 * <p>
+	 * 維持する場合、区間は既存の文書の順序で出力し、既存の文書にない区間は最後の区間の後に追加します。
+	 *
+	 * @param keepMissing
+	 *            維持する場合は true (デフォルトは false)
+	 */
+	public void setKeepMissing(boolean keepMissing) {
+		this.keepMissing = keepMissing;
+	}
+
+	/**
+	 * 区間の値の計算に使用するダイジェストを作成します。
+	 *
+	 * @return ダイジェスト
+	 */
+	public static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 区間の開始を示すブックマークを作成します。
+	 *
+	 * @param qualifiedName
+	 *            クラスの完全修飾名
+	 * @param sequence
+	 *            クラスの出力順の番号 (文書内で一意)
+	 * @return XML の断片
+	 */
+	public static byte[] getStartMarker(String qualifiedName, int sequence) {
+		String id = toHex(newDigest().digest(qualifiedName.getBytes(UTF_8)));
+		return ("<w:bookmarkStart w:id=\"" + sequence * 2 + "\" w:name=\"_dd" + id + "\"/>").getBytes(UTF_8);
+	}
+
+	/**
+	 * 区間の開始を示すブックマーク名を取得します。
+	 * <p>
+	 * クラスの区間へのリンク先として使用します。
+	 *
+	 * @param qualifiedName
+	 *            クラスの完全修飾名
+	 * @return ブックマーク名
+	 */
+	public static String getSectionName(String qualifiedName) {
+		return "_dd" + toHex(newDigest().digest(qualifiedName.getBytes(UTF_8)));
+	}
+
+	/**
+	 * 区間の終了と内容の値を示すブックマークを作成します。
+	 *
+	 * @param sequence
+	 *            クラスの出力順の番号 ({@link #getStartMarker(String, int)} と同じ値)
+	 * @param digest
+	 *            区間の内容 (開始を示すブックマークを除く) から計算した値
+	 * @return XML の断片
+	 */
+	public static byte[] getEndMarker(int sequence, byte[] digest) {
+		String hash = toHex(digest);
+		int hashId = sequence * 2 + 1;
+		return ("<w:bookmarkEnd w:id=\"" + sequence * 2 + "\"/><w:bookmarkStart w:id=\"" + hashId + "\" w:name=\"_dh"
+				+ hash + "\"/><w:bookmarkEnd w:id=\"" + hashId + "\"/>").getBytes(UTF_8);
+	}
+
+	/**
+	 * ダイジェストの先頭 8 バイトを 16 進数に変換します。
+	 *
+	 * @param digest
+	 *            ダイジェスト
+	 * @return 16 進数の文字列
+	 */
+	private static String toHex(byte[] digest) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 8; i++) {
+			sb.append(String.format("%02x", digest[i] & 0xFF));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 既存の文書に新たに生成した文書の変更された区間を反映して出力ストリームに書き込みます。
+	 * <p>
+	 * 出力ストリームは閉じません。
+	 *
+	 * @param original
+	 *            既存の文書
+	 * @param generated
+	 *            新たに生成した文書
+	 * @param out
+	 *            出力ストリーム
+	 * @throws IOException
+	 */
+	public void patch(File original, File generated, OutputStream out) throws IOException {
+		ZipFile originalZip = new ZipFile(original);
+		try {
+
+			// 本文を区間に分割
+			String oldBody = readDocument(originalZip);
+			String newBody;
+			ZipFile generatedZip = new ZipFile(generated);
+			try {
+				newBody = readDocument(generatedZip);
+			} finally {
+				generatedZip.close();
+			}
+			List<Section> oldSections = split(oldBody);
+			List<Section> newSections = split(newBody);
+			if (oldSections.isEmpty()) {
+				throw new IOException("区間の区切りがない文書は更新できません: " + original);
+			}
+			Map<String, Section> oldById = new HashMap<String, Section>();
+			for (Section section : oldSections) {
+				oldById.put(section.id, section);
+			}
+			Map<String, Section> newById = new HashMap<String, Section>();
+			for (Section section : newSections) {
+				newById.put(section.id, section);
+			}
+
+			// 区切りのブックマークの ID は他のブックマークの ID より後の連番
+			nextId = Math.max(getMaxId(oldBody, oldSections), getMaxId(newBody, newSections)) + 1;
+
+			// 区間の順に本文を構成
+			StringBuilder sb = new StringBuilder(oldBody.length() + oldBody.length() / 8);
+			sb.append(oldBody, 0, oldSections.get(0).start);
+			if (keepMissing) {
+
+				// 既存の区間の順に、生成した区間があれば置き換え
+				for (Section old : oldSections) {
+					append(sb, old, oldBody, newById.get(old.id), newBody);
+				}
+				for (Section section : newSections) {
+					if (!oldById.containsKey(section.id)) {
+						appendSection(sb, newBody, section);
+						added++;
+					}
+				}
+			} else {
+
+				// 生成した区間の順に、既存の区間が同じ内容であれば維持
+				int used = 0;
+				for (Section section : newSections) {
+					Section old = oldById.get(section.id);
+					if (old == null) {
+						appendSection(sb, newBody, section);
+						added++;
+					} else {
+						append(sb, old, oldBody, section, newBody);
+						used++;
+					}
+				}
+				removed = oldSections.size() - used;
+			}
+			sb.append(oldBody, oldSections.get(oldSections.size() - 1).gapEnd, oldBody.length());
+
+			// 本文を出力
+			ZipWriter zip = new ZipWriter(out);
+			zip.setTime(originalZip.getEntry(DocumentWriter.DOCUMENT_PART).getTime());
+			zip.putEntry(DocumentWriter.DOCUMENT_PART, sb.toString().getBytes(LATIN_1));
+
+			// 本文以外の構成要素を圧縮されたデータのままコピー
+			zip.copyEntries(original, Collections.singleton(DocumentWriter.DOCUMENT_PART));
+			zip.finish();
+
+		} finally {
+			originalZip.close();
+		}
+	}
+
+	/**
+	 * 既存の区間または生成した区間と、既存の区間の後に続く内容を追加します。
+	 *
+	 * @param sb
+	 *            構成中の本文
+	 * @param old
+	 *            既存の区間
+	 * @param oldBody
+	 *            既存の本文
+	 * @param section
+	 *            生成した区間 (生成していない場合は null)
+	 * @param newBody
+	 *            生成した本文
+	 */
+	private void append(StringBuilder sb, Section old, String oldBody, Section section, String newBody) {
+		if (section == null || old.hash.equals(section.hash)) {
+			appendSection(sb, oldBody, old);
+			kept++;
+		} else {
+			appendSection(sb, newBody, section);
+			replaced++;
+		}
+		sb.append(oldBody, old.end, old.gapEnd);
+	}
+
+	/**
+	 * 区間を追加します。
+	 * <p>
+	 * 区切りのブックマークの ID は新たな連番に置き換え、その他の内容はそのまま追加します。
+	 *
+	 * @param sb
+	 *            構成中の本文
+	 * @param body
+	 *            区間を含む本文
+	 * @param section
+	 *            区間
+	 */
+	private void appendSection(StringBuilder sb, String body, Section section) {
+		Bookmark[] markers = section.markers.clone();
+		Arrays.sort(markers, new Comparator<Bookmark>() {
+			@Override
+			public int compare(Bookmark a, Bookmark b) {
+				return a.idStart - b.idStart;
+			}
+		});
+		String startId = section.markers[0].id;
+		long id = nextId;
+		nextId += 2;
+		int pos = section.start;
+		for (Bookmark marker : markers) {
+			sb.append(body, pos, marker.idStart);
+			sb.append(marker.id.equals(startId) ? id : id + 1);
+			pos = marker.idEnd;
+		}
+		sb.append(body, pos, section.end);
+	}
+
+	/**
+	 * 区切り以外のブックマークの ID の最大値を取得します。
+	 *
+	 * @param body
+	 *            本文
+	 * @param sections
+	 *            本文の区間
+	 * @return ID の最大値 (存在しない場合は -1)
+	 */
+	private static long getMaxId(String body, List<Section> sections) {
+		Set<String> markerIds = new HashSet<String>();
+		for (Section section : sections) {
+			markerIds.add(section.markers[0].id);
+			markerIds.add(section.markers[2].id);
+		}
+		long max = -1;
+		Matcher matcher = BOOKMARK_PATTERN.matcher(body);
+		while (matcher.find()) {
+			Bookmark bookmark = parseBookmark(matcher);
+			if (bookmark != null && !markerIds.contains(bookmark.id)) {
+				try {
+					max = Math.max(max, Long.parseLong(bookmark.id));
+				} catch (NumberFormatException e) {
+				}
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * 本文を区間に分割します。
+	 *
+	 * @param body
+	 *            本文 (1 バイト 1 文字の文字列)
+	 * @return 区間のリスト (出現順)
+	 * @throws IOException
+	 */
+	private static List<Section> split(String body) throws IOException {
+		List<Section> sections = new ArrayList<Section>();
+		Section open = null;
+		Matcher matcher = BOOKMARK_PATTERN.matcher(body);
+		while (matcher.find()) {
+			Bookmark bookmark = parseBookmark(matcher);
+			if (bookmark == null) {
+				continue;
+			}
+
+			// 区間の開始
+			Matcher name = START_NAME.matcher(bookmark.name == null ? "" : bookmark.name);
+			if (bookmark.isStart && name.matches()) {
+				if (open != null) {
+					throw new IOException("区間の区切りが不正です: _dd" + open.id);
+				}
+				open = new Section();
+				open.id = name.group(1);
+				open.start = bookmark.start;
+				open.markers[0] = bookmark;
+				continue;
+			}
+			if (open == null) {
+				continue;
+			}
+
+			// 区間の終了と内容の値 (開始と終了は ID で対応付ける)
+			Matcher hash = HASH_NAME.matcher(bookmark.name == null ? "" : bookmark.name);
+			if (bookmark.isStart && open.markers[2] == null && hash.matches()) {
+				open.hash = hash.group(1);
+				open.markers[2] = bookmark;
+			} else if (!bookmark.isStart && open.markers[1] == null && bookmark.id.equals(open.markers[0].id)) {
+				open.markers[1] = bookmark;
+			} else if (!bookmark.isStart && open.markers[2] != null && open.markers[3] == null
+					&& bookmark.id.equals(open.markers[2].id)) {
+				open.markers[3] = bookmark;
+			}
+
+			// 区切りが揃った時点で区間を終了
+			if (open.markers[1] != null && open.markers[3] != null) {
+				open.end = Math.max(open.markers[1].end, open.markers[3].end);
+				if (!sections.isEmpty()) {
+					sections.get(sections.size() - 1).gapEnd = open.start;
+				}
+				sections.add(open);
+				open = null;
+			}
+		}
+		if (open != null) {
+			throw new IOException("区間の区切りが不正です: _dd" + open.id);
+		}
+
+		// 最後の区間の後に続く内容は本文の終了部分 (セクションの設定) の前まで
+		if (!sections.isEmpty()) {
+			Section last = sections.get(sections.size() - 1);
+			int tail = Math.max(last.end,
+					Math.max(endOf(body, "</w:p>", last.end), endOf(body, "</w:tbl>", last.end)));
+			int sect = body.indexOf("<w:sectPr", tail);
+			last.gapEnd = 0 <= sect ? sect : body.lastIndexOf("</w:body>");
+			if (last.gapEnd < last.end) {
+				throw new IOException("本文の構造が不正です。");
+			}
+		}
+		return sections;
+	}
+
+	/**
+	 * ブックマークの要素の属性を解析します。
+	 *
+	 * @param matcher
+	 *            ブックマークの要素に一致した状態の照合器
+	 * @return ブックマークの要素 (ID がない場合は null)
+	 */
+	private static Bookmark parseBookmark(Matcher matcher) {
+		Bookmark bookmark = new Bookmark();
+		bookmark.isStart = matcher.group(1).equals("Start");
+		bookmark.start = matcher.start();
+		bookmark.end = matcher.end();
+		int offset = matcher.start(2);
+		Matcher attribute = ATTRIBUTE_PATTERN.matcher(matcher.group(2));
+		while (attribute.find()) {
+			int group = attribute.group(2) != null ? 2 : 3;
+			if (attribute.group(1).equals("w:id")) {
+				bookmark.id = attribute.group(group);
+				bookmark.idStart = offset + attribute.start(group);
+				bookmark.idEnd = offset + attribute.end(group);
+			} else if (attribute.group(1).equals("w:name")) {
+				bookmark.name = attribute.group(group);
+			}
+		}
+		return bookmark.id == null ? null : bookmark;
+	}
+
+	/**
+	 * 文字列を末尾から検索して、最後に出現した位置の直後を返却します。
+	 *
+	 * @param str
+	 *            検索対象
+	 * @param key
+	 *            検索する文字列
+	 * @param from
+	 *            検索範囲の開始位置
+	 * @return 最後に出現した位置の直後 (検索範囲にない場合は -1)
+	 */
+	private static int endOf(String str, String key, int from) {
+		int pos = str.lastIndexOf(key);
+		return from <= pos ? pos + key.length() : -1;
+	}
+
+	/**
+	 * 本文を 1 バイト 1 文字の文字列として読み込みます。
+	 *
+	 * @param zip
+	 *            文書
+	 * @return 本文
+	 * @throws IOException
+	 */
+	private static String readDocument(ZipFile zip) throws IOException {
+		ZipEntry entry = zip.getEntry(DocumentWriter.DOCUMENT_PART);
+		if (entry == null) {
+			throw new IOException("本文がありません: " + zip.getName());
+		}
+		return new String(read(zip, entry), LATIN_1);
+	}
+
+	/**
+	 * エントリの内容を読み込みます。
+	 *
+	 * @param zip
+	 *            文書
+	 * @param entry
+	 *            エントリ
+	 * @return エントリの内容
+	 * @throws IOException
+	 */
+	private static byte[] read(ZipFile zip, ZipEntry entry) throws IOException {
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		InputStream in = zip.getInputStream(entry);
+		try {
+			byte[] b = new byte[8192];
+			int n;
+			while (0 < (n = in.read(b))) {
+				buf.write(b, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+		return buf.toByteArray();
+	}
+
+	/**
+	 * 内容をそのまま使用した区間の数を取得します。
+	 *
+	 * @return 区間の数
+	 */
+	public int getKept() {
+		return kept;
+	}
+
+	/**
+	 * 置き換えた区間の数を取得します。
+	 *
+	 * @return 区間の数
+	 */
+	public int getReplaced() {
+		return replaced;
+	}
+
+	/**
+	 * 追加した区間の数を取得します。
+	 *
+	 * @return 区間の数
+	 */
+	public int getAdded() {
+		return added;
+	}
+
+	/**
+	 * 取り除いた区間の数を取得します。
+	 *
+	 * @return 区間の数
+	 */
+	public int getRemoved() {
+		return removed;
+	}
+}
\ No newline at end of file
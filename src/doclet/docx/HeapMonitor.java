@@ -0,0 +1,335 @@
+package doclet.docx;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.javadoc.DocErrorReporter;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * ヒープの使用量を監視して、予算を超えた場合に生成処理へ通知するクラスです。
+ * <p>
+ * ガベージコレクションの完了通知を受け取るたびに、通知に含まれるガベージコレクション直後のヒープの使用量 (ほぼ生存しているオブジェクトの量) を記録します。
+ * 使用量が最大ヒープサイズに対する指定の割合を超えている間は予算超過とし、生成処理はクラスやメンバの区切りで次のように対処します。
+ * <ul>
+ * <li>作成済の段落を直ちに出力スレッドに渡し、出力待ちの断片が書き込まれるまで待機します。</li>
+ * <li>コメントとコード例のキャッシュを破棄します。</li>
+ * <li>複数の文書を並行して生成している場合は、1 つの文書のみ生成を続け、他の文書は予算内に戻るまで待機します。</li>
+ * </ul>
+ * 段階と出力しているクラスは生成処理のスレッドごとに保持し、使用量の最大値は段階ごとに、その時点で各スレッドが出力していたクラスとともに記録します。
+ * <p>
+ * このクラスはスレッドセーフです。複数の文書の生成処理で 1 つのインスタンスを共有してください。
+ */
+public class HeapMonitor implements NotificationListener {
+
+	/**
+	 * メガバイト
+	 */
+	private static final long MB = 1024 * 1024;
+
+	/**
+	 * ヒープのメモリプールの名前
+	 */
+	private final Set<String> heapPools = new HashSet<String>();
+
+	/**
+	 * 通知を登録したガベージコレクタ
+	 */
+	private final List<NotificationEmitter> emitters = new ArrayList<NotificationEmitter>();
+
+	/**
+	 * ヒープの使用量の予算 (バイト)
+	 */
+	private final long budget;
+
+	/**
+	 * 段階ごとの使用量の最大値
+	 */
+	private final Map<String, Peak> peaks = new LinkedHashMap<String, Peak>();
+
+	/**
+	 * 生成処理のスレッドごとの現在の段階と出力している位置
+	 */
+	private final Map<Thread, Position> positions = new LinkedHashMap<Thread, Position>();
+
+	/**
+	 * 予算を超えている場合は true
+	 */
+	private boolean overBudget;
+
+	/**
+	 * 予算超過の間に生成を続けるスレッド
+	 */
+	private Thread runner;
+
+	/**
+	 * 予算超過を検知した回数
+	 */
+	private int exceeded;
+
+	/**
+	 * 1 つの段階の使用量の最大値です。
+	 */
+	private static class Peak {
+
+		/**
+		 * 使用量 (バイト)
+		 */
+		private long used;
+
+		/**
+		 * 最大値を記録した時点で出力していた位置
+		 */
+		private String location;
+	}
+
+	/**
+	 * 1 つのスレッドの現在の段階と出力している位置です。
+	 */
+	private static class Position {
+
+		/**
+		 * 現在の段階
+		 */
+		private String phase = "start";
+
+		/**
+		 * 現在出力している位置
+		 */
+		private String location = "";
+	}
+
+	/**
+	 * インスタンスを作成してガベージコレクションの監視を開始します。
+	 *
+	 * @param fraction
+	 *            最大ヒープサイズに対する予算の割合 (0 より大きく 1 以下)
+	 */
+	public HeapMonitor(double fraction) {
+		if (!(0 < fraction && fraction <= 1)) {
+			throw new IllegalArgumentException("-maxheapfraction の値が不正です: " + fraction);
+		}
+		this.budget = (long) (Runtime.getRuntime().maxMemory() * fraction);
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				heapPools.add(pool.getName());
+			}
+		}
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (gc instanceof NotificationEmitter) {
+				NotificationEmitter emitter = (NotificationEmitter) gc;
+				emitter.addNotificationListener(this, null, null);
+				emitters.add(emitter);
+			}
+		}
+	}
+
+	/**
+	 * 実行時オプションで予算が指定された場合はインスタンスを作成します。
+	 *
+	 * @param options
+	 *            実行時オプション
+	 * @return インスタンス (予算が指定されない場合は null)
+	 */
+	public static HeapMonitor create(Options options) {
+		String fraction = options.getOption("maxheapfraction");
+		if (fraction.isEmpty()) {
+			return null;
+		}
+		try {
+			return new HeapMonitor(Double.parseDouble(fraction));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("-maxheapfraction の値が不正です: " + fraction);
+		}
+	}
+
+	/**
+	 * ガベージコレクションの完了通知を処理します。
+	 *
+	 * @param notification
+	 *            通知
+	 * @param handback
+	 *            使用しません
+	 */
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+			return;
+		}
+
+		// ガベージコレクション直後のヒープの使用量
+		GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+				.from((CompositeData) notification.getUserData());
+		long used = 0;
+		for (Map.Entry<String, MemoryUsage> entry : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+			if (heapPools.contains(entry.getKey())) {
+				used += entry.getValue().getUsed();
+			}
+		}
+		synchronized (this) {
+
+			// 段階ごとの最大値を更新 (生成処理の開始前は start)
+			if (positions.isEmpty()) {
+				updatePeak("start", "", used);
+			}
+			for (Position position : positions.values()) {
+				updatePeak(position.phase, position.location, used);
+			}
+
+			// 予算超過の状態を更新
+			boolean over = budget < used;
+			if (over && !overBudget) {
+				exceeded++;
+			}
+			overBudget = over;
+			if (!over) {
+				runner = null;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * 段階の使用量の最大値を更新します。
+	 *
+	 * @param phase
+	 *            段階の名前
+	 * @param location
+	 *            出力している位置
+	 * @param used
+	 *            使用量 (バイト)
+	 */
+	private void updatePeak(String phase, String location, long used) {
+		Peak peak = peaks.get(phase);
+		if (peak == null) {
+			peak = new Peak();
+			peaks.put(phase, peak);
+		}
+		if (peak.used < used) {
+			peak.used = used;
+			peak.location = location;
+		}
+	}
+
+	/**
+	 * 呼び出したスレッドの現在の段階と出力している位置を取得します。
+	 *
+	 * @return 段階と位置 (存在しない場合は作成)
+	 */
+	private Position getPosition() {
+		Thread current = Thread.currentThread();
+		Position position = positions.get(current);
+		if (position == null) {
+			position = new Position();
+			positions.put(current, position);
+		}
+		return position;
+	}
+
+	/**
+	 * 呼び出したスレッドで生成処理の段階の開始を通知します。
+	 *
+	 * @param phase
+	 *            段階の名前
+	 */
+	public synchronized void setPhase(String phase) {
+		Position position = getPosition();
+		position.phase = phase;
+		position.location = "";
+	}
+
+	/**
+	 * 予算を超えているか判定します。
+	 *
+	 * @return 超えている場合は true を返却します。
+	 */
+	public synchronized boolean isOverBudget() {
+		return overBudget;
+	}
+
+	/**
+	 * 呼び出したスレッドでクラスの出力の開始を通知します。
+	 * <p>
+	 * 予算超過の間は、生成を続ける 1 つのスレッド以外は予算内に戻るか、生成を続けるスレッドが {@link #release()} を呼び出すまで待機します。
+	 *
+	 * @param location
+	 *            出力する位置 (文書とクラスの名前)
+	 * @return 予算を超えている場合は true を返却します。
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean checkpoint(String location) throws InterruptedException {
+		getPosition().location = location;
+		Thread current = Thread.currentThread();
+		while (overBudget && runner != null && runner != current) {
+			wait();
+		}
+		if (overBudget) {
+			runner = current;
+		}
+		return overBudget;
+	}
+
+	/**
+	 * 呼び出したスレッドで文書の生成の終了を通知して、待機しているスレッドに生成を譲ります。
+	 */
+	public synchronized void release() {
+		positions.remove(Thread.currentThread());
+		if (runner == Thread.currentThread()) {
+			runner = null;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * ガベージコレクションの監視を終了します。
+	 */
+	public void close() {
+		for (NotificationEmitter emitter : emitters) {
+			try {
+				emitter.removeNotificationListener(this);
+			} catch (ListenerNotFoundException e) {
+			}
+		}
+		emitters.clear();
+	}
+
+	/**
+	 * 段階ごとの使用量の最大値を通知します。
+	 *
+	 * @param reporter
+	 *            通知先
+	 */
+	public synchronized void report(DocErrorReporter reporter) {
+		reporter.printNotice(String.format("ヒープの予算: %d MB (最大 %d MB), 予算超過 %d 回", budget / MB,
+				Runtime.getRuntime().maxMemory() / MB, exceeded));
+		String top = null;
+		long max = -1;
+		for (Map.Entry<String, Peak> entry : peaks.entrySet()) {
+			Peak peak = entry.getValue();
+			reporter.printNotice(String.format("GC 後のヒープ使用量の最大値: %s %d MB %s", entry.getKey(), peak.used / MB,
+					peak.location));
+			if (max < peak.used) {
+				max = peak.used;
+				top = entry.getKey() + " " + peak.location;
+			}
+		}
+		if (top != null) {
+			reporter.printNotice(String.format("GC 後のヒープ使用量の最大値の位置: %s", top.trim()));
+		}
+	}
+}
\ No newline at end of file
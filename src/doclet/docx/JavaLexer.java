@@ -0,0 +1,272 @@
+package doclet.docx;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * コード例を構文強調するための簡易的な Java 字句解析器です。
+ * <p>
+ * 字句は種類, 開始位置, 終了位置の 3 要素を 1 組とした int 配列で表現し、字句ごとの文字列やオブジェクトは生成しません。
+ * <p>
+ * 同じコード例はオーバーロードやサブクラスで繰り返し現れるため、解析結果はコード文字列をキーとして一定数までキャッシュします。
+ */
+public class JavaLexer {
+
+	/**
+	 * 字句の種類 (通常の文字)
+	 */
+	public static final int PLAIN = 0;
+
+	/**
+	 * 字句の種類 (予約語)
+	 */
+	public static final int KEYWORD = 1;
+
+	/**
+	 * 字句の種類 (文字列リテラルおよび文字リテラル)
+	 */
+	public static final int STRING = 2;
+
+	/**
+	 * 字句の種類 (数値リテラル)
+	 */
+	public static final int NUMBER = 3;
+
+	/**
+	 * 字句の種類 (コメント)
+	 */
+	public static final int COMMENT = 4;
+
+	/**
+	 * 字句の種類 (アノテーション)
+	 */
+	public static final int ANNOTATION = 5;
+
+	/**
+	 * 予約語およびリテラル語 (二分探索のため昇順に整列済)
+	 */
+	private static final String[] KEYWORDS = { "abstract", "assert", "boolean", "break", "byte", "case", "catch",
+			"char", "class", "const", "continue", "default", "do", "double", "else", "enum", "extends", "false",
+			"final", "finally", "float", "for", "goto", "if", "implements", "import", "instanceof", "int",
+			"interface", "long", "native", "new", "null", "package", "private", "protected", "public", "return",
+			"short", "static", "strictfp", "super", "switch", "synchronized", "this", "throw", "throws",
+			"transient", "true", "try", "void", "volatile", "while" };
+
+	/**
+	 * キャッシュするコード例の最大数
+	 */
+	private static final int CACHE_SIZE = 256;
+
+	/**
+	 * 解析済の字句列のキャッシュ (アクセス順で古いものから破棄)
+	 */
+	private final Map<String, int[]> cache = new LinkedHashMap<String, int[]>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+			return CACHE_SIZE < size();
+		}
+	};
+
+	/**
+	 * コード文字列を字句解析します。
+	 * <p>
+	 * 解析済のコード文字列の場合はキャッシュした字句列を返却します。返却した配列は変更しないでください。
+	 *
+	 * @param code
+	 *            コード文字列
+	 * @return 種類, 開始位置, 終了位置を 1 組として並べた字句列
+	 */
+	public synchronized int[] tokenize(String code) {
+		int[] tokens = cache.get(code);
+		if (tokens == null) {
+			tokens = scan(code);
+			cache.put(code, tokens);
+		}
+		return tokens;
+	}
+
+	/**
+	 * キャッシュした字句列を全て破棄します。
+	 */
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * コード文字列を走査して字句列を作成します。
+	 * <p>
+	 * 同じ種類の字句が連続する場合は 1 つの字句に結合します。
+	 *
+	 * @param code
+	 *            コード文字列
+	 * @return 字句列
+	 */
+	private static int[] scan(String code) {
+		int[] tokens = new int[48];
+		int count = 0;
+		int length = code.length();
+		int pos = 0;
+		while (pos < length) {
+			int start = pos;
+			int kind;
+			char c = code.charAt(pos);
+			if (c == '/' && pos + 1 < length && code.charAt(pos + 1) == '/') {
+
+				// 行コメント
+				kind = COMMENT;
+				pos = code.indexOf('\n', pos);
+				if (pos < 0) {
+					pos = length;
+				}
+			} else if (c == '/' && pos + 1 < length && code.charAt(pos + 1) == '*') {
+
+				// ブロックコメント
+				kind = COMMENT;
+				pos = code.indexOf("*/", pos + 2);
+				pos = pos < 0 ? length : pos + 2;
+			} else if (c == '"' || c == '\'') {
+
+				// 文字列リテラルおよび文字リテラル (改行で打ち切り)
+				kind = STRING;
+				pos++;
+				while (pos < length) {
+					char d = code.charAt(pos);
+					if (d == '\\') {
+						pos += 2;
+						continue;
+					}
+					if (d == '\n') {
+						break;
+					}
+					pos++;
+					if (d == c) {
+						break;
+					}
+				}
+				pos = Math.min(pos, length);
+			} else if (c == '@' && pos + 1 < length && Character.isJavaIdentifierStart(code.charAt(pos + 1))) {
+
+				// アノテーション
+				kind = ANNOTATION;
+				pos++;
+				while (pos < length && (Character.isJavaIdentifierPart(code.charAt(pos)) || code.charAt(pos) == '.')) {
+					pos++;
+				}
+			} else if ('0' <= c && c <= '9') {
+
+				// 数値リテラル
+				kind = NUMBER;
+				while (pos < length && (Character.isLetterOrDigit(code.charAt(pos)) || code.charAt(pos) == '.'
+						|| code.charAt(pos) == '_')) {
+					pos++;
+				}
+			} else if (Character.isJavaIdentifierStart(c)) {
+
+				// 識別子および予約語
+				while (pos < length && Character.isJavaIdentifierPart(code.charAt(pos))) {
+					pos++;
+				}
+				kind = isKeyword(code, start, pos) ? KEYWORD : PLAIN;
+			} else {
+
+				// 記号および空白
+				kind = PLAIN;
+				pos++;
+			}
+
+			// 直前と同じ種類の字句は結合
+			if (0 < count && tokens[count - 3] == kind && tokens[count - 1] == start) {
+				tokens[count - 1] = pos;
+				continue;
+			}
+
+			// 空白は直前の字句に結合
+			if (0 < count && kind == PLAIN && isWhitespace(code, start, pos) && tokens[count - 3] != COMMENT) {
+				tokens[count - 1] = pos;
+				continue;
+			}
+			if (tokens.length < count + 3) {
+				tokens = Arrays.copyOf(tokens, tokens.length * 2);
+			}
+			tokens[count++] = kind;
+			tokens[count++] = start;
+			tokens[count++] = pos;
+		}
+		return Arrays.copyOf(tokens, count);
+	}
+
+	/**
+	 * 指定範囲の文字が全て空白であるか判定します。
+	 *
+	 * @param code
+	 *            コード文字列
+	 * @param start
+	 *            開始位置
+	 * @param end
+	 *            終了位置
+	 * @return 全て空白の場合は true を返却します。
+	 */
+	private static boolean isWhitespace(String code, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (!Character.isWhitespace(code.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 指定範囲の文字列が予約語であるか判定します。
+	 *
+	 * @param code
+	 *            コード文字列
+	 * @param start
+	 *            開始位置
+	 * @param end
+	 *            終了位置
+	 * @return 予約語の場合は true を返却します。
+	 */
+	private static boolean isKeyword(String code, int start, int end) {
+		int low = 0;
+		int high = KEYWORDS.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(KEYWORDS[mid], code, start, end);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (0 < cmp) {
+				high = mid - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 文字列と指定範囲の文字列を辞書順で比較します。
+	 *
+	 * @param keyword
+	 *            比較する文字列
+	 * @param code
+	 *            コード文字列
+	 * @param start
+	 *            開始位置
+	 * @param end
+	 *            終了位置
+	 * @return 比較結果
+	 */
+	private static int compare(String keyword, String code, int start, int end) {
+		int length = Math.min(keyword.length(), end - start);
+		for (int i = 0; i < length; i++) {
+			int diff = keyword.charAt(i) - code.charAt(start + i);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return keyword.length() - (end - start);
+	}
+}
\ No newline at end of file
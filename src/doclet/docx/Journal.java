@@ -0,0 +1,279 @@
+package doclet.docx;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.SourcePosition;
+
+/**
+ * 生成途中の本文を作業ディレクトリに記録して、中断した生成を再開するためのジャーナルです。
+ * <p>
+ * 出力スレッドに渡した本文の断片を順にファイルに追記し、一定の間隔でクラスの区切りにチェックポイント (出力済のクラス数と断片の長さ)
+ * を記録します。同じ入力で再実行した場合は、記録済の断片を出力スレッドに渡し、チェックポイントの次のクラスから生成を再開します。
+ * <p>
+ * 入力が同じであるかは、実行時オプションと全てのクラスの名前, ソースファイルの大きさと更新日時から計算した値で判定します。
+ * 入力が異なる場合やチェックポイントがない場合は最初から生成します。生成が完了するとジャーナルは削除します。
+ * <p>
+ * ジャーナルのファイル名は出力ファイル名から作成するため、複数の種類の文書で同じ作業ディレクトリを使用できます。
+ */
+public class Journal {
+
+	/**
+	 * 文字コード
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * 断片を記録するファイル名の拡張子
+	 */
+	private static final String FRAGMENTS_SUFFIX = ".fragments.xml";
+
+	/**
+	 * チェックポイントを記録するファイル名の拡張子
+	 */
+	private static final String CHECKPOINT_SUFFIX = ".checkpoint.properties";
+
+	/**
+	 * チェックポイントを記録する間隔 (ミリ秒)
+	 */
+	private static final long CHECKPOINT_INTERVAL = 10 * 1000L;
+
+	/**
+	 * 断片を記録するファイル
+	 */
+	private final File fragmentsFile;
+
+	/**
+	 * チェックポイントを記録するファイル
+	 */
+	private final File checkpointFile;
+
+	/**
+	 * 入力を識別する値
+	 */
+	private final String fingerprint;
+
+	/**
+	 * 断片の出力先
+	 */
+	private FileOutputStream file;
+
+	/**
+	 * 断片の出力先 (バッファ付き)
+	 */
+	private OutputStream fragments;
+
+	/**
+	 * 記録済の断片の長さ
+	 */
+	private long length;
+
+	/**
+	 * 最後にチェックポイントを記録した時刻
+	 */
+	private long lastCheckpoint;
+
+	/**
+	 * インスタンスを作成します。
+	 *
+	 * @param dir
+	 *            作業ディレクトリ (存在しない場合は作成します)
+	 * @param name
+	 *            出力ファイル名
+	 * @param options
+	 *            実行時オプション
+	 * @param classes
+	 *            全てのクラス
+	 * @throws IOException
+	 */
+	public Journal(File dir, String name, Options options, ClassDoc[] classes) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("作業ディレクトリを作成できません: " + dir);
+		}
+		this.fragmentsFile = new File(dir, name + FRAGMENTS_SUFFIX);
+		this.checkpointFile = new File(dir, name + CHECKPOINT_SUFFIX);
+		this.fingerprint = getFingerprint(options, classes);
+	}
+
+	/**
+	 * 入力を識別する値を計算します。
+	 *
+	 * @param options
+	 *            実行時オプション
+	 * @param classes
+	 *            全てのクラス
+	 * @return 入力を識別する値 (16 進数)
+	 */
+	private static String getFingerprint(Options options, ClassDoc[] classes) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update(options.toString().getBytes(UTF_8));
+		for (ClassDoc classDoc : classes) {
+			StringBuilder sb = new StringBuilder();
+			sb.append('\n').append(classDoc.qualifiedName());
+			SourcePosition position = classDoc.position();
+			if (position != null && position.file() != null) {
+				File source = position.file();
+				sb.append(' ').append(source.length()).append(' ').append(source.lastModified());
+			}
+			digest.update(sb.toString().getBytes(UTF_8));
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b & 0xFF));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * ジャーナルを開きます。
+	 * <p>
+	 * 同じ入力のチェックポイントがある場合は、記録済の断片をチェックポイントの位置まで切り詰めて追記を再開します。
+	 *
+	 * @return 再開する場合は出力済のクラス数, 最初から生成する場合は -1
+	 * @throws IOException
+	 */
+	public int open() throws IOException {
+
+		// チェックポイントを読み込み
+		int classes = -1;
+		length = 0;
+		if (checkpointFile.isFile() && fragmentsFile.isFile()) {
+			Properties checkpoint = new Properties();
+			InputStream in = new FileInputStream(checkpointFile);
+			try {
+				checkpoint.load(in);
+			} finally {
+				in.close();
+			}
+			long recorded = Long.parseLong(checkpoint.getProperty("length", "-1"));
+			if (fingerprint.equals(checkpoint.getProperty("fingerprint")) && 0 <= recorded
+					&& recorded <= fragmentsFile.length()) {
+				classes = Integer.parseInt(checkpoint.getProperty("classes"));
+				length = recorded;
+			}
+		}
+
+		// チェックポイント以降の断片を破棄して追記を開始
+		RandomAccessFile raf = new RandomAccessFile(fragmentsFile, "rw");
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+		file = new FileOutputStream(fragmentsFile, true);
+		fragments = new BufferedOutputStream(file, 64 * 1024);
+		lastCheckpoint = System.currentTimeMillis();
+		return classes;
+	}
+
+	/**
+	 * 記録済の断片を出力スレッドに渡します。
+	 *
+	 * @param writer
+	 *            本文の出力処理
+	 * @throws IOException
+	 */
+	public void replay(DocumentWriter writer) throws IOException {
+		InputStream in = new FileInputStream(fragmentsFile);
+		try {
+			long remaining = length;
+			byte[] buf = new byte[64 * 1024];
+			while (0 < remaining) {
+				int n = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+				if (n < 0) {
+					throw new IOException("ジャーナルが不正です: " + fragmentsFile);
+				}
+				writer.write(n == buf.length ? buf.clone() : Arrays.copyOf(buf, n));
+				remaining -= n;
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * 出力スレッドに渡した断片を記録します。
+	 *
+	 * @param fragment
+	 *            本文の断片
+	 * @throws IOException
+	 */
+	public void append(byte[] fragment) throws IOException {
+		fragments.write(fragment);
+		length += fragment.length;
+	}
+
+	/**
+	 * 前回の記録から一定の時間が経過している場合はチェックポイントを記録します。
+	 * <p>
+	 * クラスの出力が完了して全ての断片を記録した時点で呼び出してください。
+	 *
+	 * @param classes
+	 *            出力済のクラス数
+	 * @param force
+	 *            経過時間によらず記録する場合は true
+	 * @throws IOException
+	 */
+	public void checkpoint(int classes, boolean force) throws IOException {
+		long now = System.currentTimeMillis();
+		if (!force && now - lastCheckpoint < CHECKPOINT_INTERVAL) {
+			return;
+		}
+		lastCheckpoint = now;
+
+		// 断片を確実に書き込んでから位置を記録
+		fragments.flush();
+		file.getFD().sync();
+		Properties checkpoint = new Properties();
+		checkpoint.setProperty("fingerprint", fingerprint);
+		checkpoint.setProperty("classes", String.valueOf(classes));
+		checkpoint.setProperty("length", String.valueOf(length));
+		File temp = new File(checkpointFile.getPath() + ".tmp");
+		OutputStream out = new FileOutputStream(temp);
+		try {
+			checkpoint.store(out, null);
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * ジャーナルを閉じます。
+	 *
+	 * @param completed
+	 *            生成が完了した場合は true (ジャーナルを削除します)
+	 */
+	public void close(boolean completed) {
+		try {
+			if (fragments != null) {
+				fragments.close();
+			}
+		} catch (IOException e) {
+		}
+		if (completed) {
+			checkpointFile.delete();
+			fragmentsFile.delete();
+		}
+	}
+}
\ No newline at end of file
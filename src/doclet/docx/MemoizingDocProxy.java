@@ -0,0 +1,96 @@
+package doclet.docx;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Javadoc 情報の参照結果を記憶するプロキシです。
+ * <p>
+ * メンバの一覧, タグ, コメント文字列, 修飾子のように、Javadoc ツールが呼び出しのたびに配列や文字列を作成するメソッドの結果を
+ * Javadoc 情報と引数の組ごとに記憶し、2 回目以降は記憶した結果を返却します。その他のメソッドはそのまま呼び出します。
+ * <p>
+ * 配列は呼び出しのたびに新たに作成して返却するため、呼び出し元が配列を変更しても記憶した結果には影響しません。
+ * 配列の要素のプロキシは常に同じインスタンスであるため、記憶しない場合と同様に比較できます。
+ */
+public class MemoizingDocProxy extends DocProxy {
+
+	/**
+	 * 結果を記憶するメソッド名
+	 */
+	private static final Set<String> MEMOIZED = new HashSet<String>(Arrays.asList("methods", "fields",
+			"constructors", "enumConstants", "interfaces", "tags", "paramTags", "throwsTags", "commentText",
+			"modifiers"));
+
+	/**
+	 * Javadoc 情報ごとの記憶した結果
+	 */
+	private final Map<Object, Map<List<Object>, Object>> results = new IdentityHashMap<Object, Map<List<Object>, Object>>();
+
+	/**
+	 * 記憶した結果を返却した回数
+	 */
+	private long hits;
+
+	/**
+	 * メソッドを呼び出して結果を記憶した回数
+	 */
+	private long misses;
+
+	@Override
+	protected Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		if (!MEMOIZED.contains(method.getName())) {
+			return call(target, method, args);
+		}
+
+		// 記憶した結果を検索
+		List<Object> key = Arrays.asList(method.getName(), args == null ? null : Arrays.asList(args.clone()));
+		synchronized (results) {
+			Map<List<Object>, Object> map = results.get(target);
+			if (map != null && map.containsKey(key)) {
+				hits++;
+				return map.get(key);
+			}
+		}
+
+		// 呼び出して結果を記憶
+		Object result = call(target, method, args);
+		synchronized (results) {
+			Map<List<Object>, Object> map = results.get(target);
+			if (map == null) {
+				map = new HashMap<List<Object>, Object>();
+				results.put(target, map);
+			}
+			map.put(key, result);
+			misses++;
+		}
+		return result;
+	}
+
+	/**
+	 * 記憶した結果を返却した回数を取得します。
+	 *
+	 * @return 記憶した結果を返却した回数
+	 */
+	public long getHits() {
+		synchronized (results) {
+			return hits;
+		}
+	}
+
+	/**
+	 * メソッドを呼び出して結果を記憶した回数を取得します。
+	 *
+	 * @return メソッドを呼び出して結果を記憶した回数
+	 */
+	public long getMisses() {
+		synchronized (results) {
+			return misses;
+		}
+	}
+}
\ No newline at end of file
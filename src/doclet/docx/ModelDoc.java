@@ -0,0 +1,559 @@
+package doclet.docx;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.javadoc.AnnotationDesc;
+import com.sun.javadoc.AnnotationTypeDoc;
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.ConstructorDoc;
+import com.sun.javadoc.Doc;
+import com.sun.javadoc.FieldDoc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.PackageDoc;
+import com.sun.javadoc.ParamTag;
+import com.sun.javadoc.Parameter;
+import com.sun.javadoc.ParameterizedType;
+import com.sun.javadoc.ProgramElementDoc;
+import com.sun.javadoc.RootDoc;
+import com.sun.javadoc.Tag;
+import com.sun.javadoc.ThrowsTag;
+import com.sun.javadoc.Type;
+import com.sun.javadoc.TypeVariable;
+import com.sun.javadoc.WildcardType;
+
+/**
+ * 保存した値から Javadoc 情報 (com.sun.javadoc パッケージのインタフェース) を実装する動的プロキシの処理です。
+ * <p>
+ * 引数のないメソッドは、メソッド名に対応付けた値を返却します。{@link com.sun.javadoc.Doc#tags(String)} は全てのタグから種類が一致するものを返却します。
+ * 値のないメソッドは、モデルに保存しないことを決めた一部のメソッド ({@link #DEFAULTS}) のみ既定値を返却し、
+ * それ以外は {@link UnsupportedOperationException} をスローします。モデルに不足している情報を黙って既定値で補うと、
+ * 出力が欠けても気付けないためです。
+ * <p>
+ * Javadoc ツールを実行せずに {@link DocumentBuilder} で文書を生成するため、{@link ModelFile} と {@link ModelProcessor} が使用します。
+ * 文書の生成に使用するメソッドのみを実装しています。
+ */
+public class ModelDoc implements InvocationHandler {
+
+	/**
+	 * public であることを示すフラグ
+	 */
+	public static final int PUBLIC = 0x01;
+
+	/**
+	 * protected であることを示すフラグ
+	 */
+	public static final int PROTECTED = 0x02;
+
+	/**
+	 * private であることを示すフラグ
+	 */
+	public static final int PRIVATE = 0x04;
+
+	/**
+	 * 列挙型であることを示すフラグ
+	 */
+	public static final int ENUM = 0x08;
+
+	/**
+	 * インタフェースであることを示すフラグ
+	 */
+	public static final int INTERFACE = 0x10;
+
+	/**
+	 * アノテーション型であることを示すフラグ
+	 */
+	public static final int ANNOTATION_TYPE = 0x20;
+
+	/**
+	 * プリミティブ型 (void を含む) であることを示す型の種類
+	 */
+	public static final int PRIMITIVE_TYPE = 0;
+
+	/**
+	 * クラス型であることを示す型の種類
+	 */
+	public static final int CLASS_TYPE = 1;
+
+	/**
+	 * 型変数であることを示す型の種類
+	 */
+	public static final int TYPE_VARIABLE = 2;
+
+	/**
+	 * ワイルドカードであることを示す型の種類
+	 */
+	public static final int WILDCARD_TYPE = 3;
+
+	/**
+	 * 種類を判定するメソッド名
+	 */
+	private static final String[] KINDS = { "isField", "isEnumConstant", "isConstructor", "isMethod",
+			"isAnnotationTypeElement", "isClass", "isOrdinaryClass", "isInterface", "isEnum", "isAnnotationType" };
+
+	/**
+	 * モデルに保存せずに既定値を返却するメソッド名と値の対応
+	 * <p>
+	 * ソースファイルの位置はモデルに保存しません。
+	 */
+	private static final Map<String, Object> DEFAULTS = new HashMap<String, Object>();
+	static {
+		DEFAULTS.put("position", null);
+	}
+
+	/**
+	 * メソッド名と値の対応
+	 */
+	private final Map<String, Object> values = new HashMap<String, Object>();
+
+	/**
+	 * 作成したプロキシ
+	 */
+	private Object proxy;
+
+	/**
+	 * 値を設定します。
+	 *
+	 * @param name
+	 *            メソッド名
+	 * @param value
+	 *            値
+	 * @return このインスタンス
+	 */
+	public ModelDoc set(String name, Object value) {
+		values.put(name, value);
+		return this;
+	}
+
+	/**
+	 * 種類を判定するメソッドが全て偽を返却するように設定します。
+	 * <p>
+	 * 例外クラスとエラークラスの判定はスーパークラスの情報が必要なため設定しません。
+	 *
+	 * @return このインスタンス
+	 */
+	private ModelDoc clearKinds() {
+		for (String kind : KINDS) {
+			set(kind, false);
+		}
+		return this;
+	}
+
+	/**
+	 * 修飾子を示すフラグから可視性を設定します。
+	 *
+	 * @param flags
+	 *            フラグ
+	 * @return このインスタンス
+	 */
+	public ModelDoc setFlags(int flags) {
+		set("isPublic", (flags & PUBLIC) != 0);
+		set("isProtected", (flags & PROTECTED) != 0);
+		set("isPrivate", (flags & PRIVATE) != 0);
+		set("isPackagePrivate", (flags & (PUBLIC | PROTECTED | PRIVATE)) == 0);
+		return this;
+	}
+
+	/**
+	 * Javadoc 情報の修飾子を示すフラグを取得します。
+	 *
+	 * @param doc
+	 *            Javadoc 情報
+	 * @return フラグ
+	 */
+	public static int getFlags(ProgramElementDoc doc) {
+		int flags = 0;
+		if (doc.isPublic()) {
+			flags |= PUBLIC;
+		} else if (doc.isProtected()) {
+			flags |= PROTECTED;
+		} else if (doc.isPrivate()) {
+			flags |= PRIVATE;
+		}
+		if (doc instanceof ClassDoc) {
+			ClassDoc classDoc = (ClassDoc) doc;
+			if (classDoc.isEnum()) {
+				flags |= ENUM;
+			}
+			if (classDoc.isInterface()) {
+				flags |= INTERFACE;
+			}
+			if (classDoc.isAnnotationType()) {
+				flags |= ANNOTATION_TYPE;
+			}
+		}
+		return flags;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+		int count = args == null ? 0 : args.length;
+		if (count == 0 && values.containsKey(name)) {
+			return values.get(name);
+		}
+
+		// Object のメソッド
+		if (name.equals("equals") && count == 1) {
+			return proxy == args[0];
+		}
+		if (name.equals("hashCode") && count == 0) {
+			return System.identityHashCode(proxy);
+		}
+		if (name.equals("toString") && count == 0) {
+			Object value = values.containsKey("qualifiedName") ? values.get("qualifiedName") : values.get("name");
+			return String.valueOf(value);
+		}
+		if (name.equals("compareTo") && count == 1) {
+			return String.valueOf(values.get("name")).compareTo(String.valueOf(((Doc) args[0]).name()));
+		}
+
+		// 種類が一致するタグ
+		if (name.equals("tags") && count == 1) {
+			String kind = (String) args[0];
+			if (!kind.startsWith("@")) {
+				kind = "@" + kind;
+			}
+			List<Tag> found = new ArrayList<Tag>();
+			Tag[] tags = (Tag[]) values.get("tags");
+			if (tags != null) {
+				for (Tag tag : tags) {
+					if (tag.kind().equals(kind)) {
+						found.add(tag);
+					}
+				}
+			}
+			return found.toArray(new Tag[found.size()]);
+		}
+
+		// 通知
+		if (name.startsWith("print") && 0 < count) {
+			(name.equals("printNotice") ? System.out : System.err).println(args[count - 1]);
+			return null;
+		}
+
+		// モデルに保存しないことを決めたメソッド
+		if (count == 0 && DEFAULTS.containsKey(name)) {
+			return DEFAULTS.get(name);
+		}
+		throw new UnsupportedOperationException(
+				"モデルに保存されていない情報です: " + method.getDeclaringClass().getSimpleName() + "." + name);
+	}
+
+	/**
+	 * プロキシを作成します。
+	 * <p>
+	 * 2 回目以降は最初に作成したプロキシを返却します。
+	 *
+	 * @param type
+	 *            実装するインタフェース
+	 * @return プロキシ
+	 */
+	public <T> T create(Class<T> type) {
+		if (proxy == null) {
+			proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, this);
+		}
+		return type.cast(proxy);
+	}
+
+	/**
+	 * ルートドキュメントを作成します。
+	 *
+	 * @param options
+	 *            Javadoc オプションの配列
+	 * @param classes
+	 *            全てのクラス
+	 * @return ルートドキュメント
+	 */
+	public static RootDoc newRoot(String[][] options, ClassDoc[] classes) {
+		return new ModelDoc().set("name", "").set("options", options).set("classes", classes).create(RootDoc.class);
+	}
+
+	/**
+	 * パッケージを作成します。
+	 *
+	 * @param name
+	 *            パッケージ名
+	 * @param commentText
+	 *            パッケージの説明
+	 * @return パッケージ
+	 */
+	public static PackageDoc newPackage(String name, String commentText) {
+		return new ModelDoc().set("name", name).set("commentText", commentText).create(PackageDoc.class);
+	}
+
+	/**
+	 * クラスの処理を作成します。
+	 * <p>
+	 * メンバは作成後に {@link #setMembers(FieldDoc[], FieldDoc[], ConstructorDoc[], MethodDoc[])} で設定します。
+	 *
+	 * @param packageDoc
+	 *            パッケージ
+	 * @param qualifiedName
+	 *            完全修飾名
+	 * @param modifiers
+	 *            修飾子の文字列
+	 * @param flags
+	 *            修飾子を示すフラグ
+	 * @param superclasses
+	 *            スーパークラスの完全修飾名 (直接のスーパークラスから順)
+	 * @param interfaces
+	 *            実装するインタフェースの完全修飾名
+	 * @return クラスの処理
+	 */
+	public static ModelDoc newClass(PackageDoc packageDoc, String qualifiedName, String modifiers, int flags,
+			String[] superclasses, String[] interfaces) {
+		String prefix = packageDoc.name().isEmpty() ? "" : packageDoc.name() + ".";
+		ModelDoc doc = new ModelDoc().set("name", qualifiedName.substring(prefix.length()))
+				.set("qualifiedName", qualifiedName).set("modifiers", modifiers).set("containingPackage", packageDoc)
+				.clearKinds().setFlags(flags);
+		doc.set("isEnum", (flags & ENUM) != 0).set("isInterface", (flags & (INTERFACE | ANNOTATION_TYPE)) != 0)
+				.set("isAnnotationType", (flags & ANNOTATION_TYPE) != 0)
+				.set("isClass", (flags & (INTERFACE | ANNOTATION_TYPE)) == 0)
+				.set("isOrdinaryClass", (flags & (INTERFACE | ANNOTATION_TYPE | ENUM)) == 0);
+
+		// スーパークラスは完全修飾名のみ保持
+		ClassDoc superclass = null;
+		for (int i = superclasses.length - 1; 0 <= i; i--) {
+			superclass = new ModelDoc().set("name", simpleName(superclasses[i]))
+					.set("qualifiedName", superclasses[i]).set("superclass", superclass).set("isInterface", false)
+					.create(ClassDoc.class);
+		}
+		doc.set("superclass", superclass);
+
+		// インタフェースは完全修飾名のみ保持 (スーパーインタフェースは保持しない)
+		ClassDoc[] interfaceDocs = new ClassDoc[interfaces.length];
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaceDocs[i] = new ModelDoc().set("name", simpleName(interfaces[i])).set("qualifiedName", interfaces[i])
+					.set("isInterface", true).set("interfaces", new ClassDoc[0]).create(ClassDoc.class);
+		}
+		doc.set("interfaces", interfaceDocs);
+		return doc;
+	}
+
+	/**
+	 * クラスのメンバを設定します。
+	 *
+	 * @param enumConstants
+	 *            列挙型定数
+	 * @param fields
+	 *            フィールド
+	 * @param constructors
+	 *            コンストラクタ
+	 * @param methods
+	 *            メソッド
+	 * @return このインスタンス
+	 */
+	public ModelDoc setMembers(FieldDoc[] enumConstants, FieldDoc[] fields, ConstructorDoc[] constructors,
+			MethodDoc[] methods) {
+		return set("enumConstants", enumConstants).set("fields", fields).set("constructors", constructors)
+				.set("methods", methods);
+	}
+
+	/**
+	 * メンバの処理を作成します。
+	 * <p>
+	 * 作成後にメンバの種類 (isField など) を真に設定します。
+	 *
+	 * @param classDoc
+	 *            メンバを含むクラス
+	 * @param name
+	 *            メンバ名
+	 * @param modifiers
+	 *            修飾子の文字列
+	 * @param flags
+	 *            修飾子を示すフラグ
+	 * @return メンバの処理
+	 */
+	public static ModelDoc newMember(ClassDoc classDoc, String name, String modifiers, int flags) {
+		return new ModelDoc().set("name", name).set("qualifiedName", classDoc.qualifiedName() + "." + name)
+				.set("modifiers", modifiers).set("containingClass", classDoc)
+				.set("containingPackage", classDoc.containingPackage()).clearKinds().setFlags(flags);
+	}
+
+	/**
+	 * コメントとタグを設定します。
+	 * <p>
+	 * タグ名が @param と @throws (@exception) のタグは、Javadoc ツールと同じく最初の空白で名前と説明に分割します。
+	 *
+	 * @param commentText
+	 *            コメントの本文
+	 * @param tagNames
+	 *            全てのタグの名前 (@ を含む)
+	 * @param tagTexts
+	 *            全てのタグの内容
+	 * @return このインスタンス
+	 */
+	public ModelDoc setComment(String commentText, String[] tagNames, String[] tagTexts) {
+		Tag[] tags = new Tag[tagNames.length];
+		List<ParamTag> paramTags = new ArrayList<ParamTag>();
+		List<ThrowsTag> throwsTags = new ArrayList<ThrowsTag>();
+		for (int i = 0; i < tags.length; i++) {
+			String tagName = tagNames[i];
+			String text = tagTexts[i];
+			String[] parts = divideAtWhite(text);
+			ModelDoc tag = new ModelDoc().set("name", tagName).set("kind", tagName).set("text", text);
+			if (tagName.equals("@param")) {
+				boolean typeParameter = parts[0].startsWith("<") && parts[0].endsWith(">");
+				tag.set("parameterName", typeParameter ? parts[0].substring(1, parts[0].length() - 1) : parts[0])
+						.set("parameterComment", parts[1]).set("isTypeParameter", typeParameter);
+				tags[i] = tag.create(ParamTag.class);
+				if (!typeParameter) {
+					paramTags.add((ParamTag) tags[i]);
+				}
+			} else if (tagName.equals("@throws") || tagName.equals("@exception")) {
+				tag.set("kind", "@throws").set("exceptionName", parts[0]).set("exceptionComment", parts[1]);
+				tags[i] = tag.create(ThrowsTag.class);
+				throwsTags.add((ThrowsTag) tags[i]);
+			} else {
+				tags[i] = tag.create(Tag.class);
+			}
+		}
+		set("commentText", commentText).set("tags", tags);
+		set("paramTags", paramTags.toArray(new ParamTag[paramTags.size()]));
+		set("throwsTags", throwsTags.toArray(new ThrowsTag[throwsTags.size()]));
+		return this;
+	}
+
+	/**
+	 * アノテーションを設定します。
+	 *
+	 * @param qualifiedNames
+	 *            アノテーション型の完全修飾名
+	 * @return このインスタンス
+	 */
+	public ModelDoc setAnnotations(String[] qualifiedNames) {
+		AnnotationDesc[] annotations = new AnnotationDesc[qualifiedNames.length];
+		for (int i = 0; i < annotations.length; i++) {
+			AnnotationTypeDoc type = new ModelDoc().set("name", simpleName(qualifiedNames[i]))
+					.set("qualifiedName", qualifiedNames[i]).create(AnnotationTypeDoc.class);
+			annotations[i] = new ModelDoc().set("annotationType", type).create(AnnotationDesc.class);
+		}
+		return set("annotations", annotations);
+	}
+
+	/**
+	 * 型の種類を取得します。
+	 *
+	 * @param type
+	 *            型
+	 * @return 型の種類
+	 */
+	public static int getKind(Type type) {
+		if (type.asWildcardType() != null) {
+			return WILDCARD_TYPE;
+		}
+		if (type.asTypeVariable() != null) {
+			return TYPE_VARIABLE;
+		}
+		if (type.isPrimitive()) {
+			return PRIMITIVE_TYPE;
+		}
+		return CLASS_TYPE;
+	}
+
+	/**
+	 * 型を作成します。
+	 * <p>
+	 * 配列の型は要素の型の種類とします。クラス型の {@link Type#asClassDoc()} は名前のみを持つクラスを返却します。
+	 *
+	 * @param simpleTypeName
+	 *            単純名 (次元を含まない)
+	 * @param typeName
+	 *            パッケージ名を含まない名前 (次元を含まない)
+	 * @param qualifiedTypeName
+	 *            完全修飾名 (次元を含まない)
+	 * @param string
+	 *            型引数と次元を含む文字列表現
+	 * @param kind
+	 *            型の種類
+	 * @param arguments
+	 *            クラス型の型引数, またはワイルドカードの上限
+	 * @param superBounds
+	 *            ワイルドカードの下限
+	 * @return 型
+	 */
+	public static Type newType(String simpleTypeName, String typeName, String qualifiedTypeName, String string,
+			int kind, Type[] arguments, Type[] superBounds) {
+		ModelDoc doc = new ModelDoc().set("simpleTypeName", simpleTypeName).set("typeName", typeName)
+				.set("qualifiedTypeName", qualifiedTypeName).set("toString", string)
+				.set("isPrimitive", kind == PRIMITIVE_TYPE).set("asClassDoc", null).set("asParameterizedType", null)
+				.set("asWildcardType", null).set("asTypeVariable", null);
+		Type type;
+		if (kind == WILDCARD_TYPE) {
+			type = doc.set("extendsBounds", arguments).set("superBounds", superBounds).create(WildcardType.class);
+			doc.set("asWildcardType", type);
+		} else if (kind == TYPE_VARIABLE) {
+			type = doc.create(TypeVariable.class);
+			doc.set("asTypeVariable", type);
+		} else if (kind == CLASS_TYPE) {
+			ClassDoc classDoc = new ModelDoc().set("name", simpleName(qualifiedTypeName))
+					.set("qualifiedName", qualifiedTypeName).create(ClassDoc.class);
+			doc.set("asClassDoc", classDoc);
+			if (arguments.length == 0) {
+				type = doc.create(Type.class);
+			} else {
+				type = doc.set("typeArguments", arguments).create(ParameterizedType.class);
+				doc.set("asParameterizedType", type);
+			}
+		} else {
+			type = doc.create(Type.class);
+		}
+		return type;
+	}
+
+	/**
+	 * 引数を作成します。
+	 *
+	 * @param name
+	 *            引数名
+	 * @param type
+	 *            型
+	 * @return 引数
+	 */
+	public static Parameter newParameter(String name, Type type) {
+		return new ModelDoc().set("name", name).set("typeName", type.toString()).set("type", type)
+				.create(Parameter.class);
+	}
+
+	/**
+	 * 完全修飾名から単純名を取得します。
+	 *
+	 * @param qualifiedName
+	 *            完全修飾名
+	 * @return 単純名
+	 */
+	private static String simpleName(String qualifiedName) {
+		return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+	}
+
+	/**
+	 * タグの内容を最初の空白で 2 つに分割します。
+	 *
+	 * @param text
+	 *            タグの内容
+	 * @return 空白より前と、空白の後の最初の空白以外の文字以降
+	 */
+	private static String[] divideAtWhite(String text) {
+		String[] parts = { text, "" };
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			if (Character.isWhitespace(text.charAt(i))) {
+				parts[0] = text.substring(0, i);
+				for (; i < length; i++) {
+					if (!Character.isWhitespace(text.charAt(i))) {
+						parts[1] = text.substring(i);
+						break;
+					}
+				}
+				break;
+			}
+		}
+		return parts;
+	}
+}
\ No newline at end of file
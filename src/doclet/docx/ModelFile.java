@@ -0,0 +1,793 @@
+package doclet.docx;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.sun.javadoc.AnnotationDesc;
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.ConstructorDoc;
+import com.sun.javadoc.ExecutableMemberDoc;
+import com.sun.javadoc.FieldDoc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.PackageDoc;
+import com.sun.javadoc.Parameter;
+import com.sun.javadoc.ParameterizedType;
+import com.sun.javadoc.ProgramElementDoc;
+import com.sun.javadoc.Tag;
+import com.sun.javadoc.Type;
+import com.sun.javadoc.WildcardType;
+
+/**
+ * 文書の生成に使用する Javadoc 情報を保存するモデルファイルの読み書きと、モデルファイルから文書を生成するコマンドです。
+ * <p>
+ * モデルファイルは {@link DocumentBuilder} が参照する情報 (名前, 修飾子, コメント, タグ, 継承関係, メンバ, フィールド, 引数, 戻り値と例外の型, シグニチャ)
+ * のみをクラスごとに圧縮して保存します。{@link ModelProcessor} が通常のコンパイル中に作成するか、ドックレットの -export オプションで作成します。
+ *
+ * <pre>
+ * java -cp ... doclet.docx.ModelFile -file 出力ファイル -title ... モデルファイル...
+ * </pre>
+ * <p>
+ * オプションはドックレットと同じです。複数のモデルファイル (例えばモジュールごとに作成したファイル) を指定した場合は、
+ * 全てのクラスをパッケージ名の順に並べて 1 つの文書に出力します。同じパッケージのクラスはモデルファイルの指定順に出力します。
+ * <p>
+ * モデルファイルを開いた時点では、クラスの名前とパッケージ、ファイル内の位置のみを読み込みます。
+ * その他の情報はクラスを出力する際にファイルから読み込み、最近参照したクラス以外は保持しないため、
+ * クラスの数が多くても使用するメモリはほぼ一定です。
+ */
+public class ModelFile implements Closeable {
+
+	/**
+	 * ファイルの識別子
+	 */
+	private static final int MAGIC = 0x4444584D;
+
+	/**
+	 * ファイル形式の版
+	 */
+	private static final int VERSION = 4;
+
+	/**
+	 * パッケージのレコード
+	 */
+	private static final int PACKAGE_RECORD = 'P';
+
+	/**
+	 * クラスのレコード
+	 */
+	private static final int CLASS_RECORD = 'C';
+
+	/**
+	 * ファイルの終端のレコード
+	 */
+	private static final int END_RECORD = 'E';
+
+	/**
+	 * 文字コード
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * 読み込んだ状態で保持するクラスの数
+	 */
+	private static final int LOADED_CLASSES = 4;
+
+	/**
+	 * 開いたモデルファイル
+	 */
+	private final List<RandomAccessFile> files = new ArrayList<RandomAccessFile>();
+
+	/**
+	 * パッケージ名とパッケージの処理の対応
+	 */
+	private final Map<String, ModelDoc> packages = new LinkedHashMap<String, ModelDoc>();
+
+	/**
+	 * 全てのクラス (パッケージ名の順)
+	 */
+	private final List<ClassDoc> classes = new ArrayList<ClassDoc>();
+
+	/**
+	 * 最近読み込んだクラス (参照した順)
+	 */
+	private final Map<LazyClass, ClassDoc> loaded = new LinkedHashMap<LazyClass, ClassDoc>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<LazyClass, ClassDoc> eldest) {
+			return LOADED_CLASSES < size();
+		}
+	};
+
+	/**
+	 * 読み込みを遅延するクラスの処理です。
+	 * <p>
+	 * 名前とパッケージ以外のメソッドが呼び出された時点でクラスの情報を読み込み、読み込んだプロキシに処理を委譲します。
+	 * 読み込んだクラスは全てのモデルファイルを通じて最近参照した数件のみ保持し、それ以外は再度参照した時点で読み込み直します。
+	 */
+	private class LazyClass implements InvocationHandler {
+
+		/**
+		 * クラスの情報を含むモデルファイル
+		 */
+		private final RandomAccessFile file;
+
+		/**
+		 * クラスの情報の位置
+		 */
+		private final long offset;
+
+		/**
+		 * クラスの情報の長さ (圧縮後)
+		 */
+		private final int length;
+
+		/**
+		 * パッケージ
+		 */
+		private final PackageDoc packageDoc;
+
+		/**
+		 * 完全修飾名
+		 */
+		private final String qualifiedName;
+
+		/**
+		 * インスタンスを作成します。
+		 *
+		 * @param file
+		 *            クラスの情報を含むモデルファイル
+		 * @param offset
+		 *            クラスの情報の位置
+		 * @param length
+		 *            クラスの情報の長さ
+		 * @param packageDoc
+		 *            パッケージ
+		 * @param qualifiedName
+		 *            完全修飾名
+		 */
+		private LazyClass(RandomAccessFile file, long offset, int length, PackageDoc packageDoc,
+				String qualifiedName) {
+			this.file = file;
+			this.offset = offset;
+			this.length = length;
+			this.packageDoc = packageDoc;
+			this.qualifiedName = qualifiedName;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			int count = args == null ? 0 : args.length;
+
+			// 読み込まずに返却できるメソッド
+			if (count == 0 && (name.equals("qualifiedName") || name.equals("toString"))) {
+				return qualifiedName;
+			}
+			if (count == 0 && name.equals("containingPackage")) {
+				return packageDoc;
+			}
+			if (count == 0 && name.equals("position")) {
+				return null;
+			}
+			if (name.equals("equals") && count == 1) {
+				return proxy == args[0];
+			}
+			if (name.equals("hashCode") && count == 0) {
+				return System.identityHashCode(proxy);
+			}
+
+			// 読み込んだクラスに委譲
+			try {
+				return method.invoke(load(), args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+		/**
+		 * クラスの情報を読み込みます。
+		 *
+		 * @return クラス
+		 * @throws IOException
+		 */
+		private ClassDoc load() throws IOException {
+			synchronized (loaded) {
+				ClassDoc classDoc = loaded.get(this);
+				if (classDoc == null) {
+					byte[] bytes = new byte[length];
+					file.seek(offset);
+					file.readFully(bytes);
+					DataInputStream data = new DataInputStream(
+							new InflaterInputStream(new ByteArrayInputStream(bytes)));
+					try {
+						classDoc = readClass(data, packageDoc, qualifiedName);
+					} finally {
+						data.close();
+					}
+					loaded.put(this, classDoc);
+				}
+				return classDoc;
+			}
+		}
+	}
+
+	/**
+	 * モデルファイルを開いて、クラスの名前と位置を読み込みます。
+	 * <p>
+	 * 全てのモデルファイルのクラスをパッケージ名の順に並べます。同じパッケージのクラスはモデルファイルの指定順に並べ、
+	 * パッケージの説明は最初に空でない説明を記録したモデルファイルから取得します。
+	 *
+	 * @param paths
+	 *            モデルファイル
+	 * @throws IOException
+	 */
+	public ModelFile(File... paths) throws IOException {
+		try {
+			for (File path : paths) {
+				RandomAccessFile file = new RandomAccessFile(path, "r");
+				files.add(file);
+				index(file, path);
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+
+		// パッケージ名の順に並べ替え (同じパッケージ内は元の順)
+		Collections.sort(classes, new Comparator<ClassDoc>() {
+			@Override
+			public int compare(ClassDoc o1, ClassDoc o2) {
+				return o1.containingPackage().name().compareTo(o2.containingPackage().name());
+			}
+		});
+	}
+
+	/**
+	 * モデルファイルのパッケージとクラスの位置を読み込みます。
+	 *
+	 * @param file
+	 *            モデルファイル
+	 * @param path
+	 *            モデルファイルのパス
+	 * @throws IOException
+	 */
+	private void index(RandomAccessFile file, File path) throws IOException {
+		if (file.readInt() != MAGIC) {
+			throw new IOException("モデルファイルではありません: " + path);
+		}
+		int version = file.readInt();
+		if (version != VERSION) {
+			throw new IOException("対応していないモデルファイルの版です: " + path + " (" + version + ")");
+		}
+		while (true) {
+			int record = file.readByte();
+			if (record == END_RECORD) {
+				break;
+			} else if (record == PACKAGE_RECORD) {
+				String name = readString(file);
+				String commentText = readString(file);
+				ModelDoc doc = packages.get(name);
+				if (doc == null) {
+					doc = new ModelDoc().set("name", name).set("commentText", commentText);
+					packages.put(name, doc);
+				} else if (doc.create(PackageDoc.class).commentText().isEmpty()) {
+					doc.set("commentText", commentText);
+				}
+			} else if (record == CLASS_RECORD) {
+				ModelDoc doc = packages.get(readString(file));
+				if (doc == null) {
+					throw new IOException("モデルファイルが不正です: " + path);
+				}
+				String qualifiedName = readString(file);
+				int length = file.readInt();
+				LazyClass handler = new LazyClass(file, file.getFilePointer(), length, doc.create(PackageDoc.class),
+						qualifiedName);
+				classes.add((ClassDoc) Proxy.newProxyInstance(ClassDoc.class.getClassLoader(),
+						new Class<?>[] { ClassDoc.class }, handler));
+				file.seek(file.getFilePointer() + length);
+			} else {
+				throw new IOException("モデルファイルが不正です: " + path);
+			}
+		}
+	}
+
+	/**
+	 * 全てのクラスを取得します。
+	 * <p>
+	 * クラスの情報は最初に名前とパッケージ以外の情報を参照した時点で読み込みます。
+	 *
+	 * @return 全てのクラス (パッケージ名の順)
+	 */
+	public ClassDoc[] getClasses() {
+		return classes.toArray(new ClassDoc[classes.size()]);
+	}
+
+	/**
+	 * 全てのモデルファイルを閉じます。
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException exception = null;
+		for (RandomAccessFile file : files) {
+			try {
+				file.close();
+			} catch (IOException e) {
+				exception = e;
+			}
+		}
+		files.clear();
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	/**
+	 * モデルファイルから文書を生成します。
+	 *
+	 * @param args
+	 *            ドックレットのオプションとモデルファイル
+	 */
+	public static void main(String[] args) {
+		List<String[]> list = new ArrayList<String[]>();
+		List<File> paths = new ArrayList<File>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].startsWith("-") && Options.isSupportedOption(args[i]) && i + 1 < args.length) {
+				list.add(new String[] { args[i], args[++i] });
+			} else if (args[i].startsWith("-")) {
+				System.err.println("不明なオプションです: " + args[i]);
+				System.exit(2);
+			} else {
+				paths.add(new File(args[i]));
+			}
+		}
+		String[][] options = list.toArray(new String[list.size()][]);
+		if (paths.isEmpty()) {
+			System.err.println("使用方法: ModelFile [オプション...] モデルファイル...");
+			System.exit(2);
+		}
+		if (!new Options(options).getOption("watch").isEmpty()) {
+			System.err.println("モデルファイルから生成する場合は -watch を指定できません。");
+			System.exit(2);
+		}
+		boolean result = false;
+		try {
+			ModelFile model = new ModelFile(paths.toArray(new File[paths.size()]));
+			try {
+				result = DocxDoclet.start(ModelDoc.newRoot(options, model.getClasses()));
+			} finally {
+				model.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		System.exit(result ? 0 : 1);
+	}
+
+	/**
+	 * クラスの情報をモデルファイルに書き込みます。
+	 * <p>
+	 * パッケージの説明は各パッケージの最初のクラスの前に書き込み、クラスの情報はクラスごとに圧縮して書き込みます。
+	 * 出力ストリームは閉じません。
+	 *
+	 * @param classes
+	 *            全てのクラス
+	 * @param out
+	 *            出力ストリーム
+	 * @throws IOException
+	 */
+	public static void write(ClassDoc[] classes, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		List<PackageDoc> packages = new ArrayList<PackageDoc>();
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater();
+		try {
+			for (ClassDoc classDoc : classes) {
+
+				// パッケージは最初のクラスの前に書き込む
+				PackageDoc packageDoc = classDoc.containingPackage();
+				if (!packages.contains(packageDoc)) {
+					data.writeByte(PACKAGE_RECORD);
+					writeString(data, packageDoc.name());
+					writeString(data, packageDoc.commentText());
+					packages.add(packageDoc);
+				}
+
+				// クラスの情報を圧縮
+				buffer.reset();
+				deflater.reset();
+				DeflaterOutputStream deflate = new DeflaterOutputStream(buffer, deflater);
+				DataOutputStream body = new DataOutputStream(deflate);
+				writeClass(body, classDoc);
+				body.flush();
+				deflate.finish();
+
+				// クラス
+				data.writeByte(CLASS_RECORD);
+				writeString(data, packageDoc.name());
+				writeString(data, classDoc.qualifiedName());
+				data.writeInt(buffer.size());
+				buffer.writeTo(data);
+			}
+		} finally {
+			deflater.end();
+		}
+		data.writeByte(END_RECORD);
+		data.flush();
+	}
+
+	/**
+	 * クラスの情報を書き込みます。
+	 *
+	 * @param data
+	 *            出力先
+	 * @param classDoc
+	 *            クラス
+	 * @throws IOException
+	 */
+	private static void writeClass(DataOutput data, ClassDoc classDoc) throws IOException {
+
+		// クラス
+		writeElement(data, classDoc);
+		List<String> superclasses = new ArrayList<String>();
+		for (ClassDoc d = classDoc.superclass(); d != null; d = d.superclass()) {
+			superclasses.add(d.qualifiedName());
+		}
+		writeStrings(data, superclasses.toArray(new String[superclasses.size()]));
+		Type superclassType = classDoc.superclassType();
+		data.writeBoolean(superclassType != null);
+		if (superclassType != null) {
+			writeType(data, superclassType);
+		}
+		ClassDoc[] interfaces = classDoc.interfaces();
+		data.writeInt(interfaces.length);
+		for (ClassDoc i : interfaces) {
+			writeString(data, i.qualifiedName());
+		}
+
+		// メンバ
+		for (FieldDoc[] fields : new FieldDoc[][] { classDoc.enumConstants(), classDoc.fields() }) {
+			data.writeInt(fields.length);
+			for (FieldDoc field : fields) {
+				writeString(data, field.name());
+				writeElement(data, field);
+				writeType(data, field.type());
+			}
+		}
+		for (ExecutableMemberDoc[] members : new ExecutableMemberDoc[][] { classDoc.constructors(),
+				classDoc.methods() }) {
+			data.writeInt(members.length);
+			for (ExecutableMemberDoc member : members) {
+				writeString(data, member.name());
+				writeElement(data, member);
+				writeString(data, member.flatSignature());
+				Parameter[] parameters = member.parameters();
+				data.writeInt(parameters.length);
+				for (Parameter parameter : parameters) {
+					writeString(data, parameter.name());
+					writeType(data, parameter.type());
+				}
+				Type[] exceptions = member.thrownExceptionTypes();
+				data.writeInt(exceptions.length);
+				for (Type exception : exceptions) {
+					writeType(data, exception);
+				}
+				if (member instanceof MethodDoc) {
+					writeType(data, ((MethodDoc) member).returnType());
+				}
+			}
+		}
+	}
+
+	/**
+	 * クラスを読み込みます。
+	 *
+	 * @param data
+	 *            入力元
+	 * @param packageDoc
+	 *            パッケージ
+	 * @param qualifiedName
+	 *            完全修飾名
+	 * @return クラス
+	 * @throws IOException
+	 */
+	private static ClassDoc readClass(DataInput data, PackageDoc packageDoc, String qualifiedName)
+			throws IOException {
+
+		// クラス
+		String modifiers = readString(data);
+		int flags = data.readInt();
+		String comment = readString(data);
+		String[] tagNames = readStrings(data);
+		String[] tagTexts = readStrings(data);
+		String[] annotations = readStrings(data);
+		String[] superclasses = readStrings(data);
+		Type superclassType = data.readBoolean() ? readType(data) : null;
+		String[] interfaces = readStrings(data);
+		ModelDoc doc = ModelDoc.newClass(packageDoc, qualifiedName, modifiers, flags, superclasses, interfaces)
+				.set("superclassType", superclassType);
+		doc.setComment(comment, tagNames, tagTexts).setAnnotations(annotations);
+		ClassDoc classDoc = doc.create(ClassDoc.class);
+
+		// メンバ
+		FieldDoc[] enumConstants = new FieldDoc[data.readInt()];
+		for (int i = 0; i < enumConstants.length; i++) {
+			enumConstants[i] = readMember(data, classDoc).set("isEnumConstant", true).set("type", readType(data))
+					.create(FieldDoc.class);
+		}
+		FieldDoc[] fields = new FieldDoc[data.readInt()];
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = readMember(data, classDoc).set("isField", true).set("type", readType(data))
+					.create(FieldDoc.class);
+		}
+		ConstructorDoc[] constructors = new ConstructorDoc[data.readInt()];
+		for (int i = 0; i < constructors.length; i++) {
+			ModelDoc member = readMember(data, classDoc).set("isConstructor", true).set("qualifiedName", qualifiedName);
+			readExecutable(data, member);
+			constructors[i] = member.create(ConstructorDoc.class);
+		}
+		MethodDoc[] methods = new MethodDoc[data.readInt()];
+		for (int i = 0; i < methods.length; i++) {
+			ModelDoc member = readMember(data, classDoc).set("isMethod", true);
+			readExecutable(data, member);
+			member.set("returnType", readType(data));
+			methods[i] = member.create(MethodDoc.class);
+		}
+		doc.setMembers(enumConstants, fields, constructors, methods);
+		return classDoc;
+	}
+
+	/**
+	 * メンバを読み込みます。
+	 *
+	 * @param data
+	 *            入力元
+	 * @param classDoc
+	 *            メンバを含むクラス
+	 * @return メンバの処理
+	 * @throws IOException
+	 */
+	private static ModelDoc readMember(DataInput data, ClassDoc classDoc) throws IOException {
+		String name = readString(data);
+		String modifiers = readString(data);
+		int flags = data.readInt();
+		String comment = readString(data);
+		String[] tagNames = readStrings(data);
+		String[] tagTexts = readStrings(data);
+		String[] annotations = readStrings(data);
+		return ModelDoc.newMember(classDoc, name, modifiers, flags).setComment(comment, tagNames, tagTexts)
+				.setAnnotations(annotations);
+	}
+
+	/**
+	 * 実行可能メンバのシグニチャ, 引数と例外を読み込みます。
+	 *
+	 * @param data
+	 *            入力元
+	 * @param member
+	 *            メンバの処理
+	 * @throws IOException
+	 */
+	private static void readExecutable(DataInput data, ModelDoc member) throws IOException {
+		member.set("flatSignature", readString(data));
+		Parameter[] parameters = new Parameter[data.readInt()];
+		for (int i = 0; i < parameters.length; i++) {
+			String name = readString(data);
+			parameters[i] = ModelDoc.newParameter(name, readType(data));
+		}
+		Type[] exceptions = new Type[data.readInt()];
+		for (int i = 0; i < exceptions.length; i++) {
+			exceptions[i] = readType(data);
+		}
+		member.set("parameters", parameters).set("thrownExceptionTypes", exceptions);
+	}
+
+	/**
+	 * プログラム要素の共通の情報を書き込みます。
+	 *
+	 * @param data
+	 *            出力先
+	 * @param doc
+	 *            プログラム要素
+	 * @throws IOException
+	 */
+	private static void writeElement(DataOutput data, ProgramElementDoc doc) throws IOException {
+		writeString(data, doc.modifiers());
+		data.writeInt(ModelDoc.getFlags(doc));
+		writeString(data, doc.commentText());
+		Tag[] tags = doc.tags();
+		String[] names = new String[tags.length];
+		String[] texts = new String[tags.length];
+		for (int i = 0; i < tags.length; i++) {
+			names[i] = tags[i].name();
+			texts[i] = tags[i].text();
+		}
+		writeStrings(data, names);
+		writeStrings(data, texts);
+		AnnotationDesc[] annotations = doc.annotations();
+		String[] types = new String[annotations.length];
+		for (int i = 0; i < annotations.length; i++) {
+			types[i] = annotations[i].annotationType().qualifiedName();
+		}
+		writeStrings(data, types);
+	}
+
+	/**
+	 * 型を書き込みます。
+	 * <p>
+	 * 型の種類と名前に続けて、クラス型は型引数を、ワイルドカードは上限と下限を書き込みます。
+	 *
+	 * @param data
+	 *            出力先
+	 * @param type
+	 *            型
+	 * @throws IOException
+	 */
+	private static void writeType(DataOutput data, Type type) throws IOException {
+		int kind = ModelDoc.getKind(type);
+		data.writeByte(kind);
+		writeString(data, type.simpleTypeName());
+		writeString(data, type.typeName());
+		writeString(data, type.qualifiedTypeName());
+		writeString(data, type.toString());
+		if (kind == ModelDoc.CLASS_TYPE) {
+			ParameterizedType parameterized = type.asParameterizedType();
+			writeTypes(data, parameterized == null ? new Type[0] : parameterized.typeArguments());
+		} else if (kind == ModelDoc.WILDCARD_TYPE) {
+			WildcardType wildcard = type.asWildcardType();
+			writeTypes(data, wildcard.extendsBounds());
+			writeTypes(data, wildcard.superBounds());
+		}
+	}
+
+	/**
+	 * 型の配列を書き込みます。
+	 *
+	 * @param data
+	 *            出力先
+	 * @param types
+	 *            型の配列
+	 * @throws IOException
+	 */
+	private static void writeTypes(DataOutput data, Type[] types) throws IOException {
+		data.writeInt(types.length);
+		for (Type type : types) {
+			writeType(data, type);
+		}
+	}
+
+	/**
+	 * 型を読み込みます。
+	 *
+	 * @param data
+	 *            入力元
+	 * @return 型
+	 * @throws IOException
+	 */
+	private static Type readType(DataInput data) throws IOException {
+		int kind = data.readByte();
+		String simpleTypeName = readString(data);
+		String typeName = readString(data);
+		String qualifiedTypeName = readString(data);
+		String string = readString(data);
+		Type[] arguments = new Type[0];
+		Type[] superBounds = new Type[0];
+		if (kind == ModelDoc.CLASS_TYPE) {
+			arguments = readTypes(data);
+		} else if (kind == ModelDoc.WILDCARD_TYPE) {
+			arguments = readTypes(data);
+			superBounds = readTypes(data);
+		}
+		return ModelDoc.newType(simpleTypeName, typeName, qualifiedTypeName, string, kind, arguments, superBounds);
+	}
+
+	/**
+	 * 型の配列を読み込みます。
+	 *
+	 * @param data
+	 *            入力元
+	 * @return 型の配列
+	 * @throws IOException
+	 */
+	private static Type[] readTypes(DataInput data) throws IOException {
+		Type[] types = new Type[data.readInt()];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = readType(data);
+		}
+		return types;
+	}
+
+	/**
+	 * 文字列を書き込みます。
+	 * <p>
+	 * {@link DataOutput#writeUTF(String)} と異なり、長さの制限はありません。
+	 *
+	 * @param data
+	 *            出力先
+	 * @param str
+	 *            文字列
+	 * @throws IOException
+	 */
+	private static void writeString(DataOutput data, String str) throws IOException {
+		byte[] bytes = str.getBytes(UTF_8);
+		data.writeInt(bytes.length);
+		data.write(bytes);
+	}
+
+	/**
+	 * 文字列を読み込みます。
+	 *
+	 * @param data
+	 *            入力元
+	 * @return 文字列
+	 * @throws IOException
+	 */
+	private static String readString(DataInput data) throws IOException {
+		int length = data.readInt();
+		if (length < 0) {
+			throw new IOException("モデルファイルが不正です。");
+		}
+		byte[] bytes = new byte[length];
+		data.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * 文字列の配列を書き込みます。
+	 *
+	 * @param data
+	 *            出力先
+	 * @param strs
+	 *            文字列の配列
+	 * @throws IOException
+	 */
+	private static void writeStrings(DataOutput data, String[] strs) throws IOException {
+		data.writeInt(strs.length);
+		for (String str : strs) {
+			writeString(data, str);
+		}
+	}
+
+	/**
+	 * 文字列の配列を読み込みます。
+	 *
+	 * @param data
+	 *            入力元
+	 * @return 文字列の配列
+	 * @throws IOException
+	 */
+	private static String[] readStrings(DataInput data) throws IOException {
+		String[] strs = new String[data.readInt()];
+		for (int i = 0; i < strs.length; i++) {
+			strs[i] = readString(data);
+		}
+		return strs;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,783 @@
+package doclet.docx;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.IntersectionType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.ConstructorDoc;
+import com.sun.javadoc.FieldDoc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.PackageDoc;
+import com.sun.javadoc.Parameter;
+import com.sun.javadoc.Type;
+
+/**
+ * 通常のコンパイル中にクラスの宣言とドキュメンテーションコメントを収集して、モデルファイルに保存する注釈処理です。
+ * <p>
+ * コンパイル対象の全てのクラス (ネストしたクラスを含む) を Javadoc ツールと同じ形式の名前, 修飾子, タグに変換し、
+ * コンパイルの終了時に {@link ModelFile} の形式で出力します。文書は {@link ModelFile} のコマンドでモデルファイルから生成できるため、
+ * 文書のために Javadoc ツールでソースファイルを再度解析する必要はありません。
+ *
+ * <pre>
+ * javac -processorpath docxdoclet-1.0.jar -processor doclet.docx.ModelProcessor -Adocx.model=出力ファイル ...
+ * </pre>
+ * <p>
+ * 出力ファイルを指定しない場合は、クラスファイルの出力先に docxdoclet.model として出力します。
+ * クラスはコンパイルしたソースファイルの順に、パッケージごとにまとめて出力します。
+ * パッケージの説明は package-info.java から取得します (package.html には対応していません)。
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(ModelProcessor.MODEL_OPTION)
+public class ModelProcessor extends AbstractProcessor {
+
+	/**
+	 * 出力ファイルを指定する注釈処理のオプション名
+	 */
+	public static final String MODEL_OPTION = "docx.model";
+
+	/**
+	 * 出力ファイルを指定しない場合のファイル名
+	 */
+	private static final String DEFAULT_MODEL = "docxdoclet.model";
+
+	/**
+	 * パッケージ名とパッケージの処理の対応
+	 */
+	private final Map<String, ModelDoc> packages = new LinkedHashMap<String, ModelDoc>();
+
+	/**
+	 * パッケージ名とパッケージに含まれるクラスの対応
+	 */
+	private final Map<String, List<ClassDoc>> classes = new LinkedHashMap<String, List<ClassDoc>>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+		// このラウンドで解析したクラスとパッケージを変換
+		for (Element element : roundEnv.getRootElements()) {
+			if (element instanceof TypeElement) {
+				addClass((TypeElement) element);
+			} else if (element instanceof PackageElement) {
+				String[] comment = parseComment(element);
+				getPackage((PackageElement) element).set("commentText", comment[0]);
+			}
+		}
+
+		// 最後のラウンドで出力
+		if (roundEnv.processingOver()) {
+			try {
+				write();
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+						"モデルファイルを出力できません: " + e.getMessage());
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 収集したクラスをモデルファイルに出力します。
+	 *
+	 * @throws IOException
+	 */
+	private void write() throws IOException {
+		List<ClassDoc> list = new ArrayList<ClassDoc>();
+		for (List<ClassDoc> docs : classes.values()) {
+			list.addAll(docs);
+		}
+		String path = processingEnv.getOptions().get(MODEL_OPTION);
+		OutputStream out;
+		if (path != null && !path.isEmpty()) {
+			out = new FileOutputStream(path);
+		} else {
+			out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", DEFAULT_MODEL)
+					.openOutputStream();
+		}
+		try {
+			ModelFile.write(list.toArray(new ClassDoc[list.size()]), out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * パッケージの処理を取得します。
+	 *
+	 * @param element
+	 *            パッケージ
+	 * @return パッケージの処理
+	 */
+	private ModelDoc getPackage(PackageElement element) {
+		String name = element.getQualifiedName().toString();
+		ModelDoc doc = packages.get(name);
+		if (doc == null) {
+			doc = new ModelDoc().set("name", name).set("commentText", "");
+			packages.put(name, doc);
+			classes.put(name, new ArrayList<ClassDoc>());
+		}
+		return doc;
+	}
+
+	/**
+	 * クラスとネストしたクラスを変換して追加します。
+	 *
+	 * @param element
+	 *            クラス
+	 */
+	private void addClass(TypeElement element) {
+		PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(element);
+		PackageDoc packageDoc = getPackage(packageElement).create(PackageDoc.class);
+
+		// 継承関係
+		List<String> superclasses = new ArrayList<String>();
+		for (TypeMirror t = element.getSuperclass(); t.getKind() == TypeKind.DECLARED;) {
+			TypeElement superclass = (TypeElement) ((DeclaredType) t).asElement();
+			superclasses.add(superclass.getQualifiedName().toString());
+			t = superclass.getSuperclass();
+		}
+		List<String> interfaces = new ArrayList<String>();
+		for (TypeMirror t : element.getInterfaces()) {
+			interfaces.add(qualifiedTypeName(t));
+		}
+
+		// クラス
+		String[] comment = parseComment(element);
+		ModelDoc doc = ModelDoc.newClass(packageDoc, element.getQualifiedName().toString(), getModifiers(element),
+				getFlags(element), superclasses.toArray(new String[superclasses.size()]),
+				interfaces.toArray(new String[interfaces.size()]));
+		TypeMirror superclassType = element.getSuperclass();
+		doc.set("superclassType", superclassType.getKind() == TypeKind.DECLARED ? newType(superclassType) : null);
+		doc.setComment(comment[0], tagNames(comment), tagTexts(comment)).setAnnotations(getAnnotations(element));
+		ClassDoc classDoc = doc.create(ClassDoc.class);
+		classes.get(packageDoc.name()).add(classDoc);
+
+		// メンバ (宣言順)
+		List<FieldDoc> enumConstants = new ArrayList<FieldDoc>();
+		List<FieldDoc> fields = new ArrayList<FieldDoc>();
+		List<ConstructorDoc> constructors = new ArrayList<ConstructorDoc>();
+		List<MethodDoc> methods = new ArrayList<MethodDoc>();
+		List<TypeElement> nested = new ArrayList<TypeElement>();
+		for (Element member : element.getEnclosedElements()) {
+			switch (member.getKind()) {
+			case ENUM_CONSTANT:
+				enumConstants.add(newMember(classDoc, member).set("isEnumConstant", true)
+						.set("type", newType(member.asType())).create(FieldDoc.class));
+				break;
+			case FIELD:
+				fields.add(newMember(classDoc, member).set("isField", true).set("type", newType(member.asType()))
+						.create(FieldDoc.class));
+				break;
+			case CONSTRUCTOR:
+				ModelDoc constructor = newExecutable(classDoc, (ExecutableElement) member).set("isConstructor", true)
+						.set("name", element.getSimpleName().toString())
+						.set("qualifiedName", classDoc.qualifiedName());
+				constructors.add(constructor.create(ConstructorDoc.class));
+				break;
+			case METHOD:
+				if (element.getKind() != ElementKind.ANNOTATION_TYPE) {
+					ExecutableElement method = (ExecutableElement) member;
+					methods.add(newExecutable(classDoc, method).set("isMethod", true)
+							.set("returnType", newType(method.getReturnType())).create(MethodDoc.class));
+				}
+				break;
+			case CLASS:
+			case INTERFACE:
+			case ENUM:
+			case ANNOTATION_TYPE:
+				nested.add((TypeElement) member);
+				break;
+			default:
+				break;
+			}
+		}
+		doc.setMembers(enumConstants.toArray(new FieldDoc[enumConstants.size()]),
+				fields.toArray(new FieldDoc[fields.size()]),
+				constructors.toArray(new ConstructorDoc[constructors.size()]),
+				methods.toArray(new MethodDoc[methods.size()]));
+
+		// ネストしたクラスは外側のクラスの直後
+		for (TypeElement t : nested) {
+			addClass(t);
+		}
+	}
+
+	/**
+	 * メンバの処理を作成します。
+	 *
+	 * @param classDoc
+	 *            メンバを含むクラス
+	 * @param element
+	 *            メンバ
+	 * @return メンバの処理
+	 */
+	private ModelDoc newMember(ClassDoc classDoc, Element element) {
+		String[] comment = parseComment(element);
+		return ModelDoc.newMember(classDoc, element.getSimpleName().toString(), getModifiers(element),
+				getFlags(element)).setComment(comment[0], tagNames(comment), tagTexts(comment))
+				.setAnnotations(getAnnotations(element));
+	}
+
+	/**
+	 * 実行可能メンバの処理を作成します。
+	 *
+	 * @param classDoc
+	 *            メンバを含むクラス
+	 * @param element
+	 *            コンストラクタまたはメソッド
+	 * @return メンバの処理
+	 */
+	private ModelDoc newExecutable(ClassDoc classDoc, ExecutableElement element) {
+		List<? extends VariableElement> params = element.getParameters();
+		Parameter[] parameters = new Parameter[params.size()];
+		for (int i = 0; i < parameters.length; i++) {
+			VariableElement param = params.get(i);
+			parameters[i] = ModelDoc.newParameter(param.getSimpleName().toString(), newType(param.asType()));
+		}
+		List<? extends TypeMirror> thrown = element.getThrownTypes();
+		Type[] exceptions = new Type[thrown.size()];
+		for (int i = 0; i < exceptions.length; i++) {
+			exceptions[i] = newType(thrown.get(i));
+		}
+		return newMember(classDoc, element).set("flatSignature", flatSignature(element)).set("parameters", parameters)
+				.set("thrownExceptionTypes", exceptions);
+	}
+
+	/**
+	 * Javadoc ツールの {@link com.sun.javadoc.ExecutableMemberDoc#flatSignature()} と同じ形式のシグニチャを作成します。
+	 * <p>
+	 * 引数の型をパッケージ名を含まない名前で列挙し、可変長引数の最後の次元は ... とします。
+	 *
+	 * @param element
+	 *            コンストラクタまたはメソッド
+	 * @return シグニチャ
+	 */
+	private static String flatSignature(ExecutableElement element) {
+		StringBuilder sb = new StringBuilder("(");
+		List<? extends VariableElement> params = element.getParameters();
+		for (int i = 0; i < params.size(); i++) {
+			if (0 < i) {
+				sb.append(", ");
+			}
+			TypeMirror type = params.get(i).asType();
+			if (element.isVarArgs() && i == params.size() - 1 && type.getKind() == TypeKind.ARRAY) {
+				sb.append(flatTypeToString(((ArrayType) type).getComponentType())).append("...");
+			} else {
+				sb.append(flatTypeToString(type));
+			}
+		}
+		return sb.append(')').toString();
+	}
+
+	/**
+	 * 型をパッケージ名を含まない Javadoc ツールと同じ形式の文字列に変換します。
+	 * <p>
+	 * クラス型は外側のクラス名を含む名前に型引数を付加し、内部クラスは外側のクラス型に続けて単純名を付加します。
+	 *
+	 * @param type
+	 *            型
+	 * @return 型の文字列表現
+	 */
+	private static String flatTypeToString(TypeMirror type) {
+		switch (type.getKind()) {
+		case ARRAY:
+			return flatTypeToString(((ArrayType) type).getComponentType()) + "[]";
+		case WILDCARD:
+			WildcardType wildcard = (WildcardType) type;
+			if (wildcard.getExtendsBound() != null) {
+				return "? extends " + flatTypeToString(wildcard.getExtendsBound());
+			}
+			if (wildcard.getSuperBound() != null) {
+				return "? super " + flatTypeToString(wildcard.getSuperBound());
+			}
+			return "?";
+		case DECLARED:
+			DeclaredType declared = (DeclaredType) type;
+			StringBuilder sb = new StringBuilder();
+			TypeMirror enclosing = declared.getEnclosingType();
+			if (enclosing.getKind() == TypeKind.DECLARED) {
+				sb.append(flatTypeToString(enclosing)).append('.').append(declared.asElement().getSimpleName());
+			} else {
+				Element element = declared.asElement();
+				String name = element.getSimpleName().toString();
+				for (Element outer = element.getEnclosingElement(); outer.getKind() != ElementKind.PACKAGE;) {
+					name = outer.getSimpleName() + "." + name;
+					outer = outer.getEnclosingElement();
+				}
+				sb.append(name);
+			}
+			List<? extends TypeMirror> arguments = declared.getTypeArguments();
+			if (!arguments.isEmpty()) {
+				sb.append('<');
+				for (int i = 0; i < arguments.size(); i++) {
+					if (0 < i) {
+						sb.append(", ");
+					}
+					sb.append(flatTypeToString(arguments.get(i)));
+				}
+				sb.append('>');
+			}
+			return sb.toString();
+		default:
+			return qualifiedTypeName(type);
+		}
+	}
+
+	/**
+	 * Javadoc ツールと同じ形式の修飾子の文字列を作成します。
+	 * <p>
+	 * インタフェースとアノテーション型は abstract を除いて interface を付加し、インタフェースのメソッドは abstract を除きます。
+	 *
+	 * @param element
+	 *            要素
+	 * @return 修飾子の文字列
+	 */
+	private static String getModifiers(Element element) {
+		int modifiers = 0;
+		for (Modifier modifier : element.getModifiers()) {
+			switch (modifier) {
+			case PUBLIC:
+				modifiers |= java.lang.reflect.Modifier.PUBLIC;
+				break;
+			case PROTECTED:
+				modifiers |= java.lang.reflect.Modifier.PROTECTED;
+				break;
+			case PRIVATE:
+				modifiers |= java.lang.reflect.Modifier.PRIVATE;
+				break;
+			case ABSTRACT:
+				modifiers |= java.lang.reflect.Modifier.ABSTRACT;
+				break;
+			case STATIC:
+				modifiers |= java.lang.reflect.Modifier.STATIC;
+				break;
+			case FINAL:
+				modifiers |= java.lang.reflect.Modifier.FINAL;
+				break;
+			case TRANSIENT:
+				modifiers |= java.lang.reflect.Modifier.TRANSIENT;
+				break;
+			case VOLATILE:
+				modifiers |= java.lang.reflect.Modifier.VOLATILE;
+				break;
+			case SYNCHRONIZED:
+				modifiers |= java.lang.reflect.Modifier.SYNCHRONIZED;
+				break;
+			case NATIVE:
+				modifiers |= java.lang.reflect.Modifier.NATIVE;
+				break;
+			case STRICTFP:
+				modifiers |= java.lang.reflect.Modifier.STRICT;
+				break;
+			default:
+				break;
+			}
+		}
+		if (element.getKind().isInterface()) {
+			modifiers &= ~java.lang.reflect.Modifier.ABSTRACT;
+			modifiers |= java.lang.reflect.Modifier.INTERFACE;
+		} else if (element.getKind() == ElementKind.METHOD && element.getEnclosingElement().getKind().isInterface()) {
+			modifiers &= ~java.lang.reflect.Modifier.ABSTRACT;
+		}
+		return java.lang.reflect.Modifier.toString(modifiers);
+	}
+
+	/**
+	 * 修飾子を示すフラグを作成します。
+	 *
+	 * @param element
+	 *            要素
+	 * @return フラグ
+	 */
+	private static int getFlags(Element element) {
+		Set<Modifier> modifiers = element.getModifiers();
+		int flags = 0;
+		if (modifiers.contains(Modifier.PUBLIC)) {
+			flags |= ModelDoc.PUBLIC;
+		} else if (modifiers.contains(Modifier.PROTECTED)) {
+			flags |= ModelDoc.PROTECTED;
+		} else if (modifiers.contains(Modifier.PRIVATE)) {
+			flags |= ModelDoc.PRIVATE;
+		}
+		switch (element.getKind()) {
+		case ENUM:
+			flags |= ModelDoc.ENUM;
+			break;
+		case INTERFACE:
+			flags |= ModelDoc.INTERFACE;
+			break;
+		case ANNOTATION_TYPE:
+			flags |= ModelDoc.ANNOTATION_TYPE;
+			break;
+		default:
+			break;
+		}
+		return flags;
+	}
+
+	/**
+	 * 要素に付加されたアノテーション型の完全修飾名を取得します。
+	 *
+	 * @param element
+	 *            要素
+	 * @return アノテーション型の完全修飾名
+	 */
+	private static String[] getAnnotations(Element element) {
+		List<? extends AnnotationMirror> mirrors = element.getAnnotationMirrors();
+		String[] names = new String[mirrors.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = qualifiedTypeName(mirrors.get(i).getAnnotationType());
+		}
+		return names;
+	}
+
+	/**
+	 * ドキュメンテーションコメントを本文とタグに分割します。
+	 * <p>
+	 * Javadoc ツールと同じく、行頭 (空白を除く) の @ からタグとし、本文とタグの内容の前後の空白を除きます。
+	 *
+	 * @param element
+	 *            要素
+	 * @return 本文と、タグの名前と内容を交互に格納した配列
+	 */
+	private String[] parseComment(Element element) {
+		String comment = processingEnv.getElementUtils().getDocComment(element);
+		if (comment == null) {
+			comment = "";
+		}
+		List<String> parts = new ArrayList<String>();
+		final int inText = 1;
+		final int tagGap = 2;
+		final int tagName = 3;
+		int state = tagGap;
+		boolean newLine = true;
+		String name = null;
+		int tagStart = 0;
+		int textStart = 0;
+		int lastNonWhite = -1;
+		int length = comment.length();
+		for (int i = 0; i < length; i++) {
+			char ch = comment.charAt(i);
+			boolean white = Character.isWhitespace(ch);
+			if (state == tagName) {
+				if (white) {
+					name = comment.substring(tagStart, i);
+					state = tagGap;
+				}
+			} else {
+				if (state == tagGap && !white) {
+					textStart = i;
+					state = inText;
+				}
+				if (state == inText && newLine && ch == '@') {
+					addCommentPart(parts, name, comment, textStart, lastNonWhite + 1);
+					tagStart = i;
+					state = tagName;
+				}
+			}
+			if (ch == '\n') {
+				newLine = true;
+			} else if (!white) {
+				lastNonWhite = i;
+				newLine = false;
+			}
+		}
+
+		// 最後の本文またはタグ
+		if (state == tagName) {
+			name = comment.substring(tagStart, length);
+		}
+		if (state != inText) {
+			textStart = length;
+		}
+		addCommentPart(parts, name, comment, textStart, lastNonWhite + 1);
+		return parts.toArray(new String[parts.size()]);
+	}
+
+	/**
+	 * コメントの本文またはタグを追加します。
+	 *
+	 * @param parts
+	 *            本文と、タグの名前と内容
+	 * @param name
+	 *            タグの名前 (本文の場合は null)
+	 * @param comment
+	 *            コメント
+	 * @param from
+	 *            開始位置
+	 * @param to
+	 *            終了位置
+	 */
+	private static void addCommentPart(List<String> parts, String name, String comment, int from, int to) {
+		String text = to <= from ? "" : comment.substring(from, to);
+		if (name == null) {
+			parts.add(text);
+		} else {
+			parts.add(name);
+			parts.add(text);
+		}
+	}
+
+	/**
+	 * 分割したコメントからタグの名前を取得します。
+	 *
+	 * @param comment
+	 *            本文と、タグの名前と内容を交互に格納した配列
+	 * @return タグの名前
+	 */
+	private static String[] tagNames(String[] comment) {
+		String[] names = new String[comment.length / 2];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = comment[1 + i * 2];
+		}
+		return names;
+	}
+
+	/**
+	 * 分割したコメントからタグの内容を取得します。
+	 *
+	 * @param comment
+	 *            本文と、タグの名前と内容を交互に格納した配列
+	 * @return タグの内容
+	 */
+	private static String[] tagTexts(String[] comment) {
+		String[] texts = new String[comment.length / 2];
+		for (int i = 0; i < texts.length; i++) {
+			texts[i] = comment[2 + i * 2];
+		}
+		return texts;
+	}
+
+	/**
+	 * 型を作成します。
+	 * <p>
+	 * Javadoc ツールと同じく、配列の型は要素の型の種類と型引数を持ちます。
+	 *
+	 * @param type
+	 *            型
+	 * @return Javadoc ツールと同じ名前と構造の型
+	 */
+	private static Type newType(TypeMirror type) {
+		TypeMirror component = type;
+		while (component.getKind() == TypeKind.ARRAY) {
+			component = ((ArrayType) component).getComponentType();
+		}
+
+		// 型の種類と、型引数またはワイルドカードの境界
+		int kind = ModelDoc.CLASS_TYPE;
+		List<Type> arguments = new ArrayList<Type>();
+		List<Type> superBounds = new ArrayList<Type>();
+		switch (component.getKind()) {
+		case DECLARED:
+			for (TypeMirror argument : ((DeclaredType) component).getTypeArguments()) {
+				arguments.add(newType(argument));
+			}
+			break;
+		case TYPEVAR:
+			kind = ModelDoc.TYPE_VARIABLE;
+			break;
+		case WILDCARD:
+			kind = ModelDoc.WILDCARD_TYPE;
+			WildcardType wildcard = (WildcardType) component;
+			if (wildcard.getExtendsBound() != null) {
+				arguments.add(newType(wildcard.getExtendsBound()));
+			}
+			if (wildcard.getSuperBound() != null) {
+				superBounds.add(newType(wildcard.getSuperBound()));
+			}
+			break;
+		default:
+			if (component.getKind().isPrimitive() || component.getKind() == TypeKind.VOID) {
+				kind = ModelDoc.PRIMITIVE_TYPE;
+			}
+			break;
+		}
+
+		// 名前
+		String simpleTypeName;
+		String typeName;
+		if (component.getKind() == TypeKind.DECLARED) {
+			TypeElement element = (TypeElement) ((DeclaredType) component).asElement();
+			simpleTypeName = element.getSimpleName().toString();
+			typeName = element.getQualifiedName().toString();
+			Element outer = element;
+			while (outer.getKind() != ElementKind.PACKAGE) {
+				outer = outer.getEnclosingElement();
+			}
+			String packageName = ((PackageElement) outer).getQualifiedName().toString();
+			if (!packageName.isEmpty()) {
+				typeName = typeName.substring(packageName.length() + 1);
+			}
+		} else {
+			simpleTypeName = qualifiedTypeName(component);
+			typeName = simpleTypeName;
+		}
+		return ModelDoc.newType(simpleTypeName, typeName, qualifiedTypeName(component),
+				kind == ModelDoc.WILDCARD_TYPE ? typeArgumentToString(type) : typeToString(type), kind,
+				arguments.toArray(new Type[arguments.size()]), superBounds.toArray(new Type[superBounds.size()]));
+	}
+
+	/**
+	 * Javadoc ツールと同じ形式で、型引数と次元を含まない完全修飾名を作成します。
+	 *
+	 * @param type
+	 *            型
+	 * @return 完全修飾名
+	 */
+	private static String qualifiedTypeName(TypeMirror type) {
+		switch (type.getKind()) {
+		case DECLARED:
+			return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+		case TYPEVAR:
+			return ((TypeVariable) type).asElement().getSimpleName().toString();
+		case ARRAY:
+			return qualifiedTypeName(((ArrayType) type).getComponentType());
+		default:
+			return type.getKind().isPrimitive() || type.getKind() == TypeKind.VOID
+					? type.getKind().name().toLowerCase(Locale.ROOT) : type.toString();
+		}
+	}
+
+	/**
+	 * 引数と戻り値の型を Javadoc ツールと同じ形式の文字列に変換します。
+	 * <p>
+	 * 配列は型引数を含まない完全修飾名に次元を付加し、型変数は上限を付加します。
+	 *
+	 * @param type
+	 *            型
+	 * @return 型の文字列表現
+	 */
+	private static String typeToString(TypeMirror type) {
+		switch (type.getKind()) {
+		case ARRAY:
+			StringBuilder sb = new StringBuilder();
+			TypeMirror component = type;
+			while (component.getKind() == TypeKind.ARRAY) {
+				component = ((ArrayType) component).getComponentType();
+				sb.append("[]");
+			}
+			return qualifiedTypeName(component) + sb;
+		case TYPEVAR:
+			StringBuilder bounds = new StringBuilder(qualifiedTypeName(type));
+			TypeMirror upper = ((TypeVariable) type).getUpperBound();
+			List<TypeMirror> list = new ArrayList<TypeMirror>();
+			if (upper.getKind() == TypeKind.INTERSECTION) {
+				list.addAll(((IntersectionType) upper).getBounds());
+			} else if (!qualifiedTypeName(upper).equals("java.lang.Object")) {
+				list.add(upper);
+			}
+			for (int i = 0; i < list.size(); i++) {
+				bounds.append(i == 0 ? " extends " : " & ").append(typeArgumentToString(list.get(i)));
+			}
+			return bounds.toString();
+		default:
+			return typeArgumentToString(type);
+		}
+	}
+
+	/**
+	 * 型引数を Javadoc ツールと同じ形式の文字列に変換します。
+	 *
+	 * @param type
+	 *            型
+	 * @return 型の文字列表現
+	 */
+	private static String typeArgumentToString(TypeMirror type) {
+		switch (type.getKind()) {
+		case ARRAY:
+			return typeArgumentToString(((ArrayType) type).getComponentType()) + "[]";
+		case WILDCARD:
+			WildcardType wildcard = (WildcardType) type;
+			if (wildcard.getExtendsBound() != null) {
+				return "? extends " + typeArgumentToString(wildcard.getExtendsBound());
+			}
+			if (wildcard.getSuperBound() != null) {
+				return "? super " + typeArgumentToString(wildcard.getSuperBound());
+			}
+			return "?";
+		case DECLARED:
+			return declaredTypeToString((DeclaredType) type);
+		default:
+			return qualifiedTypeName(type);
+		}
+	}
+
+	/**
+	 * クラス型を Javadoc ツールと同じ形式の文字列に変換します。
+	 *
+	 * @param type
+	 *            クラス型
+	 * @return 型引数を含む文字列表現
+	 */
+	private static String declaredTypeToString(DeclaredType type) {
+		StringBuilder sb = new StringBuilder();
+		TypeMirror enclosing = type.getEnclosingType();
+		if (enclosing.getKind() == TypeKind.DECLARED && isParameterized((DeclaredType) enclosing)) {
+			sb.append(declaredTypeToString((DeclaredType) enclosing)).append('.')
+					.append(type.asElement().getSimpleName());
+		} else {
+			sb.append(qualifiedTypeName(type));
+		}
+		List<? extends TypeMirror> arguments = type.getTypeArguments();
+		if (!arguments.isEmpty()) {
+			sb.append('<');
+			for (int i = 0; i < arguments.size(); i++) {
+				if (0 < i) {
+					sb.append(", ");
+				}
+				sb.append(typeArgumentToString(arguments.get(i)));
+			}
+			sb.append('>');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * クラス型または外側のクラス型に型引数があるか判定します。
+	 *
+	 * @param type
+	 *            クラス型
+	 * @return 型引数がある場合は true を返却します。
+	 */
+	private static boolean isParameterized(DeclaredType type) {
+		if (!type.getTypeArguments().isEmpty()) {
+			return true;
+		}
+		TypeMirror enclosing = type.getEnclosingType();
+		return enclosing.getKind() == TypeKind.DECLARED && isParameterized((DeclaredType) enclosing);
+	}
+}
\ No newline at end of file
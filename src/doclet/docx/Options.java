@@ -1,14 +1,41 @@
 package doclet.docx;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
 /**
  * 実行時オプションを格納するクラスです。
+ * <p>
+ * インスタンスは生成後に変更されないため、複数の文書を並行して生成する場合も共有できます。
  */
 public class Options {
 
 	/**
 	 * Javadoc オプションの配列
 	 */
-	public static String[][] options;
+	private final String[][] options;
+
+	/**
+	 * Javadoc オプションの配列からインスタンスを作成します。
+	 *
+	 * @param options
+	 *            Javadoc オプションの配列 (各要素はオプション名と値の配列)
+	 */
+	public Options(String[][] options) {
+		this.options = new String[options.length][];
+		for (int i = 0; i < options.length; i++) {
+			this.options[i] = options[i].clone();
+		}
+	}
 
 	/**
 	 * オプション文字列を取得します。
@@ -19,7 +46,7 @@ public class Options {
 	 *            オプション名
 	 * @return オプションの値
 	 */
-	public static String getOption(String name) {
+	public String getOption(String name) {
 		return getOption(name, "");
 	}
 
@@ -34,7 +61,7 @@ public class Options {
 	 *            オプションが指定されていない場合に使用する値
 	 * @return オプションの値
 	 */
-	public static String getOption(String name, String defaultValue) {
+	public String getOption(String name, String defaultValue) {
 		for (int i = 0; i < options.length; i++) {
 			String[] opt = options[i];
 			if (opt[0].equals("-" + name)) {
@@ -44,6 +71,25 @@ public class Options {
 		return defaultValue;
 	}
 
+	/**
+	 * 全てのオプションを指定された順に "名前 値" の形式で列挙した文字列を返却します。
+	 *
+	 * @return オプションの文字列
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (String[] opt : options) {
+			for (String value : opt) {
+				if (0 < sb.length()) {
+					sb.append(' ');
+				}
+				sb.append(value);
+			}
+		}
+		return sb.toString();
+	}
+
 	/**
 	 * 対応しているオプション名であるか判定します。
 	 *
@@ -61,8 +107,152 @@ public class Options {
 		case "-version":
 		case "-company":
 		case "-copyright":
+		case "-visibility":
+		case "-include":
+		case "-exclude":
+		case "-skipannotation":
+		case "-skiptag":
+		case "-variants":
+		case "-threads":
+		case "-zipthreads":
+		case "-timestamp":
+		case "-shard":
+		case "-journal":
+		case "-patch":
+		case "-watch":
+		case "-callstats":
+		case "-memoize":
+		case "-maxheapfraction":
+		case "-export":
+		case "-profile":
+		case "-toc":
+		case "-index":
+		case "-hierarchy":
+		case "-usedby":
 			return true;
 		}
 		return false;
 	}
+
+	/**
+	 * 文書に記録する日時を取得します。
+	 * <p>
+	 * -timestamp オプションにはエポックからの秒数を指定します。オプションが指定されていない場合は環境変数 SOURCE_DATE_EPOCH を使用します。
+	 * いずれかが指定されている場合、同じ入力からは同じ内容の文書が生成されます。
+	 *
+	 * @return 日時 (いずれも指定されていない場合は null)
+	 */
+	public Date getTimestamp() {
+		String value = getOption("timestamp", System.getenv("SOURCE_DATE_EPOCH"));
+		if (value == null || value.trim().isEmpty()) {
+			return null;
+		}
+		try {
+			return new Date(Long.parseLong(value.trim()) * 1000L);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("不正な日時です: " + value);
+		}
+	}
+
+	/**
+	 * 本文を圧縮するスレッド数を取得します。
+	 * <p>
+	 * -zipthreads オプションには正の整数を指定します。オプションが指定されていない場合は 1 を返却します。
+	 *
+	 * @return 本文を圧縮するスレッド数
+	 */
+	public int getZipThreads() {
+		String value = getOption("zipthreads", "1");
+		int threads;
+		try {
+			threads = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			threads = 0;
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("-zipthreads の値が不正です (正の整数を指定してください): " + value);
+		}
+		return threads;
+	}
+
+	/**
+	 * 開く処理を軽くする出力プロファイルが指定されているか判定します。
+	 * <p>
+	 * -profile オプションには fastopen のみ指定できます。
+	 *
+	 * @return fastopen が指定されている場合は true を返却します。
+	 */
+	public boolean isFastOpen() {
+		String profile = getOption("profile");
+		if (profile.isEmpty()) {
+			return false;
+		}
+		if (profile.equals("fastopen")) {
+			return true;
+		}
+		throw new IllegalArgumentException("-profile の値が不正です: " + profile);
+	}
+
+	/**
+	 * 文書の種類ごとのオプションを取得します。
+	 * <p>
+	 * -variants オプションが指定されていない場合は、このインスタンスのみを含むリストを返却します。
+	 * <p>
+	 * 定義ファイルは UTF-8 のプロパティ形式で、variants キーに種類の名前をカンマ区切りで列挙し、
+	 * 種類ごとのオプションを "種類の名前.オプション名" のキーで指定します。種類ごとに指定されていないオプションはこのインスタンスの値を使用します。
+	 *
+	 * <pre>
+	 * variants=internal,public
+	 * internal.file=internal.docx
+	 * public.file=public.docx
+	 * public.visibility=public
+	 * </pre>
+	 *
+	 * @return 種類ごとのオプションのリスト
+	 * @throws IOException
+	 */
+	public List<Options> getVariants() throws IOException {
+
+		// 定義ファイルが指定されていない場合
+		String path = getOption("variants");
+		if (path.isEmpty()) {
+			return Collections.singletonList(this);
+		}
+
+		// 定義ファイルを読み込み
+		Properties props = new Properties();
+		InputStream in = new FileInputStream(path);
+		try {
+			props.load(new InputStreamReader(in, "UTF-8"));
+		} finally {
+			in.close();
+		}
+
+		// 種類ごとに基本のオプションを上書き
+		List<Options> list = new ArrayList<Options>();
+		for (String variant : props.getProperty("variants", "").split(",")) {
+			variant = variant.trim();
+			if (variant.isEmpty()) {
+				continue;
+			}
+			Map<String, String[]> map = new LinkedHashMap<String, String[]>();
+			for (String[] opt : options) {
+				if (!opt[0].equals("-variants")) {
+					map.put(opt[0], opt);
+				}
+			}
+			String prefix = variant + ".";
+			for (String key : props.stringPropertyNames()) {
+				if (key.startsWith(prefix)) {
+					String name = "-" + key.substring(prefix.length());
+					if (!isSupportedOption(name) || name.equals("-variants")) {
+						throw new IllegalArgumentException("不正なオプションです: " + key);
+					}
+					map.put(name, new String[] { name, props.getProperty(key) });
+				}
+			}
+			list.add(new Options(map.values().toArray(new String[map.size()][])));
+		}
+		return list;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,419 @@
+package doclet.docx;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTOnOff;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSpacing;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STLineSpacingRule;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STOnOff;
+
+/**
+ * 段落を順に配置して、各段落が始まるページを見積もるクラスです。
+ * <p>
+ * 文字ごとの幅をフォントの寸法から求めて行の折り返しを再現し、段落の前後の間隔と行間、改ページを加えてページ数を数えます。
+ * 文字の幅はフォントごとに表を作成して記憶します。実行環境にフォントがない場合は Java の論理フォントの寸法で代用し、
+ * 論理フォントで表示できない文字は全角を 1 文字分、それ以外を半文字分の幅とします。
+ * <p>
+ * 禁則処理や段落の分割の制御は考慮しないため、Word が配置した結果とは数ページずれる場合があります。
+ */
+public class PageEstimator {
+
+	/**
+	 * フォントの寸法を求める際の文字の大きさ
+	 */
+	private static final float FONT_SIZE = 1000f;
+
+	/**
+	 * 文字の大きさが指定されていない場合の大きさ (半ポイント)
+	 */
+	private static final int DEFAULT_SIZE = 20;
+
+	/**
+	 * 行単位の間隔の 1 行の高さ (twip)
+	 */
+	private static final int LINE_PITCH = 240;
+
+	/**
+	 * 既定のタブ位置の間隔 (twip)
+	 */
+	private static final int TAB_STOP = 720;
+
+	/**
+	 * 文字の寸法の計算条件
+	 */
+	private final FontRenderContext context = new FontRenderContext(null, true, true);
+
+	/**
+	 * フォント名ごとの寸法
+	 */
+	private final Map<String, FontTable> fonts = new HashMap<String, FontTable>();
+
+	/**
+	 * 本文の幅 (twip)
+	 */
+	private final int width;
+
+	/**
+	 * 本文の高さ (twip)
+	 */
+	private final int height;
+
+	/**
+	 * 現在のページ番号
+	 */
+	private int page = 1;
+
+	/**
+	 * 現在のページで使用済の高さ (twip)
+	 */
+	private int used;
+
+	/**
+	 * 段落を配置済の場合は true
+	 */
+	private boolean started;
+
+	/**
+	 * 1 つのフォントの寸法です。
+	 */
+	private static class FontTable {
+
+		/**
+		 * フォント
+		 */
+		private final Font font;
+
+		/**
+		 * 文字ごとの幅 (文字の大きさに対する比率, 未計算の場合は 0)
+		 */
+		private final float[] widths = new float[Character.MAX_VALUE + 1];
+
+		/**
+		 * 1 行の高さ (文字の大きさに対する比率)
+		 */
+		private final float lineHeight;
+
+		/**
+		 * インスタンスを作成します。
+		 *
+		 * @param font
+		 *            フォント
+		 * @param context
+		 *            文字の寸法の計算条件
+		 */
+		private FontTable(Font font, FontRenderContext context) {
+			this.font = font;
+			this.lineHeight = font.getLineMetrics("Mg", context).getHeight() / FONT_SIZE;
+		}
+	}
+
+	/**
+	 * インスタンスを作成します。
+	 *
+	 * @param width
+	 *            本文の幅 (twip)
+	 * @param height
+	 *            本文の高さ (twip)
+	 */
+	public PageEstimator(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * 配置済の段落のページ数を取得します。
+	 *
+	 * @return ページ数
+	 */
+	public int getPages() {
+		return page;
+	}
+
+	/**
+	 * 段落を配置します。
+	 *
+	 * @param ctp
+	 *            段落
+	 * @return 段落が始まるページ番号
+	 */
+	public int add(CTP ctp) {
+
+		// 段落の書式を取得
+		CTPPr ppr = ctp.getPPr();
+		CTSpacing spacing = ppr != null && ppr.isSetSpacing() ? ppr.getSpacing() : null;
+		int left = 0;
+		int firstLine = 0;
+		if (ppr != null && ppr.isSetInd()) {
+			left = twips(ppr.getInd().getLeft());
+			firstLine = twips(ppr.getInd().getFirstLine()) - twips(ppr.getInd().getHanging());
+		}
+
+		// 改ページ
+		if (started && ppr != null && isOn(ppr.getPageBreakBefore())) {
+			newPage();
+		}
+		started = true;
+
+		// 行の折り返しを計算
+		Layout layout = new Layout(Math.max(width - left, 1), firstLine);
+		for (CTR ctr : ctp.getRArray()) {
+			layout.add(ctr);
+		}
+
+		// 行の高さを計算
+		int size = layout.size == 0 ? DEFAULT_SIZE : layout.size;
+		int lineHeight = (int) (size * 10 * layout.lineHeight);
+		if (spacing != null && spacing.getLine() != null) {
+			int line = spacing.getLine().intValue();
+			STLineSpacingRule.Enum rule = spacing.getLineRule();
+			if (rule == null || rule == STLineSpacingRule.AUTO) {
+				lineHeight = lineHeight * line / 240;
+			} else if (rule == STLineSpacingRule.EXACT || lineHeight < line) {
+				lineHeight = line;
+			}
+		}
+
+		// 段落の前の間隔
+		int before = 0;
+		int after = 0;
+		if (spacing != null) {
+			before = spacing.getBeforeLines() != null ? spacing.getBeforeLines().intValue() * LINE_PITCH / 100
+					: twips(spacing.getBefore());
+			after = spacing.getAfterLines() != null ? spacing.getAfterLines().intValue() * LINE_PITCH / 100
+					: twips(spacing.getAfter());
+		}
+		if (height < used + before) {
+			newPage();
+		} else {
+			used += before;
+		}
+
+		// 行を配置
+		int start = 0;
+		for (int i = 0; i < layout.lines; i++) {
+			if (height < used + lineHeight && 0 < used) {
+				newPage();
+			}
+			if (i == 0) {
+				start = page;
+			}
+			used += lineHeight;
+		}
+
+		// 段落の後の間隔
+		used = Math.min(used + after, height);
+		return start;
+	}
+
+	/**
+	 * 改ページします。
+	 */
+	private void newPage() {
+		page++;
+		used = 0;
+	}
+
+	/**
+	 * 文字の幅を取得します。
+	 *
+	 * @param table
+	 *            フォントの寸法
+	 * @param c
+	 *            文字
+	 * @return 文字の大きさに対する比率
+	 */
+	private float getWidth(FontTable table, char c) {
+		float w = table.widths[c];
+		if (w == 0) {
+			if (table.font.canDisplay(c)) {
+				w = (float) table.font.getStringBounds(new char[] { c }, 0, 1, context).getWidth() / FONT_SIZE;
+			} else {
+				w = isWide(c) ? 1f : 0.5f;
+			}
+			table.widths[c] = w == 0 ? Float.MIN_VALUE : w;
+		}
+		return w;
+	}
+
+	/**
+	 * フォントの寸法を取得します。
+	 *
+	 * @param name
+	 *            フォント名 (指定されていない場合は null)
+	 * @return フォントの寸法
+	 */
+	private FontTable getFontTable(String name) {
+		String key = name == null ? Font.DIALOG : name;
+		FontTable table = fonts.get(key);
+		if (table == null) {
+			Font font = new Font(key, Font.PLAIN, (int) FONT_SIZE);
+			if (!font.getFamily(Locale.ROOT).equalsIgnoreCase(key)) {
+				font = new Font(Font.DIALOG, Font.PLAIN, (int) FONT_SIZE);
+			}
+			table = new FontTable(font, context);
+			fonts.put(key, table);
+		}
+		return table;
+	}
+
+	/**
+	 * 1 つの段落の行の折り返しの計算です。
+	 */
+	private class Layout {
+
+		/**
+		 * 行の幅 (twip)
+		 */
+		private final int available;
+
+		/**
+		 * 現在の行で使用済の幅 (twip)
+		 */
+		private float x;
+
+		/**
+		 * 現在の行の末尾の、折り返せない単語の幅 (twip)
+		 */
+		private float word;
+
+		/**
+		 * 行数
+		 */
+		private int lines = 1;
+
+		/**
+		 * 最大の文字の大きさ (半ポイント)
+		 */
+		private int size;
+
+		/**
+		 * 最大の文字の大きさに対応する 1 行の高さ (文字の大きさに対する比率)
+		 */
+		private float lineHeight = 1.2f;
+
+		/**
+		 * インスタンスを作成します。
+		 *
+		 * @param available
+		 *            行の幅 (twip)
+		 * @param firstLine
+		 *            1 行目の字下げ (twip)
+		 */
+		private Layout(int available, int firstLine) {
+			this.available = available;
+			this.x = Math.max(firstLine, 0);
+		}
+
+		/**
+		 * 文字を配置します。
+		 *
+		 * @param ctr
+		 *            文字
+		 */
+		private void add(CTR ctr) {
+
+			// 文字の書式を取得
+			CTRPr rpr = ctr.getRPr();
+			int runSize = rpr != null && rpr.isSetSz() ? rpr.getSz().getVal().intValue() : DEFAULT_SIZE;
+			String fontName = rpr != null && rpr.isSetRFonts() ? rpr.getRFonts().getAscii() : null;
+			FontTable table = getFontTable(fontName);
+			if (size < runSize) {
+				size = runSize;
+				lineHeight = table.lineHeight;
+			}
+			float em = runSize * 10f;
+
+			// 子要素の順に配置
+			XmlCursor cursor = ctr.newCursor();
+			try {
+				for (boolean found = cursor.toFirstChild(); found; found = cursor.toNextSibling()) {
+					String name = cursor.getName().getLocalPart();
+					if (name.equals("t")) {
+						String text = cursor.getTextValue();
+						for (int i = 0; i < text.length(); i++) {
+							char c = text.charAt(i);
+							advance(getWidth(table, c) * em, c == ' ' || isWide(c));
+						}
+					} else if (name.equals("br") || name.equals("cr")) {
+						lines++;
+						x = 0;
+						word = 0;
+					} else if (name.equals("tab")) {
+						advance(TAB_STOP - x % TAB_STOP, true);
+					}
+				}
+			} finally {
+				cursor.dispose();
+			}
+		}
+
+		/**
+		 * 1 文字分進めます。
+		 *
+		 * @param w
+		 *            文字の幅 (twip)
+		 * @param breakable
+		 *            文字の後で折り返せる場合は true
+		 */
+		private void advance(float w, boolean breakable) {
+			if (available < x + w && 0 < x) {
+				lines++;
+				x = word < x ? word : 0;
+				if (x == 0) {
+					word = 0;
+				}
+			}
+			x += w;
+			word = breakable ? 0 : word + w;
+		}
+	}
+
+	/**
+	 * 全角の文字であるか判定します。
+	 *
+	 * @param c
+	 *            文字
+	 * @return 全角の文字の場合は true を返却します。
+	 */
+	private static boolean isWide(char c) {
+		return (0x1100 <= c && c <= 0x115F) || (0x2E80 <= c && c <= 0xA4CF) || (0xAC00 <= c && c <= 0xD7A3)
+				|| (0xF900 <= c && c <= 0xFAFF) || (0xFE30 <= c && c <= 0xFE4F) || (0xFF00 <= c && c <= 0xFF60)
+				|| (0xFFE0 <= c && c <= 0xFFE6);
+	}
+
+	/**
+	 * 長さを twip 単位の整数に変換します。
+	 *
+	 * @param value
+	 *            長さ (指定されていない場合は null)
+	 * @return 長さ (指定されていない場合は 0)
+	 */
+	private static int twips(BigInteger value) {
+		return value == null ? 0 : value.intValue();
+	}
+
+	/**
+	 * 真偽値の要素が真であるか判定します。
+	 *
+	 * @param onOff
+	 *            要素 (指定されていない場合は null)
+	 * @return 真の場合は true を返却します。
+	 */
+	private static boolean isOn(CTOnOff onOff) {
+		if (onOff == null) {
+			return false;
+		}
+		STOnOff.Enum val = onOff.getVal();
+		return val == null || val == STOnOff.TRUE || val == STOnOff.ON || val == STOnOff.X_1;
+	}
+}
\ No newline at end of file
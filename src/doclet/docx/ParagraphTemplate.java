@@ -0,0 +1,149 @@
+package doclet.docx;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTHyperlink;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRPr;
+
+/**
+ * 書式設定済の段落のひな形です。
+ * <p>
+ * メンバごとに繰り返し出力する段落は書式が同じため、{@link DocumentStyle} で 1 度だけ書式を設定した段落の XML を記憶し、
+ * 以降は段落と文字の書式を複製して作成します。
+ */
+public class ParagraphTemplate {
+
+	/**
+	 * 段落の書式
+	 */
+	private final CTPPr ppr;
+
+	/**
+	 * 文字の書式
+	 */
+	private final CTRPr rpr;
+
+	/**
+	 * 固定の文字列 (文字列を出力しない場合は null)
+	 */
+	private final String text;
+
+	/**
+	 * 書式設定済の段落からひな形を作成します。
+	 *
+	 * @param paragraph
+	 *            書式設定済の段落
+	 * @param run
+	 *            書式設定済の文字出力ハンドル
+	 * @param text
+	 *            固定の文字列 (文字列を出力しない場合は null)
+	 */
+	public ParagraphTemplate(XWPFParagraph paragraph, XWPFRun run, String text) {
+		CTPPr p = paragraph.getCTP().getPPr();
+		CTRPr r = run == null ? null : run.getCTR().getRPr();
+		this.ppr = p == null ? null : (CTPPr) p.copy();
+		this.rpr = r == null ? null : (CTRPr) r.copy();
+		this.text = text;
+	}
+
+	/**
+	 * 書式設定用の段落を作成します。
+	 * <p>
+	 * 作成した段落は文書に追加されません。
+	 *
+	 * @param word
+	 *            Word 文書
+	 * @return 書式設定用の段落
+	 */
+	public static XWPFParagraph newParagraph(XWPFDocument word) {
+		return new XWPFParagraph(CTP.Factory.newInstance(), word);
+	}
+
+	/**
+	 * ひな形を複製した段落を文書の末尾に追加します。
+	 *
+	 * @param word
+	 *            Word 文書
+	 * @return 文字出力ハンドル (文字の書式がないひな形の場合は null)
+	 */
+	public XWPFRun create(XWPFDocument word) {
+
+		// 段落を複製
+		XWPFParagraph paragraph = word.createParagraph();
+		if (ppr != null) {
+			paragraph.getCTP().setPPr(ppr);
+		}
+
+		// 文字を複製
+		if (rpr == null) {
+			return null;
+		}
+		XWPFRun run = paragraph.createRun();
+		run.getCTR().setRPr(rpr);
+		if (text != null) {
+			run.setText(text);
+		}
+
+		// 出力ハンドルを返却
+		return run;
+	}
+
+	/**
+	 * ひな形の文字の書式を複製した文字を、指定した文字と同じ段落に改行して追加します。
+	 * <p>
+	 * 段落の書式は複製しません。段落数を減らすために、続けて出力する段落を 1 つの段落にまとめる場合に使用します。
+	 *
+	 * @param previous
+	 *            追加先の段落の文字出力ハンドル
+	 * @return 文字出力ハンドル
+	 */
+	public XWPFRun append(XWPFRun previous) {
+
+		// 改行
+		previous.addBreak();
+
+		// 文字を複製
+		XWPFRun run = ((XWPFParagraph) previous.getParent()).createRun();
+		if (rpr != null) {
+			run.getCTR().setRPr(rpr);
+		}
+		if (text != null) {
+			run.setText(text);
+		}
+
+		// 出力ハンドルを返却
+		return run;
+	}
+
+	/**
+	 * ひな形を複製した段落を文書の末尾に追加して、文書内へのリンクを出力します。
+	 *
+	 * @param word
+	 *            Word 文書
+	 * @param anchor
+	 *            リンク先のブックマーク名
+	 * @param text
+	 *            リンクの文字列
+	 */
+	public void createLink(XWPFDocument word, String anchor, String text) {
+
+		// 段落を複製
+		XWPFParagraph paragraph = word.createParagraph();
+		if (ppr != null) {
+			paragraph.getCTP().setPPr(ppr);
+		}
+
+		// リンクを出力
+		CTHyperlink link = paragraph.getCTP().addNewHyperlink();
+		link.setAnchor(anchor);
+		CTR ctr = link.addNewR();
+		if (rpr != null) {
+			ctr.setRPr(rpr);
+		}
+		ctr.addNewT().setStringValue(text);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,227 @@
+package doclet.docx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * 複数のスレッドで並行して圧縮する deflate 形式の出力ストリームです。
+ * <p>
+ * pigz と同様に入力を一定の大きさのブロックに分割し、各ブロックを直前のブロックの末尾 32KB を辞書として別々のスレッドで圧縮します。
+ * 最後以外のブロックは同期フラッシュでバイト境界に揃えて終了するため、圧縮結果を順に連結すると 1 つの有効な deflate ストリームになります。
+ * <p>
+ * 圧縮中のブロック数はスレッド数の 2 倍までに制限し、超えた場合は先頭のブロックの圧縮完了を待機します。
+ */
+public class ParallelDeflater extends OutputStream {
+
+	/**
+	 * ブロックの大きさ
+	 */
+	private static final int BLOCK_SIZE = 128 * 1024;
+
+	/**
+	 * 辞書の大きさ (deflate のスライド窓の大きさ)
+	 */
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	/**
+	 * 圧縮結果の出力先
+	 */
+	private final OutputStream out;
+
+	/**
+	 * 圧縮処理を実行するスレッドプール
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * 同時に圧縮するブロックの最大数
+	 */
+	private final int maxPending;
+
+	/**
+	 * 圧縮レベル
+	 */
+	private final int level;
+
+	/**
+	 * 圧縮中のブロック (入力順)
+	 */
+	private final Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+
+	/**
+	 * 入力中のブロック
+	 */
+	private byte[] block = new byte[BLOCK_SIZE];
+
+	/**
+	 * 入力中のブロックの長さ
+	 */
+	private int length;
+
+	/**
+	 * 直前のブロックの末尾 (最初のブロックの場合は null)
+	 */
+	private byte[] dictionary;
+
+	/**
+	 * 閉じられた場合は true
+	 */
+	private boolean closed;
+
+	/**
+	 * インスタンスを作成します。
+	 *
+	 * @param out
+	 *            圧縮結果の出力先 (閉じません)
+	 * @param executor
+	 *            圧縮処理を実行するスレッドプール
+	 * @param threads
+	 *            スレッドプールのスレッド数
+	 * @param level
+	 *            圧縮レベル
+	 */
+	public ParallelDeflater(OutputStream out, ExecutorService executor, int threads, int level) {
+		this.out = out;
+		this.executor = executor;
+		this.maxPending = Math.max(threads, 1) * 2;
+		this.level = level;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (0 < len) {
+			int n = Math.min(len, BLOCK_SIZE - length);
+			System.arraycopy(b, off, block, length, n);
+			length += n;
+			off += n;
+			len -= n;
+			if (length == BLOCK_SIZE) {
+				submit(false);
+			}
+		}
+	}
+
+	/**
+	 * 残りのブロックを圧縮して全ての圧縮結果を出力します。
+	 * <p>
+	 * 出力先のストリームは閉じません。
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			submit(true);
+			while (!pending.isEmpty()) {
+				drain();
+			}
+		}
+	}
+
+	/**
+	 * 入力中のブロックの圧縮を開始します。
+	 *
+	 * @param last
+	 *            最後のブロックの場合は true
+	 * @throws IOException
+	 */
+	private void submit(final boolean last) throws IOException {
+
+		// 圧縮するブロックと辞書を確定
+		final byte[] input = block;
+		final int inputLength = length;
+		final byte[] dict = dictionary;
+		if (DICTIONARY_SIZE <= inputLength) {
+			dictionary = Arrays.copyOfRange(input, inputLength - DICTIONARY_SIZE, inputLength);
+		} else if (0 < inputLength) {
+			dictionary = Arrays.copyOf(input, inputLength);
+		}
+		block = new byte[BLOCK_SIZE];
+		length = 0;
+
+		// 圧縮を開始
+		pending.add(executor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() {
+				return deflate(input, inputLength, dict, last);
+			}
+		}));
+
+		// 圧縮中のブロックが多い場合は先頭の完了を待機
+		while (maxPending < pending.size()) {
+			drain();
+		}
+	}
+
+	/**
+	 * 先頭のブロックの圧縮完了を待機して出力します。
+	 *
+	 * @throws IOException
+	 */
+	private void drain() throws IOException {
+		try {
+			out.write(pending.removeFirst().get());
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			throw new IOException("圧縮に失敗しました。", e.getCause());
+		}
+	}
+
+	/**
+	 * 1 つのブロックを圧縮します。
+	 *
+	 * @param input
+	 *            ブロック
+	 * @param inputLength
+	 *            ブロックの長さ
+	 * @param dict
+	 *            直前のブロックの末尾 (最初のブロックの場合は null)
+	 * @param last
+	 *            最後のブロックの場合は true
+	 * @return 圧縮結果
+	 */
+	private byte[] deflate(byte[] input, int inputLength, byte[] dict, boolean last) {
+		Deflater deflater = new Deflater(level, true);
+		try {
+			if (dict != null) {
+				deflater.setDictionary(dict);
+			}
+			deflater.setInput(input, 0, inputLength);
+			ByteArrayOutputStream buf = new ByteArrayOutputStream(inputLength / 4 + 64);
+			byte[] chunk = new byte[16 * 1024];
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					int n = deflater.deflate(chunk);
+					buf.write(chunk, 0, n);
+				}
+			} else {
+				int n;
+				do {
+					n = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+					buf.write(chunk, 0, n);
+				} while (n == chunk.length);
+			}
+			return buf.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+package doclet.docx;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.sun.javadoc.ClassDoc;
+
+/**
+ * 1 つの文書を複数のプロセスで分割して生成する場合の担当範囲です。
+ * <p>
+ * パッケージを Javadoc 情報の出現順に並べ、クラス数がほぼ均等になるように連続した範囲に分割します。分割した各文書を番号順に
+ * {@link DocxMerger} で結合すると、分割せずに生成した文書と同じ本文になります。表紙は最初の担当範囲の文書にのみ出力します。
+ */
+public class Shard {
+
+	/**
+	 * 担当範囲の番号 (0 から始まる)
+	 */
+	private final int index;
+
+	/**
+	 * 分割数
+	 */
+	private final int count;
+
+	/**
+	 * インスタンスを作成します。
+	 *
+	 * @param index
+	 *            担当範囲の番号 (0 から始まる)
+	 * @param count
+	 *            分割数
+	 */
+	public Shard(int index, int count) {
+		if (count < 1 || index < 0 || count <= index) {
+			throw new IllegalArgumentException("不正な分割の指定です: " + (index + 1) + "/" + count);
+		}
+		this.index = index;
+		this.count = count;
+	}
+
+	/**
+	 * -shard オプションの値を解析します。
+	 * <p>
+	 * 値は "番号/分割数" の形式で、番号は 1 から始まります。
+	 *
+	 * @param spec
+	 *            オプションの値
+	 * @return 担当範囲 (値が空の場合は null)
+	 */
+	public static Shard parse(String spec) {
+		if (spec == null || spec.trim().isEmpty()) {
+			return null;
+		}
+		String[] values = spec.trim().split("/");
+		try {
+			if (values.length == 2) {
+				return new Shard(Integer.parseInt(values[0].trim()) - 1, Integer.parseInt(values[1].trim()));
+			}
+		} catch (NumberFormatException e) {
+		}
+		throw new IllegalArgumentException("不正な分割の指定です: " + spec);
+	}
+
+	/**
+	 * 最初の担当範囲であるか判定します。
+	 *
+	 * @return 最初の担当範囲の場合は true を返却します。
+	 */
+	public boolean isFirst() {
+		return index == 0;
+	}
+
+	/**
+	 * 担当するパッケージ名を取得します。
+	 * <p>
+	 * 同じ Javadoc 情報からは常に同じ結果を返却するため、各プロセスの担当範囲は重複も漏れもありません。
+	 *
+	 * @param classes
+	 *            全てのクラス (出力順)
+	 * @return 担当するパッケージ名の集合
+	 */
+	public Set<String> getPackages(ClassDoc[] classes) {
+
+		// パッケージごとのクラス数を出現順に集計
+		Map<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+		for (ClassDoc classDoc : classes) {
+			String name = classDoc.containingPackage().name();
+			Integer size = sizes.get(name);
+			sizes.put(name, size == null ? 1 : size + 1);
+		}
+
+		// 先行するクラス数の割合で担当範囲を決定
+		Set<String> packages = new HashSet<String>();
+		long before = 0;
+		for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+			if (before * count / classes.length == index) {
+				packages.add(entry.getKey());
+			}
+			before += entry.getValue();
+		}
+		return packages;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,248 @@
+package doclet.docx;
+
+import java.math.BigInteger;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTBookmark;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.ExecutableMemberDoc;
+import com.sun.javadoc.MemberDoc;
+
+/**
+ * 全てのクラスとメンバを名前順に並べた索引の項目を作成するクラスです。
+ * <p>
+ * 出力したクラスとメンバを {@link #addClass(ClassDoc)} と {@link #addMember(MemberDoc, String, XWPFParagraph)}
+ * で記録し、全てのクラスを出力した後に {@link #sort()} で並べ替えます。
+ * 日本語と英字の名前が混在しても正しい順序になるように、日本語の {@link Collator} の {@link CollationKey} で比較します。
+ * 照合キーは比較のたびに作成せず、名前ごとに 1 度だけ作成して記憶します。
+ * <p>
+ * クラスの項目は {@link DocxPatcher} のクラスの区間のブックマークへ、メンバの項目は見出しの段落に追加したブックマークへリンクします。
+ */
+public class SymbolIndex {
+
+	/**
+	 * メンバのブックマーク名の接頭辞
+	 */
+	private static final String MEMBER_PREFIX = "_di";
+
+	/**
+	 * メンバのブックマークの ID の開始値 (クラスの区間のブックマークの ID と重複しない値)
+	 */
+	private static final int MEMBER_ID_BASE = 0x10000000;
+
+	/**
+	 * 照合順序
+	 */
+	private final Collator collator = Collator.getInstance(Locale.JAPANESE);
+
+	/**
+	 * 名前ごとの照合キー
+	 */
+	private final Map<String, CollationKey> keys = new HashMap<String, CollationKey>();
+
+	/**
+	 * 記録した項目
+	 */
+	private final List<Entry> entries = new ArrayList<Entry>();
+
+	/**
+	 * 作成したメンバのブックマークの数
+	 */
+	private int members;
+
+	/**
+	 * 索引の 1 つの項目です。
+	 */
+	private static class Entry implements Comparable<Entry> {
+
+		/**
+		 * 名前の照合キー
+		 */
+		private final CollationKey nameKey;
+
+		/**
+		 * 宣言されたクラスまたはパッケージの照合キー
+		 */
+		private final CollationKey containerKey;
+
+		/**
+		 * 出力する文字列
+		 */
+		private final String text;
+
+		/**
+		 * リンク先のブックマーク名
+		 */
+		private final String anchor;
+
+		/**
+		 * インスタンスを作成します。
+		 *
+		 * @param nameKey
+		 *            名前の照合キー
+		 * @param containerKey
+		 *            宣言されたクラスまたはパッケージの照合キー
+		 * @param text
+		 *            出力する文字列
+		 * @param anchor
+		 *            リンク先のブックマーク名
+		 */
+		private Entry(CollationKey nameKey, CollationKey containerKey, String text, String anchor) {
+			this.nameKey = nameKey;
+			this.containerKey = containerKey;
+			this.text = text;
+			this.anchor = anchor;
+		}
+
+		/**
+		 * 名前, 宣言されたクラスまたはパッケージ, 出力する文字列の順に比較します。
+		 *
+		 * @param other
+		 *            比較対象
+		 * @return 比較結果
+		 */
+		@Override
+		public int compareTo(Entry other) {
+			int result = nameKey.compareTo(other.nameKey);
+			if (result == 0) {
+				result = containerKey.compareTo(other.containerKey);
+			}
+			if (result == 0) {
+				result = text.compareTo(other.text);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * 実行時オプションで索引が指定された場合はインスタンスを作成します。
+	 * <p>
+	 * 索引は全てのクラスを 1 度に出力する場合のみ作成できるため、分割生成とジャーナルからの再開、既存の文書の更新とは同時に指定できません。
+	 *
+	 * @param options
+	 *            実行時オプション
+	 * @return インスタンス (索引を出力しない場合は null)
+	 */
+	public static SymbolIndex create(Options options) {
+		if (!Boolean.parseBoolean(options.getOption("index"))) {
+			return null;
+		}
+		if (!options.getOption("shard").isEmpty() || !options.getOption("journal").isEmpty()
+				|| !options.getOption("patch").isEmpty() || !options.getOption("watch").isEmpty()) {
+			throw new IllegalArgumentException("-index オプションは -shard, -journal, -patch, -watch オプションと同時に指定できません。");
+		}
+		return new SymbolIndex();
+	}
+
+	/**
+	 * クラスの項目を記録します。
+	 *
+	 * @param classDoc
+	 *            クラス
+	 */
+	public void addClass(ClassDoc classDoc) {
+		String packageName = classDoc.containingPackage().name();
+		String text = classDoc.name() + " クラス (" + packageName + ")";
+		entries.add(new Entry(getKey(classDoc.name()), getKey(packageName), text,
+				DocxPatcher.getSectionName(classDoc.qualifiedName())));
+	}
+
+	/**
+	 * メンバの項目を記録して、見出しの段落にリンク先のブックマークを追加します。
+	 *
+	 * @param doc
+	 *            メンバ
+	 * @param kind
+	 *            種類名
+	 * @param paragraph
+	 *            見出しの段落
+	 */
+	public void addMember(MemberDoc doc, String kind, XWPFParagraph paragraph) {
+
+		// ブックマークを追加
+		int id = MEMBER_ID_BASE + members;
+		String anchor = MEMBER_PREFIX + Integer.toHexString(members);
+		members++;
+		CTP ctp = paragraph.getCTP();
+		CTBookmark bookmark = ctp.addNewBookmarkStart();
+		bookmark.setId(BigInteger.valueOf(id));
+		bookmark.setName(anchor);
+		ctp.addNewBookmarkEnd().setId(BigInteger.valueOf(id));
+
+		// 項目を記録
+		String name = doc.name();
+		if (doc instanceof ExecutableMemberDoc) {
+			name += ((ExecutableMemberDoc) doc).flatSignature();
+		}
+		String container = doc.containingClass().qualifiedName();
+		String text = name + " " + kind + " (" + container + ")";
+		entries.add(new Entry(getKey(doc.name()), getKey(container), text, anchor));
+	}
+
+	/**
+	 * 名前の照合キーを取得します。
+	 *
+	 * @param name
+	 *            名前
+	 * @return 照合キー
+	 */
+	private CollationKey getKey(String name) {
+		CollationKey key = keys.get(name);
+		if (key == null) {
+			key = collator.getCollationKey(name);
+			keys.put(name, key);
+		}
+		return key;
+	}
+
+	/**
+	 * 記録した項目を名前順に並べ替えます。
+	 * <p>
+	 * 並べ替えた後は照合キーを破棄します。
+	 */
+	public void sort() {
+		Collections.sort(entries);
+		keys.clear();
+	}
+
+	/**
+	 * 項目の数を取得します。
+	 *
+	 * @return 項目の数
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * 項目の文字列を取得します。
+	 *
+	 * @param index
+	 *            項目の位置
+	 * @return 出力する文字列
+	 */
+	public String getText(int index) {
+		return entries.get(index).text;
+	}
+
+	/**
+	 * 項目のリンク先のブックマーク名を取得します。
+	 *
+	 * @param index
+	 *            項目の位置
+	 * @return ブックマーク名
+	 */
+	public String getAnchor(int index) {
+		return entries.get(index).anchor;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package doclet.docx;
+
+import java.lang.reflect.Method;
+
+/**
+ * Javadoc 情報の呼び出しを排他制御するプロキシです。
+ * <p>
+ * Javadoc ツールのルートドキュメントは参照時に遅延して構築されるため、複数のスレッドから同時に参照できません。
+ * 複数の文書を並行して生成する場合はこのプロキシで包み、Javadoc 情報の参照のみを直列化します。
+ */
+public class SynchronizedDocProxy extends DocProxy {
+
+	/**
+	 * 排他制御用のロック
+	 */
+	private final Object lock = new Object();
+
+	@Override
+	protected Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		synchronized (lock) {
+			return call(target, method, args);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,214 @@
+package doclet.docx;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.xmlbeans.impl.xb.xmlschema.SpaceAttribute;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTTabStop;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTText;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STFldCharType;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STTabJc;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STTabTlc;
+
+/**
+ * 見出しのページ番号を見積もって目次を作成するクラスです。
+ * <p>
+ * 出力する全ての段落を {@link #measure(XWPFParagraph)} で {@link PageEstimator} に配置し、見出しレベルが設定された段落を
+ * ページ番号とともに記録します。全ての段落を出力した後に {@link #write(XWPFDocument)} で TOC フィールドを作成します。
+ * フィールドの表示結果には見積もったページ番号を出力するため、文書を開いた時点でフィールドを更新する必要はありません。
+ * <p>
+ * 文書には用紙の設定を出力しないため、Word の既定値 (レター, 余白 1 インチ) の本文の大きさでページ番号を見積もります。
+ */
+public class TableOfContents {
+
+	/**
+	 * 目次に含める見出しレベルの数
+	 */
+	private static final int LEVELS = 2;
+
+	/**
+	 * 本文の幅 (twip)
+	 */
+	private static final int TEXT_WIDTH = 12240 - 1440 * 2;
+
+	/**
+	 * 本文の高さ (twip)
+	 */
+	private static final int TEXT_HEIGHT = 15840 - 1440 * 2;
+
+	/**
+	 * 見出しレベルごとのインデント幅 (twip)
+	 */
+	private static final int LEVEL_INDENT = 400;
+
+	/**
+	 * 書式の設定
+	 */
+	private final DocumentStyle style;
+
+	/**
+	 * 本文のページ数の見積もり
+	 */
+	private final PageEstimator estimator = new PageEstimator(TEXT_WIDTH, TEXT_HEIGHT);
+
+	/**
+	 * 記録した見出し
+	 */
+	private final List<Entry> entries = new ArrayList<Entry>();
+
+	/**
+	 * 目次の 1 つの項目です。
+	 */
+	private static class Entry {
+
+		/**
+		 * 見出しレベル (0 から開始)
+		 */
+		private final int level;
+
+		/**
+		 * 見出しの文字列
+		 */
+		private final String text;
+
+		/**
+		 * 目次を除いたページ番号
+		 */
+		private final int page;
+
+		/**
+		 * インスタンスを作成します。
+		 *
+		 * @param level
+		 *            見出しレベル (0 から開始)
+		 * @param text
+		 *            見出しの文字列
+		 * @param page
+		 *            目次を除いたページ番号
+		 */
+		private Entry(int level, String text, int page) {
+			this.level = level;
+			this.text = text;
+			this.page = page;
+		}
+	}
+
+	/**
+	 * インスタンスを作成します。
+	 *
+	 * @param style
+	 *            書式の設定
+	 */
+	public TableOfContents(DocumentStyle style) {
+		this.style = style;
+	}
+
+	/**
+	 * 実行時オプションで目次が指定された場合はインスタンスを作成します。
+	 * <p>
+	 * 目次は表紙の直後に出力するため、表紙を出力しない分割生成とジャーナルからの再開、既存の文書の更新とは同時に指定できません。
+	 *
+	 * @param options
+	 *            実行時オプション
+	 * @param style
+	 *            書式の設定
+	 * @return インスタンス (目次を出力しない場合は null)
+	 */
+	public static TableOfContents create(Options options, DocumentStyle style) {
+		if (!Boolean.parseBoolean(options.getOption("toc"))) {
+			return null;
+		}
+		if (!options.getOption("shard").isEmpty() || !options.getOption("journal").isEmpty()
+				|| !options.getOption("patch").isEmpty() || !options.getOption("watch").isEmpty()) {
+			throw new IllegalArgumentException("-toc オプションは -shard, -journal, -patch, -watch オプションと同時に指定できません。");
+		}
+		return new TableOfContents(style);
+	}
+
+	/**
+	 * 出力する段落を配置して、見出しの場合はページ番号を記録します。
+	 *
+	 * @param paragraph
+	 *            段落
+	 */
+	public void measure(XWPFParagraph paragraph) {
+		CTP ctp = paragraph.getCTP();
+		int page = estimator.add(ctp);
+		CTPPr ppr = ctp.getPPr();
+		if (ppr != null && ppr.isSetOutlineLvl()) {
+			int level = ppr.getOutlineLvl().getVal().intValue();
+			if (level < LEVELS) {
+				entries.add(new Entry(level, paragraph.getText(), page));
+			}
+		}
+	}
+
+	/**
+	 * 記録した見出しの目次を Word 文書の末尾に追加します。
+	 * <p>
+	 * 目次は改ページして開始します。目次自体のページ数も見積もって、見出しのページ番号に加えます。
+	 *
+	 * @param word
+	 *            Word 文書
+	 */
+	public void write(XWPFDocument word) {
+
+		// POI 操作
+		XWPFParagraph paragraph;
+		XWPFRun run;
+
+		// 目次の見出し
+		paragraph = word.createParagraph();
+		paragraph.setPageBreak(true);
+		run = style.setChapterTitleParagraph(paragraph, 0, -1);
+		run.setText("目次");
+		PageEstimator tocEstimator = new PageEstimator(TEXT_WIDTH, TEXT_HEIGHT);
+		tocEstimator.add(paragraph.getCTP());
+
+		// フィールドの開始
+		paragraph = word.createParagraph();
+		run = style.getDefaultRun(paragraph, 0);
+		run.getCTR().addNewFldChar().setFldCharType(STFldCharType.BEGIN);
+		CTP ctp = paragraph.getCTP();
+		CTText instr = ctp.addNewR().addNewInstrText();
+		instr.setStringValue(" TOC \\o \"1-" + LEVELS + "\" \\u ");
+		instr.setSpace(SpaceAttribute.Space.PRESERVE);
+		ctp.addNewR().addNewFldChar().setFldCharType(STFldCharType.SEPARATE);
+		tocEstimator.add(ctp);
+
+		// 見出しごとの項目 (ページ番号は目次のページ数が決まってから出力)
+		List<XWPFRun> pageRuns = new ArrayList<XWPFRun>(entries.size());
+		for (Entry entry : entries) {
+			paragraph = word.createParagraph();
+			run = style.getDefaultRun(paragraph, entry.level * LEVEL_INDENT);
+			run.setBold(entry.level == 0);
+			CTTabStop tab = paragraph.getCTP().getPPr().addNewTabs().addNewTab();
+			tab.setVal(STTabJc.RIGHT);
+			tab.setLeader(STTabTlc.DOT);
+			tab.setPos(BigInteger.valueOf(TEXT_WIDTH));
+			run.setText(entry.text);
+			run.addTab();
+			pageRuns.add(run);
+			tocEstimator.add(paragraph.getCTP());
+		}
+
+		// フィールドの終了
+		paragraph = word.createParagraph();
+		CTR end = paragraph.getCTP().addNewR();
+		end.addNewFldChar().setFldCharType(STFldCharType.END);
+		tocEstimator.add(paragraph.getCTP());
+
+		// 目次のページ数を加えたページ番号を出力
+		int offset = tocEstimator.getPages();
+		for (int i = 0; i < entries.size(); i++) {
+			pageRuns.get(i).setText(String.valueOf(entries.get(i).page + offset));
+		}
+	}
+}
\ No newline at end of file
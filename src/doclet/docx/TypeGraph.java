@@ -0,0 +1,233 @@
+package doclet.docx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sun.javadoc.ClassDoc;
+
+/**
+ * クラスとインタフェースの継承関係のグラフです。
+ * <p>
+ * 全てのクラスを 1 度ずつ {@link #add(ClassDoc)} で追加すると、親から子への隣接リストを作成します。
+ * 出力対象外のスーパークラスとスーパーインタフェースも、階層をつなぐ節点として含みます。
+ * <p>
+ * クラスごとのスーパークラスの連鎖は 1 度だけ計算して記憶し、スーパークラスの連鎖を再利用して作成します。
+ * そのため各クラスの {@link ClassDoc#superclass()} は 1 度しか参照せず、グラフの作成はクラス数に比例した時間で終わります。
+ * クラスの識別には完全修飾名を使用します。
+ */
+public class TypeGraph {
+
+	/**
+	 * 完全修飾名の順序
+	 */
+	private static final Comparator<ClassDoc> NAME_ORDER = new Comparator<ClassDoc>() {
+		@Override
+		public int compare(ClassDoc a, ClassDoc b) {
+			return a.qualifiedName().compareTo(b.qualifiedName());
+		}
+	};
+
+	/**
+	 * クラスごとのスーパークラスの連鎖 (階層の最上位から順, そのクラスを含む)
+	 */
+	private final Map<String, List<ClassDoc>> chains = new HashMap<String, List<ClassDoc>>();
+
+	/**
+	 * クラスごとの直接のサブクラス
+	 */
+	private final Map<String, List<ClassDoc>> subclasses = new HashMap<String, List<ClassDoc>>();
+
+	/**
+	 * クラス階層の最上位のクラス
+	 */
+	private final List<ClassDoc> classRoots = new ArrayList<ClassDoc>();
+
+	/**
+	 * 追加済のインタフェースの完全修飾名
+	 */
+	private final Set<String> interfaces = new HashSet<String>();
+
+	/**
+	 * インタフェースごとの直接のサブインタフェース
+	 */
+	private final Map<String, List<ClassDoc>> subinterfaces = new HashMap<String, List<ClassDoc>>();
+
+	/**
+	 * インタフェース階層の最上位のインタフェース
+	 */
+	private final List<ClassDoc> interfaceRoots = new ArrayList<ClassDoc>();
+
+	/**
+	 * 階層の深さごとの字下げの文字列
+	 */
+	private final List<String> prefixes = new ArrayList<String>();
+
+	/**
+	 * クラスまたはインタフェースを追加します。
+	 *
+	 * @param classDoc
+	 *            クラスまたはインタフェース
+	 */
+	public void add(ClassDoc classDoc) {
+		if (classDoc.isInterface()) {
+			addInterface(classDoc);
+		} else {
+			getSuperclassChain(classDoc);
+		}
+	}
+
+	/**
+	 * インタフェースとそのスーパーインタフェースを追加します。
+	 *
+	 * @param interfaceDoc
+	 *            インタフェース
+	 */
+	private void addInterface(ClassDoc interfaceDoc) {
+		if (!interfaces.add(interfaceDoc.qualifiedName())) {
+			return;
+		}
+		ClassDoc[] parents = interfaceDoc.interfaces();
+		if (parents.length == 0) {
+			interfaceRoots.add(interfaceDoc);
+		}
+		for (ClassDoc parent : parents) {
+			getList(subinterfaces, parent.qualifiedName()).add(interfaceDoc);
+			addInterface(parent);
+		}
+	}
+
+	/**
+	 * スーパークラスの連鎖を取得します。
+	 * <p>
+	 * 初めて参照したクラスはグラフに追加します。インタフェースの場合はそのインタフェースのみを返却します。
+	 *
+	 * @param classDoc
+	 *            クラス
+	 * @return 階層の最上位から順に並べたスーパークラスとそのクラス (変更できません)
+	 */
+	public List<ClassDoc> getSuperclassChain(ClassDoc classDoc) {
+		List<ClassDoc> chain = chains.get(classDoc.qualifiedName());
+		if (chain == null) {
+
+			// スーパークラスの連鎖に追加
+			ClassDoc superclass = classDoc.superclass();
+			List<ClassDoc> list;
+			if (superclass == null) {
+				list = new ArrayList<ClassDoc>(1);
+				if (!classDoc.isInterface()) {
+					classRoots.add(classDoc);
+				}
+			} else {
+				List<ClassDoc> parent = getSuperclassChain(superclass);
+				list = new ArrayList<ClassDoc>(parent.size() + 1);
+				list.addAll(parent);
+				getList(subclasses, superclass.qualifiedName()).add(classDoc);
+			}
+			list.add(classDoc);
+			chain = Collections.unmodifiableList(list);
+			chains.put(classDoc.qualifiedName(), chain);
+		}
+		return chain;
+	}
+
+	/**
+	 * 継承階層の字下げの文字列を取得します。
+	 *
+	 * @param depth
+	 *            階層の深さ (最上位は 0)
+	 * @return 字下げの文字列
+	 */
+	public String getTreePrefix(int depth) {
+		while (prefixes.size() <= depth) {
+			int d = prefixes.size();
+			if (d == 0) {
+				prefixes.add("");
+			} else if (d == 1) {
+				prefixes.add("　└ ");
+			} else {
+				prefixes.add("　　 " + prefixes.get(d - 1));
+			}
+		}
+		return prefixes.get(depth);
+	}
+
+	/**
+	 * クラス階層の最上位のクラスを取得します。
+	 *
+	 * @return 完全修飾名の順に並べたクラス
+	 */
+	public List<ClassDoc> getClassRoots() {
+		return sorted(classRoots);
+	}
+
+	/**
+	 * 直接のサブクラスを取得します。
+	 *
+	 * @param classDoc
+	 *            クラス
+	 * @return 完全修飾名の順に並べたサブクラス
+	 */
+	public List<ClassDoc> getSubclasses(ClassDoc classDoc) {
+		return sorted(subclasses.get(classDoc.qualifiedName()));
+	}
+
+	/**
+	 * インタフェース階層の最上位のインタフェースを取得します。
+	 *
+	 * @return 完全修飾名の順に並べたインタフェース
+	 */
+	public List<ClassDoc> getInterfaceRoots() {
+		return sorted(interfaceRoots);
+	}
+
+	/**
+	 * 直接のサブインタフェースを取得します。
+	 *
+	 * @param interfaceDoc
+	 *            インタフェース
+	 * @return 完全修飾名の順に並べたサブインタフェース
+	 */
+	public List<ClassDoc> getSubinterfaces(ClassDoc interfaceDoc) {
+		return sorted(subinterfaces.get(interfaceDoc.qualifiedName()));
+	}
+
+	/**
+	 * 隣接リストを取得します。
+	 *
+	 * @param map
+	 *            隣接リストの表
+	 * @param key
+	 *            親の完全修飾名
+	 * @return 隣接リスト (存在しない場合は作成)
+	 */
+	private static List<ClassDoc> getList(Map<String, List<ClassDoc>> map, String key) {
+		List<ClassDoc> list = map.get(key);
+		if (list == null) {
+			list = new ArrayList<ClassDoc>(2);
+			map.put(key, list);
+		}
+		return list;
+	}
+
+	/**
+	 * 完全修飾名の順に並べ替えます。
+	 *
+	 * @param list
+	 *            クラスのリスト (存在しない場合は null)
+	 * @return 並べ替えたリスト
+	 */
+	private static List<ClassDoc> sorted(List<ClassDoc> list) {
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		List<ClassDoc> result = new ArrayList<ClassDoc>(list);
+		Collections.sort(result, NAME_ORDER);
+		return result;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,302 @@
+package doclet.docx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.ConstructorDoc;
+import com.sun.javadoc.ExecutableMemberDoc;
+import com.sun.javadoc.FieldDoc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.Parameter;
+import com.sun.javadoc.ParameterizedType;
+import com.sun.javadoc.ProgramElementDoc;
+import com.sun.javadoc.Type;
+import com.sun.javadoc.WildcardType;
+
+/**
+ * クラスごとに、そのクラスを使用しているクラスとメンバを記録するクラスです。
+ * <p>
+ * 出力する全てのクラスとメンバを 1 度ずつ調べて、スーパークラス, フィールドの型, パラメータの型, 戻り値の型,
+ * スローされる例外として参照されたクラスに使用箇所を記録します。型引数とワイルドカードの境界の型も参照として扱います。
+ * <p>
+ * クラスは {@link ClassDoc} の配列の位置を ID とし、使用箇所は ID ごとの int の配列に、使用したクラスまたはメンバの番号と
+ * 使用方法を 1 つの値にまとめて記録します。各メンバの型を 1 度ずつ調べるだけのため、作成はメンバ数に比例した時間で終わります。
+ */
+public class UsageIndex {
+
+	/**
+	 * 使用方法を表すビット数
+	 */
+	private static final int KIND_BITS = 3;
+
+	/**
+	 * スーパークラスとしての使用
+	 */
+	private static final int SUPERCLASS = 0;
+
+	/**
+	 * フィールドの型としての使用
+	 */
+	private static final int FIELD = 1;
+
+	/**
+	 * パラメータの型としての使用
+	 */
+	private static final int PARAMETER = 2;
+
+	/**
+	 * 戻り値の型としての使用
+	 */
+	private static final int RETURN = 3;
+
+	/**
+	 * スローされる例外としての使用
+	 */
+	private static final int THROWS = 4;
+
+	/**
+	 * 使用方法ごとの出力名
+	 */
+	private static final String[] KIND_NAMES = { "スーパークラス", "フィールドの型", "パラメータの型", "戻り値の型", "スローされる例外" };
+
+	/**
+	 * 完全修飾名ごとのクラスの ID
+	 */
+	private final Map<String, Integer> ids;
+
+	/**
+	 * 使用したクラスまたはメンバ
+	 */
+	private final List<ProgramElementDoc> users = new ArrayList<ProgramElementDoc>();
+
+	/**
+	 * クラスの ID ごとの使用箇所 (使用したクラスまたはメンバの番号と使用方法)
+	 */
+	private final int[][] usages;
+
+	/**
+	 * クラスの ID ごとの使用箇所の数
+	 */
+	private final int[] counts;
+
+	/**
+	 * 調べているクラスまたはメンバ
+	 */
+	private ProgramElementDoc user;
+
+	/**
+	 * 調べているクラスまたはメンバの番号 (使用箇所が見つかっていない場合は -1)
+	 */
+	private int userIndex;
+
+	/**
+	 * インスタンスを作成します。
+	 *
+	 * @param classes
+	 *            全てのクラス
+	 */
+	public UsageIndex(ClassDoc[] classes) {
+		ids = new HashMap<String, Integer>(classes.length * 2);
+		for (int i = 0; i < classes.length; i++) {
+			ids.put(classes[i].qualifiedName(), i);
+		}
+		usages = new int[classes.length][];
+		counts = new int[classes.length];
+	}
+
+	/**
+	 * 実行時オプションで使用箇所が指定された場合はインスタンスを作成して、全てのクラスの使用箇所を記録します。
+	 * <p>
+	 * 一部のクラスのみを調べると使用箇所が欠けるため、変更されたクラスのみ生成する -watch オプションとは同時に指定できません。
+	 *
+	 * @param options
+	 *            実行時オプション
+	 * @param classes
+	 *            全てのクラス
+	 * @return インスタンス (使用箇所を出力しない場合は null)
+	 */
+	public static UsageIndex create(Options options, ClassDoc[] classes) {
+		if (!Boolean.parseBoolean(options.getOption("usedby"))) {
+			return null;
+		}
+		if (!options.getOption("watch").isEmpty()) {
+			throw new IllegalArgumentException("-usedby オプションは -watch オプションと同時に指定できません。");
+		}
+
+		// 出力するクラスとメンバのみ調べる (除外した数は本文の出力で数えるため別のフィルタを使用)
+		UsageIndex index = new UsageIndex(classes);
+		DocFilter filter = new DocFilter(options);
+		for (ClassDoc classDoc : classes) {
+			if (filter.accept(classDoc)) {
+				index.addClass(classDoc, filter);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * クラスとそのメンバが使用しているクラスを記録します。
+	 *
+	 * @param classDoc
+	 *            クラス
+	 * @param filter
+	 *            出力対象の選別
+	 */
+	private void addClass(ClassDoc classDoc, DocFilter filter) {
+
+		// スーパークラス
+		begin(classDoc);
+		addType(classDoc.superclassType(), SUPERCLASS);
+
+		// フィールド
+		for (FieldDoc[] fields : Arrays.asList(filter.accept(classDoc.enumConstants()),
+				filter.accept(classDoc.fields()))) {
+			for (FieldDoc fieldDoc : fields) {
+				begin(fieldDoc);
+				addType(fieldDoc.type(), FIELD);
+			}
+		}
+
+		// コンストラクタ
+		for (ConstructorDoc constructorDoc : filter.accept(classDoc.constructors())) {
+			addExecutable(constructorDoc);
+		}
+
+		// メソッド
+		for (MethodDoc methodDoc : filter.accept(classDoc.methods())) {
+			addExecutable(methodDoc);
+			addType(methodDoc.returnType(), RETURN);
+		}
+	}
+
+	/**
+	 * コンストラクタまたはメソッドのパラメータと例外が使用しているクラスを記録します。
+	 *
+	 * @param doc
+	 *            コンストラクタまたはメソッド
+	 */
+	private void addExecutable(ExecutableMemberDoc doc) {
+		begin(doc);
+		for (Parameter parameter : doc.parameters()) {
+			addType(parameter.type(), PARAMETER);
+		}
+		for (Type type : doc.thrownExceptionTypes()) {
+			addType(type, THROWS);
+		}
+	}
+
+	/**
+	 * 調べるクラスまたはメンバを切り替えます。
+	 *
+	 * @param doc
+	 *            クラスまたはメンバ
+	 */
+	private void begin(ProgramElementDoc doc) {
+		user = doc;
+		userIndex = -1;
+	}
+
+	/**
+	 * 型が参照しているクラスに、調べているクラスまたはメンバを使用箇所として記録します。
+	 *
+	 * @param type
+	 *            型 (存在しない場合は null)
+	 * @param kind
+	 *            使用方法
+	 */
+	private void addType(Type type, int kind) {
+		if (type == null || type.isPrimitive() || type.asTypeVariable() != null) {
+			return;
+		}
+
+		// ワイルドカードは境界の型
+		WildcardType wildcard = type.asWildcardType();
+		if (wildcard != null) {
+			for (Type bound : wildcard.extendsBounds()) {
+				addType(bound, kind);
+			}
+			for (Type bound : wildcard.superBounds()) {
+				addType(bound, kind);
+			}
+			return;
+		}
+
+		// クラス
+		ClassDoc classDoc = type.asClassDoc();
+		if (classDoc != null) {
+			Integer id = ids.get(classDoc.qualifiedName());
+			if (id != null) {
+				if (userIndex < 0) {
+					userIndex = users.size();
+					users.add(user);
+				}
+				add(id, userIndex << KIND_BITS | kind);
+			}
+		}
+
+		// 型引数
+		ParameterizedType parameterized = type.asParameterizedType();
+		if (parameterized != null) {
+			for (Type argument : parameterized.typeArguments()) {
+				addType(argument, kind);
+			}
+		}
+	}
+
+	/**
+	 * クラスの使用箇所を追加します。
+	 * <p>
+	 * 同じメンバの同じ使用方法は連続して追加されるため、直前の値と比較して重複を除きます。
+	 *
+	 * @param id
+	 *            クラスの ID
+	 * @param usage
+	 *            使用したクラスまたはメンバの番号と使用方法
+	 */
+	private void add(int id, int usage) {
+		int[] values = usages[id];
+		int count = counts[id];
+		if (0 < count && values[count - 1] == usage) {
+			return;
+		}
+		if (values == null) {
+			values = new int[4];
+			usages[id] = values;
+		} else if (count == values.length) {
+			values = Arrays.copyOf(values, count * 2);
+			usages[id] = values;
+		}
+		values[count] = usage;
+		counts[id] = count + 1;
+	}
+
+	/**
+	 * クラスの使用箇所を取得します。
+	 *
+	 * @param classDoc
+	 *            クラス
+	 * @return 使用したクラスまたはメンバと使用方法の文字列 (記録した順)
+	 */
+	public List<String> getUsages(ClassDoc classDoc) {
+		Integer id = ids.get(classDoc.qualifiedName());
+		if (id == null || counts[id] == 0) {
+			return Collections.emptyList();
+		}
+		int[] values = usages[id];
+		List<String> result = new ArrayList<String>(counts[id]);
+		for (int i = 0; i < counts[id]; i++) {
+			ProgramElementDoc doc = users.get(values[i] >>> KIND_BITS);
+			String name = doc.qualifiedName();
+			if (doc instanceof ExecutableMemberDoc) {
+				name += ((ExecutableMemberDoc) doc).flatSignature();
+			}
+			result.add(name + " (" + KIND_NAMES[values[i] & ((1 << KIND_BITS) - 1)] + ")");
+		}
+		return result;
+	}
+}
\ No newline at end of file
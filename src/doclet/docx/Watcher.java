@@ -0,0 +1,513 @@
+package doclet.docx;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.DocumentationTool;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.LanguageVersion;
+import com.sun.javadoc.PackageDoc;
+import com.sun.javadoc.RootDoc;
+import com.sun.javadoc.SourcePosition;
+
+/**
+ * ソースファイルの変更を監視して文書を再生成する処理です。
+ * <p>
+ * -watch オプションが指定された場合、最初の生成後にソースパスのディレクトリを {@link WatchService} で監視します。
+ * 変更を検出すると、指定された時間 (ミリ秒) 変更が続かなくなるまで待機してから、変更されたソースファイルのみを Javadoc で解析し直し、
+ * そのクラスの区間のみを生成して {@link DocxPatcher} で文書に反映します。字句解析とコメントのキャッシュは再生成の間も保持します。
+ * <p>
+ * ソースファイルの追加と削除, パッケージの説明の変更を検出した場合は、文書全体を再生成します。
+ * 置き換えによって保存するエディタに対応するため、ソースファイルの追加と削除は待機後のファイルの有無で判定します。
+ */
+public class Watcher {
+
+	/**
+	 * 監視中のインスタンス (Javadoc から呼び出されるドックレットに渡すために使用)
+	 */
+	private static final ThreadLocal<Watcher> CURRENT = new ThreadLocal<Watcher>();
+
+	/**
+	 * 実行時オプション
+	 */
+	private final Options options;
+
+	/**
+	 * 監視の開始と再生成の結果を通知する、最初に生成した文書の Javadoc のルートドキュメント
+	 */
+	private final RootDoc reporter;
+
+	/**
+	 * 変更が続かなくなるまで待機する時間 (ミリ秒)
+	 */
+	private final long debounce;
+
+	/**
+	 * コード例の字句解析器
+	 */
+	private final JavaLexer lexer;
+
+	/**
+	 * 出力済コメントのキャッシュ
+	 */
+	private final CommentCache commentCache;
+
+	/**
+	 * Javadoc に渡すオプション (ドックレットのオプションを除く)
+	 */
+	private final List<String> javadocOptions = new ArrayList<String>();
+
+	/**
+	 * ソースパスのディレクトリ
+	 */
+	private final List<Path> sourcePath = new ArrayList<Path>();
+
+	/**
+	 * クラスパス
+	 */
+	private final List<File> classPath = new ArrayList<File>();
+
+	/**
+	 * 文書全体を生成する場合に Javadoc に渡すパッケージ名とソースファイル
+	 */
+	private final List<String> specified = new ArrayList<String>();
+
+	/**
+	 * ソースファイルごとのクラス名
+	 */
+	private final Map<Path, List<String>> classesByFile = new HashMap<Path, List<String>>();
+
+	/**
+	 * パッケージごとの最初のクラス名
+	 */
+	private final Map<String, String> firstClasses = new HashMap<String, String>();
+
+	/**
+	 * 監視中のディレクトリ
+	 */
+	private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+
+	/**
+	 * 一部のクラスのみを再生成する場合に見出しを出力済として扱うパッケージ名 (文書全体を再生成する場合は null)
+	 */
+	private Set<String> startedPackages;
+
+	/**
+	 * Javadoc から呼び出されるドックレットです。
+	 */
+	public static class Invocation {
+
+		/**
+		 * 監視中のインスタンスで文書を生成します。
+		 *
+		 * @param rootDoc
+		 *            Javadoc のルートドキュメント
+		 * @return 実行結果を真偽値で返却します。
+		 */
+		public static boolean start(RootDoc rootDoc) {
+			try {
+				CURRENT.get().generate(rootDoc);
+				return true;
+			} catch (Exception e) {
+				rootDoc.printError("文書を生成できません: " + e);
+				return false;
+			}
+		}
+
+		/**
+		 * オプションの引数の個数を返却します。
+		 *
+		 * @param option
+		 *            オプション名
+		 * @return 対応する引数自身を含むパラメタの個数
+		 */
+		public static int optionLength(String option) {
+			return DocxDoclet.optionLength(option);
+		}
+
+		/**
+		 * 対応する Java バージョンを指定します。
+		 *
+		 * @return 対応する Java バージョン
+		 */
+		public static LanguageVersion languageVersion() {
+			return DocxDoclet.languageVersion();
+		}
+	}
+
+	/**
+	 * 最初に生成した文書の Javadoc 情報からインスタンスを作成します。
+	 *
+	 * @param options
+	 *            実行時オプション
+	 * @param rootDoc
+	 *            Javadoc のルートドキュメント
+	 * @param lexer
+	 *            コード例の字句解析器
+	 * @param commentCache
+	 *            出力済コメントのキャッシュ
+	 */
+	public Watcher(Options options, RootDoc rootDoc, JavaLexer lexer, CommentCache commentCache) {
+		if (!options.getOption("shard").isEmpty() || !options.getOption("variants").isEmpty()) {
+			throw new IllegalArgumentException("-watch オプションは -shard, -variants オプションと同時に指定できません。");
+		}
+		this.options = options;
+		this.reporter = rootDoc;
+		try {
+			this.debounce = Long.parseLong(options.getOption("watch"));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("-watch の値が不正です (ミリ秒を指定してください): " + options.getOption("watch"));
+		}
+		this.lexer = lexer;
+		this.commentCache = commentCache;
+
+		// Javadoc のオプションとソースパスを取得
+		for (String[] opt : rootDoc.options()) {
+			if (Options.isSupportedOption(opt[0]) || opt[0].equals("-doclet") || opt[0].equals("-docletpath")) {
+				continue;
+			}
+			for (String value : opt) {
+				javadocOptions.add(value);
+			}
+			if (opt[0].equals("-sourcepath")) {
+				for (String dir : opt[1].split(File.pathSeparator)) {
+					sourcePath.add(new File(dir).toPath().toAbsolutePath().normalize());
+				}
+			} else if (opt[0].equals("-classpath") || opt[0].equals("-cp")) {
+				for (String entry : opt[1].split(File.pathSeparator)) {
+					classPath.add(new File(entry));
+				}
+			}
+		}
+		if (sourcePath.isEmpty()) {
+			sourcePath.add(new File(".").toPath().toAbsolutePath().normalize());
+		}
+
+		// 文書全体を生成する場合の対象を取得
+		for (PackageDoc packageDoc : rootDoc.specifiedPackages()) {
+			specified.add(packageDoc.name());
+		}
+		for (ClassDoc classDoc : rootDoc.specifiedClasses()) {
+			File file = getFile(classDoc);
+			if (file != null) {
+				specified.add(file.getPath());
+			}
+		}
+		index(rootDoc);
+	}
+
+	/**
+	 * クラスの定義されたソースファイルを取得します。
+	 *
+	 * @param classDoc
+	 *            クラス情報
+	 * @return ソースファイル (取得できない場合は null)
+	 */
+	private static File getFile(ClassDoc classDoc) {
+		SourcePosition position = classDoc.position();
+		return position == null ? null : position.file();
+	}
+
+	/**
+	 * 文書全体の Javadoc 情報からソースファイルとクラスの対応を記録します。
+	 *
+	 * @param rootDoc
+	 *            Javadoc のルートドキュメント
+	 */
+	private void index(RootDoc rootDoc) {
+		classesByFile.clear();
+		firstClasses.clear();
+		for (ClassDoc classDoc : rootDoc.classes()) {
+			File file = getFile(classDoc);
+			if (file != null) {
+				Path path = file.toPath().toAbsolutePath().normalize();
+				List<String> names = classesByFile.get(path);
+				if (names == null) {
+					names = new ArrayList<String>();
+					classesByFile.put(path, names);
+				}
+				names.add(classDoc.qualifiedName());
+			}
+			String packageName = classDoc.containingPackage().name();
+			if (!firstClasses.containsKey(packageName)) {
+				firstClasses.put(packageName, classDoc.qualifiedName());
+			}
+		}
+	}
+
+	/**
+	 * ソースファイルの監視を開始します。
+	 * <p>
+	 * 割り込まれるまで処理を返却しません。
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void run() throws IOException, InterruptedException {
+		WatchService service = FileSystems.getDefault().newWatchService();
+		try {
+			for (Path dir : sourcePath) {
+				register(service, dir);
+			}
+			reporter.printNotice("ソースファイルの監視を開始しました: " + sourcePath);
+			while (true) {
+
+				// 変更が続かなくなるまで待機
+				Set<Path> touched = new LinkedHashSet<Path>();
+				boolean structural = poll(service.take(), service, touched);
+				WatchKey key;
+				while ((key = service.poll(debounce, TimeUnit.MILLISECONDS)) != null) {
+					structural |= poll(key, service, touched);
+				}
+
+				// 既存のソースファイルの変更と、追加または削除を判定
+				Set<Path> changed = new LinkedHashSet<Path>();
+				for (Path path : touched) {
+					boolean exists = Files.isRegularFile(path);
+					if (classesByFile.containsKey(path)) {
+						if (exists) {
+							changed.add(path);
+						} else {
+							structural = true;
+						}
+					} else if (exists) {
+						structural = true;
+					}
+				}
+				if (changed.isEmpty() && !structural) {
+					continue;
+				}
+
+				// 再生成
+				long start = System.currentTimeMillis();
+				try {
+					if (structural) {
+						regenerateAll();
+					} else {
+						regenerate(changed);
+					}
+					reporter.printNotice(String.format("再生成しました (%d ミリ秒)", System.currentTimeMillis() - start));
+				} catch (Exception e) {
+					reporter.printError("再生成できません: " + e);
+				}
+			}
+		} finally {
+			service.close();
+		}
+	}
+
+	/**
+	 * ディレクトリとその配下のディレクトリを監視対象に登録します。
+	 *
+	 * @param service
+	 *            監視サービス
+	 * @param root
+	 *            ディレクトリ
+	 * @throws IOException
+	 */
+	private void register(final WatchService service, Path root) throws IOException {
+		if (!Files.isDirectory(root)) {
+			return;
+		}
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				keys.put(dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * 監視イベントから追加, 変更または削除されたソースファイルを取得します。
+	 *
+	 * @param key
+	 *            監視キー
+	 * @param service
+	 *            監視サービス
+	 * @param touched
+	 *            追加, 変更または削除されたソースファイルを追加するセット
+	 * @return イベントが失われた場合またはパッケージの説明の変更を含む場合は true
+	 * @throws IOException
+	 */
+	private boolean poll(WatchKey key, WatchService service, Set<Path> touched) throws IOException {
+		boolean structural = false;
+		Path dir = keys.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+				structural = true;
+				continue;
+			}
+			Path path = dir.resolve((Path) event.context()).toAbsolutePath().normalize();
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+				register(service, path);
+				continue;
+			}
+			String name = path.getFileName().toString();
+			if (!name.endsWith(".java")) {
+				continue;
+			}
+			if (name.equals("package-info.java")) {
+				structural = true;
+			} else {
+				touched.add(path);
+			}
+		}
+		if (!key.reset()) {
+			keys.remove(key);
+		}
+		return structural;
+	}
+
+	/**
+	 * 文書全体を再生成します。
+	 *
+	 * @throws IOException
+	 */
+	private void regenerateAll() throws IOException {
+		startedPackages = null;
+		List<String> args = new ArrayList<String>(javadocOptions);
+		args.addAll(specified);
+		runJavadoc(args, null);
+	}
+
+	/**
+	 * 変更されたソースファイルのクラスのみを再生成して文書に反映します。
+	 *
+	 * @param changed
+	 *            変更されたソースファイル
+	 * @throws IOException
+	 */
+	private void regenerate(Set<Path> changed) throws IOException {
+
+		// 変更されたクラスを含むパッケージ以外の見出しは出力済
+		Set<String> classes = new HashSet<String>();
+		for (Path path : changed) {
+			classes.addAll(classesByFile.get(path));
+		}
+		startedPackages = new HashSet<String>();
+		for (Map.Entry<String, String> entry : firstClasses.entrySet()) {
+			if (!classes.contains(entry.getValue())) {
+				startedPackages.add(entry.getKey());
+			}
+		}
+
+		// 変更されたソースファイルのみを解析
+		List<File> files = new ArrayList<File>();
+		for (Path path : changed) {
+			files.add(path.toFile());
+		}
+		runJavadoc(javadocOptions, files);
+	}
+
+	/**
+	 * Javadoc を実行して、このインスタンスで文書を生成します。
+	 *
+	 * @param args
+	 *            Javadoc のオプションとパッケージ名
+	 * @param files
+	 *            解析するソースファイル (パッケージ名のみ指定する場合は null)
+	 * @throws IOException
+	 */
+	private void runJavadoc(List<String> args, List<File> files) throws IOException {
+		DocumentationTool tool = ToolProvider.getSystemDocumentationTool();
+		if (tool == null) {
+			throw new IOException("Javadoc ツールを取得できません。");
+		}
+		StandardJavaFileManager fileManager = tool.getStandardFileManager(null, null, null);
+		try {
+			List<File> dirs = new ArrayList<File>();
+			for (Path path : sourcePath) {
+				dirs.add(path.toFile());
+			}
+			fileManager.setLocation(StandardLocation.SOURCE_PATH, dirs);
+			if (!classPath.isEmpty()) {
+				fileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
+			}
+			Iterable<? extends JavaFileObject> units = files == null ? null : fileManager.getJavaFileObjectsFromFiles(files);
+			CURRENT.set(this);
+			try {
+				if (!tool.getTask(null, fileManager, null, Invocation.class, args, units).call()) {
+					throw new IOException("Javadoc の実行に失敗しました。");
+				}
+			} finally {
+				CURRENT.remove();
+			}
+		} finally {
+			fileManager.close();
+		}
+	}
+
+	/**
+	 * Javadoc から呼び出されて文書を生成します。
+	 *
+	 * @param rootDoc
+	 *            Javadoc のルートドキュメント
+	 * @throws IOException
+	 */
+	private void generate(RootDoc rootDoc) throws IOException {
+		DocumentBuilder builder = new DocumentBuilder(options, lexer, commentCache);
+
+		// 文書全体を生成
+		if (startedPackages == null) {
+			builder.create(rootDoc);
+			index(rootDoc);
+			return;
+		}
+
+		// 一部のクラスのみ生成して反映
+		File original = new File(options.getOption("file", "document.docx"));
+		File dir = original.getAbsoluteFile().getParentFile();
+		File generated = File.createTempFile("docx", ".generated", dir);
+		File patched = File.createTempFile("docx", ".patched", dir);
+		try {
+			builder.setStartedPackages(startedPackages);
+			OutputStream out = new FileOutputStream(generated);
+			try {
+				builder.create(rootDoc, out);
+			} finally {
+				out.close();
+			}
+			DocxPatcher patcher = new DocxPatcher();
+			patcher.setKeepMissing(true);
+			out = new FileOutputStream(patched);
+			try {
+				patcher.patch(original, generated, out);
+			} finally {
+				out.close();
+			}
+			Files.move(patched.toPath(), original.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			rootDoc.printNotice(String.format("更新: 維持 %d 件, 置換 %d 件", patcher.getKept(), patcher.getReplaced()));
+		} finally {
+			generated.delete();
+			patched.delete();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package doclet.docx;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+
+/**
+ * 出力する Word 文書です。
+ * <p>
+ * {@link XWPFDocument} には既存の段落の XML から段落を追加するメソッドがないため、段落の XML を複製して追加するメソッドを提供します。
+ */
+public class WordDocument extends XWPFDocument {
+
+	/**
+	 * 段落の XML を複製して、文書の末尾に段落を追加します。
+	 * <p>
+	 * 複製した XML から段落を作成するため、段落の文字やハイパーリンクも段落の一部として参照できます。
+	 *
+	 * @param source
+	 *            段落の XML
+	 * @return 追加した段落
+	 */
+	public XWPFParagraph appendParagraph(CTP source) {
+		CTP ctp = getDocument().getBody().addNewP();
+		ctp.set(source);
+		XWPFParagraph paragraph = new XWPFParagraph(ctp, this);
+		bodyElements.add(paragraph);
+		paragraphs.add(paragraph);
+		return paragraph;
+	}
+}
\ No newline at end of file
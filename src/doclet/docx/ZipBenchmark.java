@@ -0,0 +1,241 @@
+package doclet.docx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 文書の本文の圧縮速度を逐次圧縮と並行圧縮で比較するベンチマークです。
+ * <p>
+ * 固定の乱数の種から document.xml と同様の段落を並べた本文を生成し、{@link ZipWriter} で逐次圧縮した場合と
+ * {@link ParallelDeflater} で並行して圧縮した場合の所要時間と圧縮後の大きさを出力します。
+ * 各方式とも計測前に 1 回ずつ実行して JIT コンパイルを済ませ、計測は指定された回数の中央値を使用します。
+ * 圧縮結果は {@link ZipInputStream} で展開して元の本文と一致することを確認します。
+ */
+public class ZipBenchmark {
+
+	/**
+	 * 文字コード
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * 本文のエントリ名
+	 */
+	private static final String ENTRY_NAME = "word/document.xml";
+
+	/**
+	 * 本文に使用する単語
+	 */
+	private static final String[] WORDS = { "クラス", "メソッド", "フィールド", "パラメータ", "戻り値", "例外", "を返却します。",
+			"を設定します。", "の一覧", "String", "List&lt;String&gt;", "getValue", "setName", "java.util.Map", "null",
+			"doclet.docx.DocumentBuilder", "public", "static", "final", "int", "boolean", "指定された", "場合は", "取得します。" };
+
+	/**
+	 * 生成する本文
+	 */
+	private final byte[] body;
+
+	/**
+	 * 計測する回数
+	 */
+	private final int repeats;
+
+	/**
+	 * インスタンスを作成します。
+	 *
+	 * @param size
+	 *            本文のおおよその大きさ (バイト)
+	 * @param repeats
+	 *            計測する回数
+	 */
+	public ZipBenchmark(int size, int repeats) {
+		this.body = createBody(size);
+		this.repeats = repeats;
+	}
+
+	/**
+	 * document.xml と同様の段落を並べた本文を生成します。
+	 * <p>
+	 * 同じ大きさであれば常に同じ内容を生成します。
+	 *
+	 * @param size
+	 *            本文のおおよその大きさ (バイト)
+	 * @return 本文
+	 */
+	private static byte[] createBody(int size) {
+		Random random = new Random(0);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size + 1024);
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+		xml.append("<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"><w:body>");
+		while (out.size() < size) {
+
+			// 段落ごとに書き込んで大きさを確認
+			xml.append("<w:p><w:pPr><w:pStyle w:val=\"").append(random.nextBoolean() ? "Body" : "Code")
+					.append("\"/></w:pPr>");
+			int runs = 1 + random.nextInt(4);
+			for (int i = 0; i < runs; i++) {
+				xml.append("<w:r><w:rPr><w:rFonts w:ascii=\"Consolas\"/></w:rPr><w:t xml:space=\"preserve\">");
+				int words = 3 + random.nextInt(12);
+				for (int j = 0; j < words; j++) {
+					xml.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+				}
+				xml.append("</w:t></w:r>");
+			}
+			xml.append("</w:p>");
+			byte[] paragraph = xml.toString().getBytes(UTF_8);
+			out.write(paragraph, 0, paragraph.length);
+			xml.setLength(0);
+		}
+		byte[] end = "</w:body></w:document>".getBytes(UTF_8);
+		out.write(end, 0, end.length);
+		return out.toByteArray();
+	}
+
+	/**
+	 * 本文を 1 つのエントリとする ZIP ファイルを作成します。
+	 *
+	 * @param executor
+	 *            並行して圧縮する場合のスレッドプール (逐次圧縮する場合は null)
+	 * @param threads
+	 *            スレッドプールのスレッド数
+	 * @return ZIP ファイルの内容
+	 * @throws IOException
+	 */
+	private byte[] write(ExecutorService executor, int threads) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length / 4);
+		ZipWriter zip = new ZipWriter(buffer);
+		zip.setTime(0);
+		OutputStream entry = zip.openEntry(ENTRY_NAME, executor, threads);
+		entry.write(body);
+		entry.close();
+		zip.finish();
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * ZIP ファイルを展開して本文と一致することを確認します。
+	 *
+	 * @param zip
+	 *            ZIP ファイルの内容
+	 * @throws IOException
+	 *             一致しない場合
+	 */
+	private void verify(byte[] zip) throws IOException {
+		ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip));
+		try {
+			ZipEntry entry = in.getNextEntry();
+			if (entry == null || !ENTRY_NAME.equals(entry.getName())) {
+				throw new IOException("エントリがありません: " + ENTRY_NAME);
+			}
+			if (!Arrays.equals(body, readAll(in))) {
+				throw new IOException("展開した内容が本文と一致しません。");
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * 入力ストリームの残りを全て読み込みます。
+	 *
+	 * @param in
+	 *            入力ストリーム
+	 * @return 読み込んだ内容
+	 * @throws IOException
+	 */
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[64 * 1024];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 1 つの方式の所要時間を計測して出力します。
+	 *
+	 * @param parallel
+	 *            並行して圧縮する場合は true
+	 * @param threads
+	 *            並行して圧縮するスレッド数
+	 * @return 所要時間の中央値 (ミリ秒)
+	 * @throws IOException
+	 */
+	private long measure(boolean parallel, int threads) throws IOException {
+		ExecutorService executor = parallel ? Executors.newFixedThreadPool(threads) : null;
+		try {
+
+			// JIT コンパイルを済ませて結果を確認
+			byte[] zip = write(executor, threads);
+			verify(zip);
+
+			// 計測
+			long[] millis = new long[repeats];
+			for (int i = 0; i < repeats; i++) {
+				long start = System.nanoTime();
+				write(executor, threads);
+				millis[i] = (System.nanoTime() - start) / 1000000;
+			}
+			Arrays.sort(millis);
+			long median = millis[repeats / 2];
+			System.out.println(String.format("%s: %d ミリ秒 (最小 %d, 最大 %d), %d バイト",
+					parallel ? "並行圧縮 " + threads + " スレッド" : "逐次圧縮", median, millis[0],
+					millis[repeats - 1], zip.length));
+			return median;
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * 逐次圧縮と並行圧縮の所要時間を比較します。
+	 *
+	 * @param args
+	 *            本文の大きさ (MB, 省略時は 64), 並行圧縮のスレッド数 (省略時はプロセッサ数), 計測する回数 (省略時は 5)
+	 */
+	public static void main(String[] args) {
+		int size;
+		int threads;
+		int repeats;
+		try {
+			size = 0 < args.length ? Integer.parseInt(args[0]) : 64;
+			threads = 1 < args.length ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+			repeats = 2 < args.length ? Integer.parseInt(args[2]) : 5;
+		} catch (NumberFormatException e) {
+			size = 0;
+			threads = 0;
+			repeats = 0;
+		}
+		if (size < 1 || threads < 1 || repeats < 1 || 3 < args.length) {
+			System.err.println("使用方法: ZipBenchmark [本文の大きさ (MB)] [スレッド数] [計測する回数]");
+			System.exit(2);
+		}
+		try {
+			ZipBenchmark benchmark = new ZipBenchmark(size * 1024 * 1024, repeats);
+			System.out.println(String.format("本文: %d バイト, プロセッサ数: %d, 計測回数: %d", benchmark.body.length,
+					Runtime.getRuntime().availableProcessors(), repeats));
+			long serial = benchmark.measure(false, threads);
+			long parallel = benchmark.measure(true, threads);
+			System.out.println(String.format("速度比: %.2f 倍", (double) serial / Math.max(parallel, 1)));
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,585 @@
+package doclet.docx;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * deflate 形式で圧縮したエントリを ZIP 形式で出力するクラスです。
+ * <p>
+ * {@link java.util.zip.ZipOutputStream} と異なり、エントリの圧縮処理を差し替えることができます。 エントリの大きさと CRC
+ * はデータ記述子に出力するため、圧縮前に大きさを知る必要はありません。ZIP64 形式には対応しないため、
+ * エントリの大きさまたは位置が 4GB 以上になった場合は不正な ZIP ファイルを出力せずに例外をスローします。
+ * <p>
+ * 既存の ZIP ファイルのエントリは、展開せずに圧縮されたデータのままコピーできます。
+ */
+public class ZipWriter {
+
+	/**
+	 * 文字コード
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * UTF-8 でないエントリ名の文字コード (名前の比較のみに使用)
+	 */
+	private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+	/**
+	 * データ記述子を使用することを示す汎用フラグ
+	 */
+	private static final int DATA_DESCRIPTOR = 0x0008;
+
+	/**
+	 * ファイル名が UTF-8 であることを示す汎用フラグ
+	 */
+	private static final int UTF_8_NAME = 0x0800;
+
+	/**
+	 * 汎用フラグ (データ記述子を使用, ファイル名は UTF-8)
+	 */
+	private static final int FLAGS = DATA_DESCRIPTOR | UTF_8_NAME;
+
+	/**
+	 * 圧縮方式 (deflate)
+	 */
+	private static final int METHOD_DEFLATED = 8;
+
+	/**
+	 * 展開に必要なバージョン
+	 */
+	private static final int VERSION = 20;
+
+	/**
+	 * ZIP64 形式を使用しない場合に表せる大きさと位置の上限 (この値自体は ZIP64 形式を表すため使用できません)
+	 */
+	private static final long MAX_SIZE = 0xFFFFFFFFL;
+
+	/**
+	 * 出力先
+	 */
+	private final CountingOutputStream out;
+
+	/**
+	 * 出力済のエントリ
+	 */
+	private final List<Entry> entries = new ArrayList<Entry>();
+
+	/**
+	 * エントリの更新日時 (MS-DOS 形式)
+	 */
+	private long dosTime;
+
+	/**
+	 * 出力中のエントリ
+	 */
+	private EntryOutputStream current;
+
+	/**
+	 * 出力済のエントリの情報を保持するクラスです。
+	 */
+	private static class Entry {
+
+		/**
+		 * エントリ名
+		 */
+		private byte[] name;
+
+		/**
+		 * 更新日時 (MS-DOS 形式)
+		 */
+		private long dosTime;
+
+		/**
+		 * 汎用フラグ
+		 */
+		private int flags = FLAGS;
+
+		/**
+		 * 圧縮方式
+		 */
+		private int method = METHOD_DEFLATED;
+
+		/**
+		 * ローカルヘッダの位置
+		 */
+		private long offset;
+
+		/**
+		 * 圧縮前のデータの CRC
+		 */
+		private long crc;
+
+		/**
+		 * 圧縮後の大きさ
+		 */
+		private long compressedSize;
+
+		/**
+		 * 圧縮前の大きさ
+		 */
+		private long size;
+	}
+
+	/**
+	 * 出力したバイト数を数える出力ストリームです。
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+
+		/**
+		 * 出力したバイト数
+		 */
+		private long count;
+
+		/**
+		 * インスタンスを作成します。
+		 *
+		 * @param out
+		 *            出力先
+		 */
+		private CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+
+	/**
+	 * エントリの内容を受け取り、CRC を計算して圧縮処理に渡す出力ストリームです。
+	 */
+	private class EntryOutputStream extends OutputStream {
+
+		/**
+		 * 出力中のエントリの情報
+		 */
+		private final Entry entry;
+
+		/**
+		 * 圧縮処理
+		 */
+		private final OutputStream deflater;
+
+		/**
+		 * 逐次圧縮する場合の圧縮器 (並行して圧縮する場合は null)
+		 */
+		private final Deflater serial;
+
+		/**
+		 * 圧縮前のデータの CRC
+		 */
+		private final CRC32 crc = new CRC32();
+
+		/**
+		 * 圧縮データの開始位置
+		 */
+		private final long start;
+
+		/**
+		 * インスタンスを作成します。
+		 *
+		 * @param entry
+		 *            出力中のエントリの情報
+		 * @param executor
+		 *            並行して圧縮する場合のスレッドプール (並行しない場合は null)
+		 * @param threads
+		 *            スレッドプールのスレッド数
+		 */
+		private EntryOutputStream(Entry entry, ExecutorService executor, int threads) {
+			this.entry = entry;
+			this.start = out.count;
+			OutputStream shield = new FilterOutputStream(out) {
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+			if (executor == null) {
+				this.serial = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+				this.deflater = new DeflaterOutputStream(shield, serial, 8192);
+			} else {
+				this.serial = null;
+				this.deflater = new ParallelDeflater(shield, executor, threads, Deflater.DEFAULT_COMPRESSION);
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			crc.update(b);
+			deflater.write(b);
+			entry.size++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			crc.update(b, off, len);
+			deflater.write(b, off, len);
+			entry.size += len;
+		}
+
+		/**
+		 * エントリの圧縮を完了してデータ記述子を出力します。
+		 *
+		 * @throws IOException
+		 *             ZIP64 形式が必要な大きさの場合
+		 */
+		@Override
+		public void close() throws IOException {
+			if (current != this) {
+				return;
+			}
+			if (serial != null) {
+				((DeflaterOutputStream) deflater).finish();
+				serial.end();
+			} else {
+				deflater.close();
+			}
+			entry.crc = crc.getValue();
+			entry.compressedSize = out.count - start;
+			checkSize(entry);
+			writeInt(0x08074b50L);
+			writeInt(entry.crc);
+			writeInt(entry.compressedSize);
+			writeInt(entry.size);
+			current = null;
+		}
+	}
+
+	/**
+	 * インスタンスを作成します。
+	 *
+	 * @param out
+	 *            出力先 (閉じません)
+	 */
+	public ZipWriter(OutputStream out) {
+		this.out = new CountingOutputStream(out);
+		setTime(System.currentTimeMillis());
+	}
+
+	/**
+	 * 以降に出力するエントリの更新日時を設定します。
+	 *
+	 * @param time
+	 *            更新日時 (エポックからのミリ秒)
+	 */
+	public void setTime(long time) {
+		setTime(time, TimeZone.getDefault());
+	}
+
+	/**
+	 * 以降に出力するエントリの更新日時をタイムゾーンを指定して設定します。
+	 * <p>
+	 * MS-DOS 形式の日時はタイムゾーンを持たないため、実行環境によらず同じ値を出力する場合はタイムゾーンを固定します。
+	 *
+	 * @param time
+	 *            更新日時 (エポックからのミリ秒)
+	 * @param zone
+	 *            タイムゾーン
+	 */
+	public void setTime(long time, TimeZone zone) {
+		Calendar cal = Calendar.getInstance(zone);
+		cal.setTimeInMillis(time);
+		int year = cal.get(Calendar.YEAR);
+		if (year < 1980) {
+			dosTime = (1 << 21) | (1 << 16);
+		} else {
+			dosTime = (year - 1980) << 25 | (cal.get(Calendar.MONTH) + 1) << 21 | cal.get(Calendar.DAY_OF_MONTH) << 16
+					| cal.get(Calendar.HOUR_OF_DAY) << 11 | cal.get(Calendar.MINUTE) << 5 | cal.get(Calendar.SECOND) >> 1;
+		}
+	}
+
+	/**
+	 * エントリの出力を開始します。
+	 * <p>
+	 * 返却された出力ストリームに内容を書き込み、閉じるとエントリの出力が完了します。
+	 *
+	 * @param name
+	 *            エントリ名
+	 * @param executor
+	 *            並行して圧縮する場合のスレッドプール (並行しない場合は null)
+	 * @param threads
+	 *            スレッドプールのスレッド数
+	 * @return エントリの内容の出力ストリーム
+	 * @throws IOException
+	 */
+	public OutputStream openEntry(String name, ExecutorService executor, int threads) throws IOException {
+		if (current != null) {
+			current.close();
+		}
+
+		// ローカルヘッダを出力
+		Entry entry = new Entry();
+		entry.name = name.getBytes(UTF_8);
+		entry.dosTime = dosTime;
+		entry.offset = out.count;
+		writeInt(0x04034b50L);
+		writeShort(VERSION);
+		writeShort(FLAGS);
+		writeShort(METHOD_DEFLATED);
+		writeInt(entry.dosTime);
+		writeInt(0);
+		writeInt(0);
+		writeInt(0);
+		writeShort(entry.name.length);
+		writeShort(0);
+		out.write(entry.name);
+		entries.add(entry);
+
+		// 出力ストリームを返却
+		current = new EntryOutputStream(entry, executor, threads);
+		return current;
+	}
+
+	/**
+	 * エントリを出力します。
+	 *
+	 * @param name
+	 *            エントリ名
+	 * @param data
+	 *            エントリの内容
+	 * @throws IOException
+	 */
+	public void putEntry(String name, byte[] data) throws IOException {
+		OutputStream entry = openEntry(name, null, 1);
+		entry.write(data);
+		entry.close();
+	}
+
+	/**
+	 * 既存の ZIP ファイルのエントリを、圧縮されたデータのままコピーします。
+	 * <p>
+	 * エントリは既存の ZIP ファイルの順に出力し、圧縮方式, 更新日時, CRC と大きさは既存のエントリの値をそのまま使用します。
+	 * 展開と再圧縮は行わないため、圧縮されたデータは既存の ZIP ファイルとバイト単位で一致します。拡張フィールドとコメントはコピーしません。
+	 *
+	 * @param source
+	 *            既存の ZIP ファイル
+	 * @param excluded
+	 *            コピーしないエントリ名
+	 * @throws IOException
+	 */
+	public void copyEntries(File source, Set<String> excluded) throws IOException {
+		if (current != null) {
+			current.close();
+		}
+		RandomAccessFile file = new RandomAccessFile(source, "r");
+		try {
+
+			// セントラルディレクトリの終端を末尾から検索
+			long end = -1;
+			for (long pos = file.length() - 22; 0 <= pos && file.length() - 22 - 0xFFFF <= pos; pos--) {
+				file.seek(pos);
+				if (readInt(file) == 0x06054b50L) {
+					end = pos;
+					break;
+				}
+			}
+			if (end < 0) {
+				throw new IOException("ZIP ファイルではありません: " + source);
+			}
+			file.seek(end + 10);
+			int count = readShort(file);
+			file.seek(end + 16);
+			long position = readInt(file);
+			if (count == 0xFFFF || position == 0xFFFFFFFFL) {
+				throw new IOException("ZIP64 形式には対応していません: " + source);
+			}
+
+			// セントラルディレクトリの順にコピー
+			byte[] buffer = new byte[8192];
+			for (int i = 0; i < count; i++) {
+				file.seek(position);
+				if (readInt(file) != 0x02014b50L) {
+					throw new IOException("ZIP ファイルが不正です: " + source);
+				}
+				file.seek(position + 8);
+				Entry entry = new Entry();
+				entry.flags = readShort(file) & ~DATA_DESCRIPTOR;
+				entry.method = readShort(file);
+				entry.dosTime = readInt(file);
+				entry.crc = readInt(file);
+				entry.compressedSize = readInt(file);
+				entry.size = readInt(file);
+				int nameLength = readShort(file);
+				int extraLength = readShort(file);
+				int commentLength = readShort(file);
+				file.seek(position + 42);
+				long header = readInt(file);
+				entry.name = new byte[nameLength];
+				file.readFully(entry.name);
+				position += 46 + nameLength + extraLength + commentLength;
+				String name = new String(entry.name, (entry.flags & UTF_8_NAME) != 0 ? UTF_8 : LATIN_1);
+				if (excluded.contains(name)) {
+					continue;
+				}
+
+				// ローカルヘッダを出力 (大きさが既知のためデータ記述子は使用しない)
+				entry.offset = out.count;
+				checkSize(entry);
+				writeInt(0x04034b50L);
+				writeShort(VERSION);
+				writeShort(entry.flags);
+				writeShort(entry.method);
+				writeInt(entry.dosTime);
+				writeInt(entry.crc);
+				writeInt(entry.compressedSize);
+				writeInt(entry.size);
+				writeShort(entry.name.length);
+				writeShort(0);
+				out.write(entry.name);
+				entries.add(entry);
+
+				// 圧縮されたデータをコピー
+				file.seek(header + 26);
+				long data = header + 30 + readShort(file) + readShort(file);
+				file.seek(data);
+				for (long remain = entry.compressedSize; 0 < remain;) {
+					int n = (int) Math.min(buffer.length, remain);
+					file.readFully(buffer, 0, n);
+					out.write(buffer, 0, n);
+					remain -= n;
+				}
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * エントリの大きさと位置が ZIP64 形式を使用せずに表せることを確認します。
+	 *
+	 * @param entry
+	 *            エントリの情報
+	 * @throws IOException
+	 *             ZIP64 形式が必要な場合
+	 */
+	private static void checkSize(Entry entry) throws IOException {
+		if (MAX_SIZE <= entry.size || MAX_SIZE <= entry.compressedSize || MAX_SIZE <= entry.offset) {
+			throw new IOException("ZIP64 形式が必要な大きさのエントリには対応していません: " + new String(entry.name, UTF_8));
+		}
+	}
+
+	/**
+	 * セントラルディレクトリを出力して ZIP ファイルを完成させます。
+	 * <p>
+	 * 出力先のストリームはフラッシュしますが閉じません。
+	 *
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if (current != null) {
+			current.close();
+		}
+		if (0xFFFF <= entries.size() || MAX_SIZE <= out.count) {
+			throw new IOException("ZIP64 形式が必要な大きさには対応していません。");
+		}
+
+		// セントラルディレクトリを出力
+		long start = out.count;
+		for (Entry entry : entries) {
+			writeInt(0x02014b50L);
+			writeShort(VERSION);
+			writeShort(VERSION);
+			writeShort(entry.flags);
+			writeShort(entry.method);
+			writeInt(entry.dosTime);
+			writeInt(entry.crc);
+			writeInt(entry.compressedSize);
+			writeInt(entry.size);
+			writeShort(entry.name.length);
+			writeShort(0);
+			writeShort(0);
+			writeShort(0);
+			writeShort(0);
+			writeInt(0);
+			writeInt(entry.offset);
+			out.write(entry.name);
+		}
+
+		// セントラルディレクトリの終端を出力
+		long size = out.count - start;
+		writeInt(0x06054b50L);
+		writeShort(0);
+		writeShort(0);
+		writeShort(entries.size());
+		writeShort(entries.size());
+		writeInt(size);
+		writeInt(start);
+		writeShort(0);
+		out.flush();
+	}
+
+	/**
+	 * 2 バイトの値をリトルエンディアンで出力します。
+	 *
+	 * @param v
+	 *            値
+	 * @throws IOException
+	 */
+	private void writeShort(int v) throws IOException {
+		out.write(v & 0xFF);
+		out.write((v >>> 8) & 0xFF);
+	}
+
+	/**
+	 * 2 バイトの値をリトルエンディアンで読み込みます。
+	 *
+	 * @param file
+	 *            入力元
+	 * @return 値
+	 * @throws IOException
+	 */
+	private static int readShort(RandomAccessFile file) throws IOException {
+		int b0 = file.readUnsignedByte();
+		return b0 | file.readUnsignedByte() << 8;
+	}
+
+	/**
+	 * 4 バイトの値をリトルエンディアンで読み込みます。
+	 *
+	 * @param file
+	 *            入力元
+	 * @return 値
+	 * @throws IOException
+	 */
+	private static long readInt(RandomAccessFile file) throws IOException {
+		long low = readShort(file);
+		return low | (long) readShort(file) << 16;
+	}
+
+	/**
+	 * 4 バイトの値をリトルエンディアンで出力します。
+	 *
+	 * @param v
+	 *            値
+	 * @throws IOException
+	 */
+	private void writeInt(long v) throws IOException {
+		writeShort((int) (v & 0xFFFF));
+		writeShort((int) ((v >>> 16) & 0xFFFF));
+	}
+}
\ No newline at end of file